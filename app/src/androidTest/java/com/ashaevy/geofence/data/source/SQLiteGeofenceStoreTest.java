@@ -0,0 +1,237 @@
+package com.ashaevy.geofence.data.source;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test SQLite geofence store, its grid lookup and database upgrades.
+ */
+
+public class SQLiteGeofenceStoreTest {
+
+    private static final String DATABASE_NAME = "geofences.db";
+
+    private Context mContext;
+    private SQLiteGeofenceStore mStore;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mStore = new SQLiteGeofenceStore(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void saveGeofences_bulkSaveUpdateAndDelete() {
+        List<GeofenceData> geofences = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            geofences.add(geofence("fence" + i, 50.0 + i * 0.01, 30.0, 100));
+        }
+        GeofenceData polygon = geofence("polygon", 50.5, 30.5, 300);
+        polygon.setVertices(new double[]{50.499, 30.499, 50.501, 30.499, 50.501, 30.501});
+        polygon.setWifiSsids(new String[]{"home", "office"});
+        polygon.setWifiBssids(new String[]{"00:11:22:33:44:55"});
+        geofences.add(polygon);
+        mStore.saveGeofences(geofences);
+
+        assertEquals(101, mStore.geofenceCount());
+        GeofenceData read = mStore.readGeofence("polygon");
+        assertTrue(Arrays.equals(polygon.getVertices(), read.getVertices()));
+        assertTrue(Arrays.equals(polygon.getWifiSsids(), read.getWifiSsids()));
+        assertTrue(Arrays.equals(polygon.getWifiBssids(), read.getWifiBssids()));
+        assertEquals(1, mStore.readGeofencesOnWifi("home", null).size());
+
+        // Moved far away: the old cells must not find it any more.
+        mStore.saveGeofences(Collections.singletonList(geofence("fence0", 10.0, 10.0, 200)));
+        assertEquals(101, mStore.geofenceCount());
+        assertEquals(200.0, mStore.readGeofence("fence0").getRadius());
+        assertTrue(idsOf(mStore.readGeofencesNear(50.0, 30.0, 0)).isEmpty());
+        assertEquals(Collections.singleton("fence0"), idsOf(mStore.readGeofencesNear(10.0,
+                10.0, 0)));
+
+        mStore.deleteGeofences(Arrays.asList("fence0", "fence1", "polygon"));
+        assertEquals(98, mStore.geofenceCount());
+        assertNull(mStore.readGeofence("fence1"));
+        assertTrue(idsOf(mStore.readGeofencesNear(10.0, 10.0, 0)).isEmpty());
+        assertTrue(mStore.readGeofencesOnWifi("home", null).isEmpty());
+    }
+
+    @Test
+    public void readGeofencesNear_filtersByBorderDistance() {
+        mStore.saveGeofences(Arrays.asList(
+                geofence("near", 50.0, 30.0, 100),
+                geofence("far", 50.0, 30.1, 100)));
+
+        // "far" is about 7.1 km east, its border about 7.05 km away.
+        assertEquals(Collections.singleton("near"), idsOf(mStore.readGeofencesNear(50.0,
+                30.0, 1000)));
+        assertEquals(new HashSet<>(Arrays.asList("near", "far")),
+                idsOf(mStore.readGeofencesNear(50.0, 30.0, 7100)));
+    }
+
+    @Test
+    public void readGeofencesNear_findsOversizedGeofences() {
+        // 500 km radius covers more grid cells than the limit.
+        mStore.saveGeofences(Arrays.asList(
+                geofence("huge", 50.0, 30.0, 500000),
+                geofence("small", 45.0, 30.0, 100)));
+
+        assertEquals(Collections.singleton("huge"), idsOf(mStore.readGeofencesNear(52.0,
+                31.0, 0)));
+        assertTrue(idsOf(mStore.readGeofencesNear(60.0, 30.0, 0)).isEmpty());
+        // Query larger than the grid limit scans the whole table.
+        assertEquals(new HashSet<>(Arrays.asList("huge", "small")),
+                idsOf(mStore.readGeofencesNear(47.0, 30.0, 1000000)));
+    }
+
+    @Test
+    public void readGeofencesNear_acrossAntimeridian() {
+        mStore.saveGeofences(Arrays.asList(
+                geofence("east", 0.0, 179.999, 500),
+                geofence("west", 0.0, -179.995, 100)));
+
+        // 179.999 and -179.999 are about 220 m apart.
+        assertEquals(Collections.singleton("east"), idsOf(mStore.readGeofencesNear(0.0,
+                -179.999, 0)));
+        assertEquals(new HashSet<>(Arrays.asList("east", "west")),
+                idsOf(mStore.readGeofencesNear(0.0, 179.998, 1000)));
+    }
+
+    @Test
+    public void upgrade_fromVersion1KeepsGeofences() {
+        SQLiteDatabase db = createVersion1Database();
+        ContentValues values = new ContentValues();
+        values.put("id", "old");
+        values.put("latitude", 50.0);
+        values.put("longitude", 30.0);
+        values.put("radius", 100.0);
+        values.put("wifi_name", "home");
+        db.insert("geofences", null, values);
+        db.setVersion(1);
+        db.close();
+
+        mStore = new SQLiteGeofenceStore(mContext);
+        GeofenceData old = mStore.readGeofence("old");
+
+        assertNotNull(old);
+        assertEquals("home", old.getWifiName());
+        assertNull(old.getVertices());
+        assertNull(old.getRoute());
+        assertNull(old.getWifiSsids());
+        assertNull(old.getWifiBssids());
+
+        GeofenceData corridor = geofence("corridor", 50.1, 30.1, 1000);
+        corridor.setRoute(new double[]{50.095, 30.1, 50.105, 30.1});
+        corridor.setRouteDistance(50);
+        corridor.setWifiBssids(new String[]{"00:11:22:33:44:55"});
+        mStore.saveGeofences(Collections.singletonList(corridor));
+        GeofenceData read = mStore.readGeofence("corridor");
+        assertTrue(Arrays.equals(corridor.getRoute(), read.getRoute()));
+        assertEquals(50.0, read.getRouteDistance());
+        assertEquals(1, mStore.readGeofencesOnWifi(null, "00:11:22:33:44:55").size());
+    }
+
+    @Test
+    public void upgrade_fromVersion4ReencodesLists() throws IOException {
+        SQLiteDatabase db = createVersion1Database();
+        db.execSQL("ALTER TABLE geofences ADD COLUMN vertices BLOB");
+        db.execSQL("ALTER TABLE geofences ADD COLUMN route BLOB");
+        db.execSQL("ALTER TABLE geofences ADD COLUMN route_distance REAL");
+        db.execSQL("ALTER TABLE geofences ADD COLUMN wifi_ssids BLOB");
+        db.execSQL("ALTER TABLE geofences ADD COLUMN wifi_bssids BLOB");
+        double[] vertices = {50.499, 30.499, 50.501, 30.499, 50.501, 30.501};
+        double[] route = {50.095, 30.1, 50.105, 30.1};
+        ContentValues values = new ContentValues();
+        values.put("id", "old");
+        values.put("latitude", 50.5);
+        values.put("longitude", 30.5);
+        values.put("radius", 300.0);
+        // Version 4 stored plain doubles and strings without a count.
+        ByteBuffer verticesBuffer = ByteBuffer.allocate(vertices.length * 8);
+        verticesBuffer.asDoubleBuffer().put(vertices);
+        values.put("vertices", verticesBuffer.array());
+        ByteBuffer routeBuffer = ByteBuffer.allocate(route.length * 8);
+        routeBuffer.asDoubleBuffer().put(route);
+        values.put("route", routeBuffer.array());
+        values.put("route_distance", 50.0);
+        ByteArrayOutputStream ssids = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(ssids);
+        out.writeUTF("home");
+        out.writeUTF("office");
+        values.put("wifi_ssids", ssids.toByteArray());
+        db.insert("geofences", null, values);
+        db.setVersion(4);
+        db.close();
+
+        mStore = new SQLiteGeofenceStore(mContext);
+        GeofenceData old = mStore.readGeofence("old");
+
+        assertTrue(Arrays.equals(vertices, old.getVertices()));
+        assertTrue(Arrays.equals(route, old.getRoute()));
+        assertTrue(Arrays.equals(new String[]{"home", "office"}, old.getWifiSsids()));
+        assertNull(old.getWifiBssids());
+        assertEquals(1, mStore.readGeofencesOnWifi("office", null).size());
+    }
+
+    /**
+     * Creates the database as version 1 of the app did, returns it open.
+     */
+    private SQLiteDatabase createVersion1Database() {
+        mContext.deleteDatabase(DATABASE_NAME);
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(DATABASE_NAME), null);
+        db.execSQL("CREATE TABLE geofences (id TEXT PRIMARY KEY, latitude REAL NOT NULL, " +
+                "longitude REAL NOT NULL, radius REAL NOT NULL, wifi_name TEXT)");
+        db.execSQL("CREATE TABLE geofence_cells (cell INTEGER NOT NULL, " +
+                "geofence_id TEXT NOT NULL, PRIMARY KEY (cell, geofence_id))");
+        db.execSQL("CREATE INDEX geofence_cells_geofence_id ON geofence_cells (geofence_id)");
+        return db;
+    }
+
+    private static Set<String> idsOf(List<GeofenceData> geofences) {
+        Set<String> ids = new HashSet<>();
+        for (GeofenceData geofence : geofences) {
+            ids.add(geofence.getId());
+        }
+        return ids;
+    }
+
+    private static GeofenceData geofence(String id, double latitude, double longitude,
+                                         double radius) {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId(id);
+        geofence.setLatitude(latitude);
+        geofence.setLongitude(longitude);
+        geofence.setRadius(radius);
+        return geofence;
+    }
+}
@@ -43,6 +43,11 @@ public class GeofenceTransitionDetectorTest {
             public String getSsid() {
                 return "another_ssid";
             }
+
+            @Override
+            public String getBssid() {
+                return null;
+            }
         });
 
         assertEquals(state, Constants.GEOFENCE_STATE_INSIDE);
@@ -62,6 +67,36 @@ public class GeofenceTransitionDetectorTest {
             public String getSsid() {
                 return "same_ssid";
             }
+
+            @Override
+            public String getBssid() {
+                return null;
+            }
+        });
+
+        assertEquals(state, Constants.GEOFENCE_STATE_INSIDE);
+    }
+
+    @Test
+    public void detectTransitionState_sameAccessPoint() {
+
+        when(mDataSource.readGeofenceTransition()).thenReturn(Geofence.GEOFENCE_TRANSITION_EXIT);
+        GeofenceData geofenceData = new GeofenceData();
+        geofenceData.setWifiName("some_ssid");
+        geofenceData.setWifiBssids(new String[]{"00:11:22:33:44:55", "00:11:22:33:44:AA"});
+        when(mDataSource.readGeofenceData()).thenReturn(geofenceData);
+        mGeofenceTransitionDetector = new GeofenceTransitionDetector(mDataSource);
+
+        int state = mGeofenceTransitionDetector.detectTransitionState(new GeofenceTransitionDetector.SsidProvider() {
+            @Override
+            public String getSsid() {
+                return "guest_ssid";
+            }
+
+            @Override
+            public String getBssid() {
+                return "00:11:22:33:44:aa";
+            }
         });
 
         assertEquals(state, Constants.GEOFENCE_STATE_INSIDE);
@@ -81,6 +116,11 @@ public class GeofenceTransitionDetectorTest {
             public String getSsid() {
                 return "another_ssid";
             }
+
+            @Override
+            public String getBssid() {
+                return null;
+            }
         });
 
         assertEquals(state, Constants.GEOFENCE_STATE_OUTSIDE);
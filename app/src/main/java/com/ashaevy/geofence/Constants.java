@@ -1,5 +1,6 @@
 package com.ashaevy.geofence;
 
+import com.ashaevy.geofence.transition.GeofenceTransitions;
 import com.google.android.gms.maps.model.LatLng;
 
 /**
@@ -18,6 +19,7 @@ public final class Constants {
     public static final String GEOFENCES_ADDED_KEY = PACKAGE_NAME + ".GEOFENCES_ADDED_KEY";
     public static final String GEOFENCE_DATA_KEY = PACKAGE_NAME + ".GEOFENCE_DATA_KEY";
     public static final String GEOFENCE_TRANSITION_KEY = PACKAGE_NAME + ".GEOFENCE_TRANSITION_KEY";
+    public static final String PAGED_GEOFENCES_KEY = PACKAGE_NAME + ".PAGED_GEOFENCES_KEY";
 
     public static final double RADIUS_OF_EARTH_METERS = 6371009;
 
@@ -25,9 +27,76 @@ public final class Constants {
     public static final float DEFAULT_RADIUS = 7000;
     public static final String DEFAULT_WIFI = "test";
 
-    public static final int GEOFENCE_STATE_UNKNOWN = -1;
-    public static final int GEOFENCE_STATE_INSIDE = 1;
-    public static final int GEOFENCE_STATE_OUTSIDE = 2;
+    /**
+     * Writes of the last transition and added flag made within this window are coalesced.
+     */
+    public static final long STATE_WRITE_BEHIND_WINDOW_MILLIS = 2000;
+
+    /**
+     * Vertices of stored polygon geofences closer than this to the simplified outline
+     * are dropped.
+     */
+    public static final double POLYGON_SIMPLIFICATION_TOLERANCE_METERS = 2;
+
+    public static final String TRANSITION_JOURNAL_DIRECTORY = "transitions";
+    /**
+     * One segment of 16384 records takes 1 MB.
+     */
+    public static final int TRANSITION_JOURNAL_SEGMENT_RECORDS = 16384;
+    public static final long TRANSITION_JOURNAL_RETENTION_MILLIS = 180L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Location updates far from the geofence border slow down to this interval.
+     */
+    public static final long SAMPLING_MAX_INTERVAL_MILLIS = 16 * 60 * 1000;
+    /**
+     * Fastest plausible device speed, about 150 km/h.
+     */
+    public static final double SAMPLING_MAX_SPEED_METERS_PER_SECOND = 42;
+
+    /**
+     * Location fixes are delivered in batches of about this many fixes, see
+     * {@code LocationRequest.setMaxWaitTime()}, when the sampling interval is longer than
+     * the minimum one. Transitions are detected up to that many intervals late, 1 delivers
+     * every fix at once.
+     */
+    public static final int LOCATION_BATCH_FIXES = 6;
+
+    /**
+     * Consecutive fixes further apart are not connected when looking for geofence crossings
+     * between them.
+     */
+    public static final long CROSSING_MAX_GAP_MILLIS = 2 * SAMPLING_MAX_INTERVAL_MILLIS;
+
+    /**
+     * Connectivity changes are handled only if they last this long, so flapping networks
+     * don't trigger transition checks.
+     */
+    public static final long CONNECTIVITY_DEBOUNCE_MILLIS = 3000;
+
+    /**
+     * Geofencing intents waiting to be handled, the oldest is dropped above this.
+     */
+    public static final int TRANSITION_QUEUE_CAPACITY = 256;
+
+    /**
+     * Maximum number of geofences Play Services monitors for one app.
+     */
+    public static final int GEOFENCE_REGISTRATION_LIMIT = 100;
+
+    /**
+     * Stored geofences with the border farther from the device are not registered.
+     */
+    public static final double GEOFENCE_PAGING_SEARCH_RADIUS_METERS = 50000;
+
+    /**
+     * Smallest refresh region, smaller ones are not detected reliably.
+     */
+    public static final double GEOFENCE_REFRESH_MIN_RADIUS_METERS = 200;
+
+    public static final int GEOFENCE_STATE_UNKNOWN = GeofenceTransitions.STATE_UNKNOWN;
+    public static final int GEOFENCE_STATE_INSIDE = GeofenceTransitions.STATE_INSIDE;
+    public static final int GEOFENCE_STATE_OUTSIDE = GeofenceTransitions.STATE_OUTSIDE;
 
     public static final int LOCATION_PERMISSION_REQUEST_CODE = 1;
 
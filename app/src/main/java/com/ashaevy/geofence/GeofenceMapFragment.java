@@ -13,6 +13,7 @@ import android.util.TypedValue;
 import android.view.View;
 
 import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.utils.GeoPoint;
 import com.ashaevy.geofence.utils.SphericalUtil;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
@@ -202,10 +203,16 @@ public class GeofenceMapFragment extends SupportMapFragment implements GeofenceC
 
     private LatLngBounds calculateBounds(LatLng center, double radius) {
         return new LatLngBounds.Builder().
-                include(SphericalUtil.computeOffset(center, radius, 0)).
-                include(SphericalUtil.computeOffset(center, radius, 90)).
-                include(SphericalUtil.computeOffset(center, radius, 180)).
-                include(SphericalUtil.computeOffset(center, radius, 270)).build();
+                include(computeOffset(center, radius, 0)).
+                include(computeOffset(center, radius, 90)).
+                include(computeOffset(center, radius, 180)).
+                include(computeOffset(center, radius, 270)).build();
+    }
+
+    private static LatLng computeOffset(LatLng from, double distance, double heading) {
+        GeoPoint offset = SphericalUtil.computeOffset(
+                new GeoPoint(from.latitude, from.longitude), distance, heading);
+        return new LatLng(offset.latitude, offset.longitude);
     }
 
     @Override
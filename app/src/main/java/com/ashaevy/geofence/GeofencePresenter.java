@@ -8,8 +8,8 @@ import android.os.Bundle;
 
 import com.ashaevy.geofence.data.GeofenceData;
 import com.ashaevy.geofence.data.source.GeofenceDataSource;
+import com.ashaevy.geofence.transition.CachedSsidProvider;
 import com.ashaevy.geofence.transition.GeofenceHelper;
-import com.ashaevy.geofence.utils.NetworkUtils;
 import com.google.android.gms.maps.model.LatLng;
 
 import java.util.Date;
@@ -86,6 +86,7 @@ public class GeofencePresenter implements GeofenceContract.Presenter {
     @Override
     public void stop(Context context) {
         mGeofenceHelper.stop();
+        mGeofenceDataSource.flush();
     }
 
     @Override
@@ -138,7 +139,7 @@ public class GeofencePresenter implements GeofenceContract.Presenter {
 
     @Override
     public void setCurrentWiFi(Context context) {
-        String currentSsid = NetworkUtils.getCurrentSsid(context);
+        String currentSsid = CachedSsidProvider.getInstance(context).getSsid();
         if (currentSsid != null) {
             mCurrentGeofenceData.setWifiName(currentSsid);
             mControlsView.updateGeofence(mCurrentGeofenceData);
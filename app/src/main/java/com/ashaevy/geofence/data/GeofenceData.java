@@ -1,44 +0,0 @@
-package com.ashaevy.geofence.data;
-
-/**
- * POJO that stores data about current geofence configuration.
- */
-
-public class GeofenceData {
-    private double latitude;
-    private double longitude;
-    private String wifiName;
-    private double radius;
-
-    public double getLatitude() {
-        return latitude;
-    }
-
-    public void setLatitude(double latitude) {
-        this.latitude = latitude;
-    }
-
-    public double getLongitude() {
-        return longitude;
-    }
-
-    public void setLongitude(double longitude) {
-        this.longitude = longitude;
-    }
-
-    public String getWifiName() {
-        return wifiName;
-    }
-
-    public void setWifiName(String wifiName) {
-        this.wifiName = wifiName;
-    }
-
-    public void setRadius(double radius) {
-        this.radius = radius;
-    }
-
-    public double getRadius() {
-        return radius;
-    }
-}
@@ -0,0 +1,163 @@
+package com.ashaevy.geofence.data.source;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.ashaevy.geofence.data.GeofenceCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the database that stores geofences and their grid index.
+ */
+class GeofenceDbHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "geofences.db";
+    private static final int DATABASE_VERSION = 5;
+
+    static final String TABLE_GEOFENCES = "geofences";
+    static final String COLUMN_ID = "id";
+    static final String COLUMN_LATITUDE = "latitude";
+    static final String COLUMN_LONGITUDE = "longitude";
+    static final String COLUMN_RADIUS = "radius";
+    static final String COLUMN_WIFI_NAME = "wifi_name";
+    /**
+     * Polygon vertices encoded by {@link GeofenceCodec#encodePoints(double[])}, null for
+     * circles. Added in version 2, plain big-endian doubles before version 5.
+     */
+    static final String COLUMN_VERTICES = "vertices";
+    /**
+     * Corridor route encoded by {@link GeofenceCodec#encodePoints(double[])} and the
+     * distance from it, null for other geofences. Added in version 3, plain big-endian
+     * doubles before version 5.
+     */
+    static final String COLUMN_ROUTE = "route";
+    static final String COLUMN_ROUTE_DISTANCE = "route_distance";
+    /**
+     * SSIDs and BSSIDs of the geofence WiFi networks encoded by
+     * {@link GeofenceCodec#encodeStrings(String[])}, null if there are none. Added in
+     * version 4, strings without a count before version 5.
+     */
+    static final String COLUMN_WIFI_SSIDS = "wifi_ssids";
+    static final String COLUMN_WIFI_BSSIDS = "wifi_bssids";
+
+    /**
+     * Maps {@link com.ashaevy.geofence.utils.GeoGrid} cells to geofences which bounds
+     * cover them.
+     */
+    static final String TABLE_GEOFENCE_CELLS = "geofence_cells";
+    static final String COLUMN_CELL = "cell";
+    static final String COLUMN_GEOFENCE_ID = "geofence_id";
+
+    GeofenceDbHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_GEOFENCES + " (" +
+                COLUMN_ID + " TEXT PRIMARY KEY, " +
+                COLUMN_LATITUDE + " REAL NOT NULL, " +
+                COLUMN_LONGITUDE + " REAL NOT NULL, " +
+                COLUMN_RADIUS + " REAL NOT NULL, " +
+                COLUMN_WIFI_NAME + " TEXT, " +
+                COLUMN_VERTICES + " BLOB, " +
+                COLUMN_ROUTE + " BLOB, " +
+                COLUMN_ROUTE_DISTANCE + " REAL, " +
+                COLUMN_WIFI_SSIDS + " BLOB, " +
+                COLUMN_WIFI_BSSIDS + " BLOB)");
+        db.execSQL("CREATE TABLE " + TABLE_GEOFENCE_CELLS + " (" +
+                COLUMN_CELL + " INTEGER NOT NULL, " +
+                COLUMN_GEOFENCE_ID + " TEXT NOT NULL, " +
+                "PRIMARY KEY (" + COLUMN_CELL + ", " + COLUMN_GEOFENCE_ID + "))");
+        db.execSQL("CREATE INDEX " + TABLE_GEOFENCE_CELLS + "_" + COLUMN_GEOFENCE_ID +
+                " ON " + TABLE_GEOFENCE_CELLS + " (" + COLUMN_GEOFENCE_ID + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE_GEOFENCES + " ADD COLUMN " +
+                    COLUMN_VERTICES + " BLOB");
+        }
+        if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + TABLE_GEOFENCES + " ADD COLUMN " +
+                    COLUMN_ROUTE + " BLOB");
+            db.execSQL("ALTER TABLE " + TABLE_GEOFENCES + " ADD COLUMN " +
+                    COLUMN_ROUTE_DISTANCE + " REAL");
+        }
+        if (oldVersion < 4) {
+            db.execSQL("ALTER TABLE " + TABLE_GEOFENCES + " ADD COLUMN " +
+                    COLUMN_WIFI_SSIDS + " BLOB");
+            db.execSQL("ALTER TABLE " + TABLE_GEOFENCES + " ADD COLUMN " +
+                    COLUMN_WIFI_BSSIDS + " BLOB");
+        }
+        if (oldVersion < 5) {
+            encodeListsWithCodec(db);
+        }
+    }
+
+    /**
+     * Rewrites vertices, routes and WiFi networks stored before version 5 in the
+     * {@link GeofenceCodec} format.
+     */
+    private static void encodeListsWithCodec(SQLiteDatabase db) {
+        Cursor cursor = db.query(TABLE_GEOFENCES, new String[]{COLUMN_ID, COLUMN_VERTICES,
+                        COLUMN_ROUTE, COLUMN_WIFI_SSIDS, COLUMN_WIFI_BSSIDS},
+                COLUMN_VERTICES + " IS NOT NULL OR " + COLUMN_ROUTE + " IS NOT NULL OR " +
+                        COLUMN_WIFI_SSIDS + " IS NOT NULL OR " + COLUMN_WIFI_BSSIDS +
+                        " IS NOT NULL", null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                ContentValues values = new ContentValues();
+                if (!cursor.isNull(1)) {
+                    values.put(COLUMN_VERTICES, GeofenceCodec.encodePoints(
+                            decodeVersion4Points(cursor.getBlob(1))));
+                }
+                if (!cursor.isNull(2)) {
+                    values.put(COLUMN_ROUTE, GeofenceCodec.encodePoints(
+                            decodeVersion4Points(cursor.getBlob(2))));
+                }
+                if (!cursor.isNull(3)) {
+                    values.put(COLUMN_WIFI_SSIDS, GeofenceCodec.encodeStrings(
+                            decodeVersion4Strings(cursor.getBlob(3))));
+                }
+                if (!cursor.isNull(4)) {
+                    values.put(COLUMN_WIFI_BSSIDS, GeofenceCodec.encodeStrings(
+                            decodeVersion4Strings(cursor.getBlob(4))));
+                }
+                db.update(TABLE_GEOFENCES, values, COLUMN_ID + " = ?",
+                        new String[]{cursor.getString(0)});
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static double[] decodeVersion4Points(byte[] data) {
+        double[] latLngs = new double[data.length / 8];
+        ByteBuffer.wrap(data).asDoubleBuffer().get(latLngs);
+        return latLngs;
+    }
+
+    private static String[] decodeVersion4Strings(byte[] data) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        List<String> strings = new ArrayList<>();
+        try {
+            while (in.available() > 0) {
+                strings.add(in.readUTF());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted WiFi networks.", e);
+        }
+        return strings.toArray(new String[strings.size()]);
+    }
+}
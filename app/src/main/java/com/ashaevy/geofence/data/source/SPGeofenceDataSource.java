@@ -1,30 +1,90 @@
 package com.ashaevy.geofence.data.source;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.util.Base64;
+import android.util.Log;
 
 import com.ashaevy.geofence.Constants;
+import com.ashaevy.geofence.data.GeofenceCodec;
 import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.data.GeofenceIngest;
 import com.google.gson.Gson;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+
 /**
- * Data source that store geofence data in Shared Preferences using GSON.
+ * Data source that store geofence data in Shared Preferences using {@link GeofenceCodec}
+ * encoded as Base64. Values saved as GSON JSON by earlier versions are read and rewritten
+ * in the binary format. Geofence store is kept in SQLite, see {@link SQLiteGeofenceStore};
+ * polygons are simplified by {@link GeofenceIngest} before they are stored.
+ *
+ * Shared instance is wrapped into {@link CachingGeofenceDataSource} and
+ * {@link WriteBehindGeofenceDataSource}, which are invalidated when preferences are changed
+ * bypassing them. Write-behind is flushed when the app goes to background.
  */
 public class SPGeofenceDataSource implements GeofenceDataSource {
 
-    private static SPGeofenceDataSource instance;
+    private static final String TAG = "SPGeofenceDataSource";
+
+    private static CachingGeofenceDataSource instance;
 
-    private Gson gson = new Gson();
     private SharedPreferences mSharedPreferences;
+    private final SQLiteGeofenceStore mGeofenceStore;
+    private final GeofenceIngest mGeofenceIngest =
+            new GeofenceIngest(Constants.POLYGON_SIMPLIFICATION_TOLERANCE_METERS);
+
+    private CachingGeofenceDataSource mCache;
+    private WriteBehindGeofenceDataSource mWriteBehind;
+    /**
+     * Last value written or read by this data source, used to skip invalidation of the cache
+     * on changes made through it.
+     */
+    private volatile String mLastGeofenceDataValue;
+
+    // SharedPreferences keeps listeners in a weak map, so the listener must be a field.
+    private final SharedPreferences.OnSharedPreferenceChangeListener mPreferenceChangeListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            CachingGeofenceDataSource cache = mCache;
+            WriteBehindGeofenceDataSource writeBehind = mWriteBehind;
+            if (cache == null || writeBehind == null) {
+                return;
+            }
+            if (Constants.GEOFENCE_DATA_KEY.equals(key)) {
+                String value = sharedPreferences.getString(key, null);
+                if (value == null || !value.equals(mLastGeofenceDataValue)) {
+                    cache.invalidateGeofenceData();
+                }
+            } else if (Constants.GEOFENCE_TRANSITION_KEY.equals(key)) {
+                // The cache reads through write-behind, so it is invalidated first.
+                writeBehind.invalidateGeofenceTransition();
+                cache.invalidateGeofenceTransition();
+            } else if (Constants.GEOFENCES_ADDED_KEY.equals(key)) {
+                writeBehind.invalidateGeofenceAdded();
+                cache.invalidateGeofenceAdded();
+            }
+        }
+    };
 
     private SPGeofenceDataSource(Context context) {
         mSharedPreferences = context.getSharedPreferences(Constants.SHARED_PREFERENCES_NAME,
                 Context.MODE_PRIVATE);
+        mSharedPreferences.registerOnSharedPreferenceChangeListener(mPreferenceChangeListener);
+        mGeofenceStore = new SQLiteGeofenceStore(context);
     }
 
     @Override
     public void saveGeofenceData(GeofenceData geofenceData) {
-        String geofenceDataString = gson.toJson(geofenceData);
+        String geofenceDataString = Base64.encodeToString(GeofenceCodec.encode(geofenceData),
+                Base64.NO_WRAP);
+        mLastGeofenceDataValue = geofenceDataString;
         SharedPreferences.Editor editor = mSharedPreferences.edit();
         editor.putString(Constants.GEOFENCE_DATA_KEY, geofenceDataString);
         editor.apply();
@@ -32,14 +92,28 @@ public class SPGeofenceDataSource implements GeofenceDataSource {
 
     @Override
     public GeofenceData readGeofenceData() {
-        String json = mSharedPreferences.getString(Constants.GEOFENCE_DATA_KEY, null);
-        if (json == null) {
+        String value = mSharedPreferences.getString(Constants.GEOFENCE_DATA_KEY, null);
+        if (value == null) {
+            return generateDefaultGeofence();
+        }
+        if (value.startsWith("{")) {
+            // Stored as JSON before the binary format was introduced.
+            GeofenceData geofenceData = new Gson().fromJson(value, GeofenceData.class);
+            saveGeofenceData(geofenceData);
+            return geofenceData;
+        }
+        try {
+            GeofenceData geofenceData = GeofenceCodec.decode(Base64.decode(value,
+                    Base64.NO_WRAP));
+            mLastGeofenceDataValue = value;
+            return geofenceData != null ? geofenceData : generateDefaultGeofence();
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Can't decode stored geofence.", e);
             return generateDefaultGeofence();
         }
-        return gson.fromJson(json, GeofenceData.class);
     }
 
-    private GeofenceData generateDefaultGeofence() {
+    static GeofenceData generateDefaultGeofence() {
         GeofenceData result = new GeofenceData();
         result.setLatitude(Constants.KIEV.latitude);
         result.setLongitude(Constants.KIEV.longitude);
@@ -72,9 +146,76 @@ public class SPGeofenceDataSource implements GeofenceDataSource {
         return mSharedPreferences.getInt(Constants.GEOFENCE_TRANSITION_KEY, -1);
     }
 
+    @Override
+    public void saveGeofences(Collection<GeofenceData> geofences) {
+        GeofenceIngest.Result result = mGeofenceIngest.ingest(geofences);
+        if (result.polygonCount > 0) {
+            Log.i(TAG, "Ingested " + result);
+        }
+        mGeofenceStore.saveGeofences(result.geofences);
+    }
+
+    @Override
+    public void deleteGeofences(Collection<String> ids) {
+        mGeofenceStore.deleteGeofences(ids);
+    }
+
+    @Override
+    public GeofenceData readGeofence(String id) {
+        return mGeofenceStore.readGeofence(id);
+    }
+
+    @Override
+    public List<GeofenceData> readGeofencesNear(double latitude, double longitude,
+                                                double distance) {
+        return mGeofenceStore.readGeofencesNear(latitude, longitude, distance);
+    }
+
+    @Override
+    public List<GeofenceData> readGeofencesOnWifi(String ssid, String bssid) {
+        return mGeofenceStore.readGeofencesOnWifi(ssid, bssid);
+    }
+
+    @Override
+    public int geofenceCount() {
+        return mGeofenceStore.geofenceCount();
+    }
+
+    @Override
+    public void flush() {
+        // Nothing is delayed here, apply() already schedules the disk write.
+    }
+
     public static GeofenceDataSource getInstance(Context context) {
         if (instance == null) {
-            instance = new SPGeofenceDataSource(context.getApplicationContext());
+            Context applicationContext = context.getApplicationContext();
+            SPGeofenceDataSource source = new SPGeofenceDataSource(applicationContext);
+            final WriteBehindGeofenceDataSource writeBehind = new WriteBehindGeofenceDataSource(
+                    source, Executors.newSingleThreadScheduledExecutor(),
+                    Constants.STATE_WRITE_BEHIND_WINDOW_MILLIS);
+            instance = new CachingGeofenceDataSource(writeBehind);
+            source.mWriteBehind = writeBehind;
+            source.mCache = instance;
+
+            // A backgrounded process may be killed without any callback, so pending state
+            // is persisted as soon as the UI is hidden or memory gets low.
+            applicationContext.registerComponentCallbacks(new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    if (level >= TRIM_MEMORY_UI_HIDDEN) {
+                        writeBehind.flush();
+                    }
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+
+                @Override
+                public void onLowMemory() {
+                    writeBehind.flush();
+                }
+            });
         }
         return instance;
     }
@@ -0,0 +1,312 @@
+package com.ashaevy.geofence.data.source;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.ashaevy.geofence.data.GeofenceCodec;
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.index.WifiIndex;
+import com.ashaevy.geofence.utils.GeoBounds;
+import com.ashaevy.geofence.utils.GeoGrid;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_CELL;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_GEOFENCE_ID;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_ID;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_LATITUDE;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_LONGITUDE;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_RADIUS;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_ROUTE;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_ROUTE_DISTANCE;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_VERTICES;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_WIFI_BSSIDS;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_WIFI_NAME;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.COLUMN_WIFI_SSIDS;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.TABLE_GEOFENCES;
+import static com.ashaevy.geofence.data.source.GeofenceDbHelper.TABLE_GEOFENCE_CELLS;
+
+/**
+ * Stores many geofences in SQLite. Every geofence is indexed by {@link GeoGrid} cells
+ * covered by its bounds, so lookup near a point reads only geofences from a few cells
+ * instead of scanning the whole table.
+ *
+ * Geofences with WiFi networks are also kept in a {@link WifiIndex}, built on the first
+ * network lookup and dropped on every write, so a network change reads only geofences of
+ * the network by their ids.
+ */
+class SQLiteGeofenceStore {
+
+    private static final String[] GEOFENCE_COLUMNS = {COLUMN_ID, COLUMN_LATITUDE,
+            COLUMN_LONGITUDE, COLUMN_RADIUS, COLUMN_WIFI_NAME, COLUMN_VERTICES, COLUMN_ROUTE,
+            COLUMN_ROUTE_DISTANCE, COLUMN_WIFI_SSIDS, COLUMN_WIFI_BSSIDS};
+
+    private static final String[] WIFI_COLUMNS = {COLUMN_ID, COLUMN_WIFI_NAME,
+            COLUMN_WIFI_SSIDS, COLUMN_WIFI_BSSIDS};
+
+    private final GeofenceDbHelper mDbHelper;
+
+    private final Object mWifiIndexLock = new Object();
+    private WifiIndex mWifiIndex;
+
+    SQLiteGeofenceStore(Context context) {
+        mDbHelper = new GeofenceDbHelper(context);
+    }
+
+    void saveGeofences(Collection<GeofenceData> geofences) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        SQLiteStatement insertGeofence = db.compileStatement("INSERT OR REPLACE INTO " +
+                TABLE_GEOFENCES + " (" + COLUMN_ID + ", " + COLUMN_LATITUDE + ", " +
+                COLUMN_LONGITUDE + ", " + COLUMN_RADIUS + ", " + COLUMN_WIFI_NAME + ", " +
+                COLUMN_VERTICES + ", " + COLUMN_ROUTE + ", " + COLUMN_ROUTE_DISTANCE + ", " +
+                COLUMN_WIFI_SSIDS + ", " + COLUMN_WIFI_BSSIDS +
+                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        SQLiteStatement deleteCells = compileDeleteCells(db);
+        SQLiteStatement insertCell = db.compileStatement("INSERT OR IGNORE INTO " +
+                TABLE_GEOFENCE_CELLS + " (" + COLUMN_CELL + ", " + COLUMN_GEOFENCE_ID +
+                ") VALUES (?, ?)");
+        db.beginTransaction();
+        try {
+            for (GeofenceData geofence : geofences) {
+                String id = geofence.getId();
+                if (id == null) {
+                    throw new IllegalArgumentException("Geofence without id can't be stored.");
+                }
+                insertGeofence.bindString(1, id);
+                insertGeofence.bindDouble(2, geofence.getLatitude());
+                insertGeofence.bindDouble(3, geofence.getLongitude());
+                insertGeofence.bindDouble(4, geofence.getRadius());
+                if (geofence.getWifiName() != null) {
+                    insertGeofence.bindString(5, geofence.getWifiName());
+                } else {
+                    insertGeofence.bindNull(5);
+                }
+                if (geofence.getVertices() != null) {
+                    insertGeofence.bindBlob(6, GeofenceCodec.encodePoints(geofence.getVertices()));
+                } else {
+                    insertGeofence.bindNull(6);
+                }
+                if (geofence.getRoute() != null) {
+                    insertGeofence.bindBlob(7, GeofenceCodec.encodePoints(geofence.getRoute()));
+                    insertGeofence.bindDouble(8, geofence.getRouteDistance());
+                } else {
+                    insertGeofence.bindNull(7);
+                    insertGeofence.bindNull(8);
+                }
+                bindStrings(insertGeofence, 9, geofence.getWifiSsids());
+                bindStrings(insertGeofence, 10, geofence.getWifiBssids());
+                insertGeofence.executeInsert();
+
+                deleteCells.bindString(1, id);
+                deleteCells.executeUpdateDelete();
+
+                int[] cells = GeoGrid.cellsCovering(GeoBounds.ofCircle(geofence.getLatitude(),
+                        geofence.getLongitude(), geofence.getRadius()));
+                for (int cell : cells) {
+                    insertCell.bindLong(1, cell);
+                    insertCell.bindString(2, id);
+                    insertCell.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            invalidateWifiIndex();
+            insertGeofence.close();
+            deleteCells.close();
+            insertCell.close();
+        }
+    }
+
+    void deleteGeofences(Collection<String> ids) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        SQLiteStatement deleteGeofence = db.compileStatement("DELETE FROM " + TABLE_GEOFENCES +
+                " WHERE " + COLUMN_ID + " = ?");
+        SQLiteStatement deleteCells = compileDeleteCells(db);
+        db.beginTransaction();
+        try {
+            for (String id : ids) {
+                deleteGeofence.bindString(1, id);
+                deleteGeofence.executeUpdateDelete();
+                deleteCells.bindString(1, id);
+                deleteCells.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            invalidateWifiIndex();
+            deleteGeofence.close();
+            deleteCells.close();
+        }
+    }
+
+    GeofenceData readGeofence(String id) {
+        Cursor cursor = mDbHelper.getReadableDatabase().query(TABLE_GEOFENCES, GEOFENCE_COLUMNS,
+                COLUMN_ID + " = ?", new String[]{id}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? readGeofence(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    List<GeofenceData> readGeofencesNear(double latitude, double longitude, double distance) {
+        int[] cells = GeoGrid.cellsCovering(GeoBounds.ofCircle(latitude, longitude,
+                Math.max(distance, 0)));
+        String sql;
+        if (cells.length == 1 && cells[0] == GeoGrid.OVERSIZED_CELL) {
+            // Query area is too large for the grid, fall back to the full scan.
+            sql = "SELECT " + columnList("") + " FROM " + TABLE_GEOFENCES;
+        } else {
+            StringBuilder cellList = new StringBuilder().append(GeoGrid.OVERSIZED_CELL);
+            for (int cell : cells) {
+                cellList.append(',').append(cell);
+            }
+            sql = "SELECT DISTINCT " + columnList("g.") + " FROM " + TABLE_GEOFENCE_CELLS +
+                    " c JOIN " + TABLE_GEOFENCES + " g ON g." + COLUMN_ID + " = c." +
+                    COLUMN_GEOFENCE_ID + " WHERE c." + COLUMN_CELL + " IN (" + cellList + ")";
+        }
+
+        List<GeofenceData> result = new ArrayList<>();
+        GeoPoint point = new GeoPoint(latitude, longitude);
+        Cursor cursor = mDbHelper.getReadableDatabase().rawQuery(sql, null);
+        try {
+            while (cursor.moveToNext()) {
+                GeofenceData geofence = readGeofence(cursor);
+                double centerDistance = SphericalUtil.computeDistanceBetween(point,
+                        new GeoPoint(geofence.getLatitude(), geofence.getLongitude()));
+                if (centerDistance - geofence.getRadius() <= distance) {
+                    result.add(geofence);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    List<GeofenceData> readGeofencesOnWifi(String ssid, String bssid) {
+        List<GeofenceData> result = new ArrayList<>();
+        for (String id : wifiIndex().findFenceIds(ssid, bssid)) {
+            GeofenceData geofence = readGeofence(id);
+            if (geofence != null) {
+                result.add(geofence);
+            }
+        }
+        return result;
+    }
+
+    private WifiIndex wifiIndex() {
+        synchronized (mWifiIndexLock) {
+            if (mWifiIndex == null) {
+                mWifiIndex = new WifiIndex(readWifiNetworks());
+            }
+            return mWifiIndex;
+        }
+    }
+
+    private void invalidateWifiIndex() {
+        synchronized (mWifiIndexLock) {
+            mWifiIndex = null;
+        }
+    }
+
+    /**
+     * Reads ids and WiFi networks of geofences that have any.
+     */
+    private List<GeofenceData> readWifiNetworks() {
+        List<GeofenceData> result = new ArrayList<>();
+        Cursor cursor = mDbHelper.getReadableDatabase().query(TABLE_GEOFENCES, WIFI_COLUMNS,
+                COLUMN_WIFI_NAME + " IS NOT NULL OR " + COLUMN_WIFI_SSIDS + " IS NOT NULL OR " +
+                        COLUMN_WIFI_BSSIDS + " IS NOT NULL", null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                GeofenceData geofence = new GeofenceData();
+                geofence.setId(cursor.getString(0));
+                geofence.setWifiName(cursor.isNull(1) ? null : cursor.getString(1));
+                geofence.setWifiSsids(cursor.isNull(2) ? null :
+                        decodeStrings(cursor.getBlob(2)));
+                geofence.setWifiBssids(cursor.isNull(3) ? null :
+                        decodeStrings(cursor.getBlob(3)));
+                result.add(geofence);
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    int geofenceCount() {
+        Cursor cursor = mDbHelper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " +
+                TABLE_GEOFENCES, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static SQLiteStatement compileDeleteCells(SQLiteDatabase db) {
+        return db.compileStatement("DELETE FROM " + TABLE_GEOFENCE_CELLS + " WHERE " +
+                COLUMN_GEOFENCE_ID + " = ?");
+    }
+
+    private static String columnList(String prefix) {
+        StringBuilder columns = new StringBuilder();
+        for (String column : GEOFENCE_COLUMNS) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+            }
+            columns.append(prefix).append(column);
+        }
+        return columns.toString();
+    }
+
+    private static GeofenceData readGeofence(Cursor cursor) {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId(cursor.getString(0));
+        geofence.setLatitude(cursor.getDouble(1));
+        geofence.setLongitude(cursor.getDouble(2));
+        geofence.setRadius(cursor.getDouble(3));
+        geofence.setWifiName(cursor.isNull(4) ? null : cursor.getString(4));
+        geofence.setVertices(cursor.isNull(5) ? null : decodePoints(cursor.getBlob(5)));
+        if (!cursor.isNull(6)) {
+            geofence.setRoute(decodePoints(cursor.getBlob(6)));
+            geofence.setRouteDistance(cursor.getDouble(7));
+        }
+        geofence.setWifiSsids(cursor.isNull(8) ? null : decodeStrings(cursor.getBlob(8)));
+        geofence.setWifiBssids(cursor.isNull(9) ? null : decodeStrings(cursor.getBlob(9)));
+        return geofence;
+    }
+
+    private static void bindStrings(SQLiteStatement statement, int index, String[] strings) {
+        if (strings != null) {
+            statement.bindBlob(index, GeofenceCodec.encodeStrings(strings));
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    private static String[] decodeStrings(byte[] data) {
+        try {
+            return GeofenceCodec.decodeStrings(data);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted WiFi networks.", e);
+        }
+    }
+
+    private static double[] decodePoints(byte[] data) {
+        try {
+            return GeofenceCodec.decodePoints(data);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted geofence points.", e);
+        }
+    }
+}
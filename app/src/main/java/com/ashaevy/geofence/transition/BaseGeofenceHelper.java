@@ -5,7 +5,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.location.Location;
-import android.support.v4.content.LocalBroadcastManager;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.ashaevy.geofence.Constants;
@@ -30,6 +34,25 @@ public abstract class BaseGeofenceHelper implements GeofenceHelper {
 
     protected GoogleApiClient mGoogleApiClient;
 
+    protected final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Written and read on the main thread only.
+     */
+    private boolean mStarted;
+    /**
+     * Used on the main thread only.
+     */
+    private ConnectivityTracker mConnectivityTracker;
+    private final Runnable mSettleConnectivity = new Runnable() {
+        @Override
+        public void run() {
+            if (mConnectivityTracker != null &&
+                    mConnectivityTracker.settle(SystemClock.elapsedRealtime())) {
+                notifyAboutNetworkChange();
+            }
+        }
+    };
+
     public BaseGeofenceHelper(Context mContext) {
         this.mContext = mContext;
     }
@@ -41,10 +64,9 @@ public abstract class BaseGeofenceHelper implements GeofenceHelper {
 
     @Override
     public void start() {
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(GeofenceTransitionDetector.GEOFENCE_UPDATED);
-        LocalBroadcastManager.getInstance(mContext).registerReceiver(mGeofenceUpdateReceiver,
-                filter);
+        mStarted = true;
+        mConnectivityTracker = new ConnectivityTracker(Constants.CONNECTIVITY_DEBOUNCE_MILLIS);
+        TransitionEventBus.getDefault().register(mTransitionListener);
         registerNetworkReceiver(mContext);
         mGoogleApiClient.connect();
     }
@@ -52,7 +74,14 @@ public abstract class BaseGeofenceHelper implements GeofenceHelper {
     @Override
     public void stop() {
         unregisterNetworkReceiver(mContext);
-        LocalBroadcastManager.getInstance(mContext).unregisterReceiver(mGeofenceUpdateReceiver);
+        mMainHandler.removeCallbacks(mSettleConnectivity);
+        Log.d(TAG, "Connectivity changes forwarded: " +
+                mConnectivityTracker.getForwardedCount() + ", duplicates suppressed: " +
+                mConnectivityTracker.getDuplicateCount() + ", flaps suppressed: " +
+                mConnectivityTracker.getFlapCount());
+        mConnectivityTracker = null;
+        TransitionEventBus.getDefault().unregister(mTransitionListener);
+        mStarted = false;
         mGoogleApiClient.disconnect();
     }
 
@@ -100,21 +129,69 @@ public abstract class BaseGeofenceHelper implements GeofenceHelper {
 
     protected abstract void buildGoogleApiClient();
 
+    /**
+     * Forwards only changes of the network type or SSID that last for
+     * {@link Constants#CONNECTIVITY_DEBOUNCE_MILLIS}, see {@link ConnectivityTracker}.
+     *
+     * The state is taken from the broadcast extras, so no binder calls are made on the main
+     * thread; the SSID is read by the state check that runs after the debounce.
+     */
     private class NetworkReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
-            if (CONNECTIVITY_ACTION.equals(intent.getAction()) && mPresenter.geofenceAdded()) {
-                notifyAboutNetworkChange();
+            if (!CONNECTIVITY_ACTION.equals(intent.getAction()) || !mPresenter.geofenceAdded()) {
+                return;
+            }
+            // Receivers are called in no particular order, the SSID must not be stale.
+            CachedSsidProvider.getInstance(context).invalidate();
+
+            NetworkInfo networkInfo =
+                    intent.getParcelableExtra(ConnectivityManager.EXTRA_NETWORK_INFO);
+            int networkType;
+            String networkName;
+            if (intent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY, false)) {
+                networkType = ConnectivityTracker.TYPE_NONE;
+                networkName = null;
+            } else if (networkInfo != null && networkInfo.isConnected()) {
+                networkType = networkInfo.getType();
+                // Extra info of a WIFI network is its quoted SSID.
+                networkName = networkType == ConnectivityManager.TYPE_WIFI ?
+                        networkInfo.getExtraInfo() : null;
+            } else {
+                // A network other than the active one went down, the state is the same.
+                return;
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            long deadline = mConnectivityTracker.onEvent(now, networkType, networkName);
+            mMainHandler.removeCallbacks(mSettleConnectivity);
+            if (deadline >= 0) {
+                mMainHandler.postDelayed(mSettleConnectivity, deadline - now);
             }
         }
     }
 
-    private BroadcastReceiver mGeofenceUpdateReceiver = new BroadcastReceiver() {
+    /**
+     * Events published on the main thread are handled right away. Events from the
+     * evaluation pipeline and from {@link GeofenceTransitionProcessor}, which handles
+     * Location Services intents on its worker thread, are posted to the main thread.
+     */
+    private final TransitionEventBus.Listener mTransitionListener =
+            new TransitionEventBus.Listener() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            int newGeofenceState = intent.getIntExtra(GeofenceTransitionDetector.
-                    KEY_GEOFENCE_UPDATE_TYPE, Constants.GEOFENCE_STATE_UNKNOWN);
-            mPresenter.updateGeofenceState(newGeofenceState);
+        public void onTransitionEvent(String fenceId, final int state, long timestamp) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                mPresenter.updateGeofenceState(state);
+                return;
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mStarted) {
+                        mPresenter.updateGeofenceState(state);
+                    }
+                }
+            });
         }
     };
 
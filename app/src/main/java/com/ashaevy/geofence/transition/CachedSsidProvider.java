@@ -0,0 +1,115 @@
+package com.ashaevy.geofence.transition;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.WifiManager;
+
+import com.ashaevy.geofence.utils.NetworkUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static android.net.ConnectivityManager.CONNECTIVITY_ACTION;
+
+/**
+ * Keeps SSID and BSSID of the current WIFI connection, so reading it doesn't cost binder
+ * calls to {@code ConnectivityManager} and {@code WifiManager} on every fix.
+ *
+ * Connectivity and WIFI state broadcasts only invalidate the cached SSID, the next read
+ * queries it again. The SSID and the generation it was read in are kept in one volatile
+ * entry: an invalidation that comes while the SSID is queried makes the next read query it
+ * again, so a stale SSID is never kept. Callers that need SSID and BSSID of the same
+ * connection read them from {@link #snapshot()}.
+ */
+public class CachedSsidProvider implements GeofenceTransitionDetector.SsidProvider {
+
+    private static CachedSsidProvider instance;
+
+    private final Context mContext;
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private volatile Entry mEntry = new Entry(-1, null, null);
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    };
+
+    private CachedSsidProvider(Context context) {
+        mContext = context;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(CONNECTIVITY_ACTION);
+        filter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+        context.registerReceiver(mReceiver, filter);
+    }
+
+    public static synchronized CachedSsidProvider getInstance(Context context) {
+        if (instance == null) {
+            instance = new CachedSsidProvider(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns SSID without quotes, null if there is no WIFI connection.
+     */
+    @Override
+    public String getSsid() {
+        return entry().ssid;
+    }
+
+    @Override
+    public String getBssid() {
+        return entry().bssid;
+    }
+
+    /**
+     * Returns SSID and BSSID read together, they don't change when the cache is invalidated.
+     */
+    public GeofenceTransitionDetector.SsidProvider snapshot() {
+        return entry();
+    }
+
+    private Entry entry() {
+        Entry entry = mEntry;
+        int generation = mGeneration.get();
+        if (entry.generation != generation) {
+            entry = new Entry(generation, NetworkUtils.getCurrentSsid(mContext),
+                    NetworkUtils.getCurrentBssid(mContext));
+            mEntry = entry;
+        }
+        return entry;
+    }
+
+    /**
+     * Makes the next read query the SSID again. Called on connectivity changes, callers
+     * that learn about them first may call it before acting on them.
+     */
+    public void invalidate() {
+        mGeneration.incrementAndGet();
+    }
+
+    private static class Entry implements GeofenceTransitionDetector.SsidProvider {
+        final int generation;
+        final String ssid;
+        final String bssid;
+
+        Entry(int generation, String ssid, String bssid) {
+            this.generation = generation;
+            this.ssid = ssid;
+            this.bssid = bssid;
+        }
+
+        @Override
+        public String getSsid() {
+            return ssid;
+        }
+
+        @Override
+        public String getBssid() {
+            return bssid;
+        }
+    }
+}
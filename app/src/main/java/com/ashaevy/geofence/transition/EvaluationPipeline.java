@@ -0,0 +1,104 @@
+package com.ashaevy.geofence.transition;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs geofence evaluation on its own {@link HandlerThread}, off the main thread.
+ *
+ * Work is kept in two slots instead of an open queue: the latest batch of fixes and a flag
+ * for a state check. A batch submitted while the previous one still waits replaces it, the
+ * newest fixes win and the replaced ones are counted as dropped. A state check submitted
+ * while another one waits is merged with it. So at most two tasks wait at any time and a
+ * slow evaluation never lets fixes pile up.
+ */
+class EvaluationPipeline {
+
+    /**
+     * Called on the pipeline thread.
+     */
+    interface Callback {
+        void onLocations(List<Location> locations);
+
+        /**
+         * Evaluates the last known location again, e.g. after a network change.
+         */
+        void onStateCheck();
+    }
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final Callback mCallback;
+
+    private final AtomicReference<List<Location>> mPendingLocations = new AtomicReference<>();
+    private final AtomicBoolean mStateCheckPending = new AtomicBoolean();
+    private final AtomicLong mDroppedFixCount = new AtomicLong();
+
+    private final Runnable mLocationTask = new Runnable() {
+        @Override
+        public void run() {
+            List<Location> locations = mPendingLocations.getAndSet(null);
+            if (locations != null) {
+                mCallback.onLocations(locations);
+            }
+        }
+    };
+
+    private final Runnable mStateCheckTask = new Runnable() {
+        @Override
+        public void run() {
+            if (mStateCheckPending.compareAndSet(true, false)) {
+                mCallback.onStateCheck();
+            }
+        }
+    };
+
+    EvaluationPipeline(String name, Callback callback) {
+        mCallback = callback;
+        mThread = new HandlerThread(name, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Queues fixes for evaluation, replacing fixes that still wait.
+     */
+    void submitLocations(List<Location> locations) {
+        List<Location> replaced = mPendingLocations.getAndSet(locations);
+        if (replaced == null) {
+            mHandler.post(mLocationTask);
+        } else {
+            mDroppedFixCount.addAndGet(replaced.size());
+        }
+    }
+
+    /**
+     * Queues a state check unless one already waits.
+     */
+    void submitStateCheck() {
+        if (mStateCheckPending.compareAndSet(false, true)) {
+            mHandler.post(mStateCheckTask);
+        }
+    }
+
+    /**
+     * Returns number of fixes replaced by newer ones before they were evaluated.
+     */
+    long getDroppedFixCount() {
+        return mDroppedFixCount.get();
+    }
+
+    /**
+     * Stops the thread, waiting tasks are discarded.
+     */
+    void quit() {
+        mThread.quit();
+    }
+}
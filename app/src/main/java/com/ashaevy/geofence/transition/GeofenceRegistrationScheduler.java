@@ -0,0 +1,235 @@
+package com.ashaevy.geofence.transition;
+
+import android.Manifest;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.support.v4.content.ContextCompat;
+import android.util.Log;
+
+import com.ashaevy.geofence.Constants;
+import com.ashaevy.geofence.Injection;
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.data.source.GeofenceDataSource;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationServices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.android.gms.location.Geofence.NEVER_EXPIRE;
+
+/**
+ * Keeps stored geofences nearest to the device registered with the Play Services
+ * geofencing API, which monitors at most {@link Constants#GEOFENCE_REGISTRATION_LIMIT}
+ * geofences per app. Pages are chosen by {@link RegionPager}. Besides them the geofence
+ * shown in UI and a refresh region around the device are registered; exit of the refresh
+ * region pages again around the new location, see {@link GeofenceTransitionProcessor}.
+ *
+ * Paging runs on a worker thread with its own client, so it works without UI too. Only
+ * geofences that left or entered the page are removed or added, except for the first page
+ * after process start, which is added as a whole. Polygons and corridors are registered
+ * by their bounding circles, their events are checked against the shapes by
+ * {@link GeofenceTransitionProcessor}.
+ */
+class GeofenceRegistrationScheduler {
+
+    private static final String TAG = "RegistrationScheduler";
+
+    /**
+     * Request id of the refresh region.
+     */
+    static final String REFRESH_REGION_NAME = "GEOFENCE_REFRESH_REGION";
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    private static GeofenceRegistrationScheduler instance;
+
+    private final Context mContext;
+    private final GeofenceDataSource mDataSource;
+    private final RegionPager mRegionPager = new RegionPager(
+            // The UI geofence and the refresh region take two places.
+            Constants.GEOFENCE_REGISTRATION_LIMIT - 2,
+            Constants.GEOFENCE_PAGING_SEARCH_RADIUS_METERS,
+            Constants.GEOFENCE_REFRESH_MIN_RADIUS_METERS);
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Ids of paged geofences registered now, used on the worker thread only. Kept in
+     * preferences, registrations outlive the process.
+     */
+    private Set<String> mRegisteredIds;
+    /**
+     * Play Services drops registrations on reboot, app update and data clear, while saved
+     * ids stay. So the whole page is added until it succeeds once in the process; adding an
+     * already registered request id replaces it. Used on the worker thread only.
+     */
+    private boolean mFullPageNeeded = true;
+
+    private GeofenceRegistrationScheduler(Context context) {
+        mContext = context;
+        mDataSource = Injection.provideGeofenceDataSource(context);
+    }
+
+    static synchronized GeofenceRegistrationScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new GeofenceRegistrationScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Registers the page around the location if geofencing is started.
+     */
+    void schedule(final double latitude, final double longitude) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                page(latitude, longitude);
+            }
+        });
+    }
+
+    /**
+     * Forgets registered geofences after all geofences of the pending intent were removed.
+     */
+    void clear() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mRegisteredIds = new HashSet<>();
+                saveRegisteredIds();
+            }
+        });
+    }
+
+    private void page(double latitude, double longitude) {
+        if (!mDataSource.geofenceAdded() || mDataSource.geofenceCount() == 0) {
+            return;
+        }
+        if (ContextCompat.checkSelfPermission(mContext, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "No location permission, geofences are not paged");
+            return;
+        }
+        if (mRegisteredIds == null) {
+            mRegisteredIds = new HashSet<>(getPreferences().getStringSet(
+                    Constants.PAGED_GEOFENCES_KEY, Collections.<String>emptySet()));
+        }
+        List<GeofenceData> candidates = mDataSource.readGeofencesNear(latitude, longitude,
+                mRegionPager.getSearchRadius());
+        RegionPager.Page page = mRegionPager.page(latitude, longitude, candidates);
+
+        Set<String> pageIds = new HashSet<>();
+        List<Geofence> added = new ArrayList<>();
+        for (GeofenceData geofence : page.geofences) {
+            pageIds.add(geofence.getId());
+            if (mFullPageNeeded || !mRegisteredIds.contains(geofence.getId())) {
+                added.add(buildGeofence(geofence.getId(), geofence.getLatitude(),
+                        geofence.getLongitude(), (float) geofence.getRadius(),
+                        Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT));
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String id : mRegisteredIds) {
+            if (!pageIds.contains(id)) {
+                removed.add(id);
+            }
+        }
+
+        GoogleApiClient client = new GoogleApiClient.Builder(mContext)
+                .addApi(LocationServices.API)
+                .build();
+        ConnectionResult connection = client.blockingConnect(CONNECT_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS);
+        if (!connection.isSuccess()) {
+            Log.e(TAG, "Can't connect to GoogleApiClient: " + connection.getErrorCode());
+            return;
+        }
+        try {
+            if (!removed.isEmpty() && isSuccess(LocationServices.GeofencingApi.removeGeofences(
+                    client, removed).await())) {
+                mRegisteredIds.removeAll(removed);
+            }
+            if (!added.isEmpty() && isSuccess(LocationServices.GeofencingApi.addGeofences(
+                    client, new GeofencingRequest.Builder()
+                            .setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER)
+                            .addGeofences(added)
+                            .build(), getPendingIntent()).await())) {
+                for (Geofence geofence : added) {
+                    mRegisteredIds.add(geofence.getRequestId());
+                }
+                mFullPageNeeded = false;
+            }
+            // Adding with the same request id replaces the previous refresh region.
+            isSuccess(LocationServices.GeofencingApi.addGeofences(client,
+                    new GeofencingRequest.Builder()
+                            .setInitialTrigger(0)
+                            .addGeofence(buildGeofence(REFRESH_REGION_NAME, latitude, longitude,
+                                    (float) page.refreshRadius,
+                                    Geofence.GEOFENCE_TRANSITION_EXIT))
+                            .build(), getPendingIntent()).await());
+            Log.i(TAG, String.format("Paged %d of %d geofences near the location, %d added, " +
+                            "%d removed, refresh radius %.0f m", page.geofences.size(),
+                    candidates.size(), added.size(), removed.size(), page.refreshRadius));
+            if (!page.complete) {
+                Log.w(TAG, "More geofences than the platform limit near the location, " +
+                        "some may be entered before the next page");
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "Invalid permission.", e);
+        } finally {
+            client.disconnect();
+            saveRegisteredIds();
+        }
+    }
+
+    private void saveRegisteredIds() {
+        getPreferences().edit()
+                .putStringSet(Constants.PAGED_GEOFENCES_KEY, new HashSet<>(mRegisteredIds))
+                .apply();
+    }
+
+    private SharedPreferences getPreferences() {
+        return mContext.getSharedPreferences(Constants.SHARED_PREFERENCES_NAME,
+                Context.MODE_PRIVATE);
+    }
+
+    private boolean isSuccess(Status status) {
+        if (!status.isSuccess()) {
+            Log.e(TAG, GeofenceErrorMessages.getErrorString(mContext, status.getStatusCode()));
+        }
+        return status.isSuccess();
+    }
+
+    private static Geofence buildGeofence(String requestId, double latitude, double longitude,
+                                          float radius, int transitionTypes) {
+        return new Geofence.Builder()
+                .setRequestId(requestId)
+                .setCircularRegion(latitude, longitude, radius)
+                .setExpirationDuration(NEVER_EXPIRE)
+                .setTransitionTypes(transitionTypes)
+                .build();
+    }
+
+    /**
+     * Returns the same pending intent as {@link GooglePlayGeofenceHelper} uses, so removing
+     * its geofences removes paged ones too.
+     */
+    private PendingIntent getPendingIntent() {
+        Intent intent = new Intent(mContext, GeofenceTransitionsIntentService.class);
+        return PendingIntent.getService(mContext, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
@@ -1,63 +1,79 @@
 package com.ashaevy.geofence.transition;
 
 import android.content.Context;
-import android.content.Intent;
 import android.location.Location;
-import android.support.v4.content.LocalBroadcastManager;
-import android.text.TextUtils;
 
-import com.ashaevy.geofence.Constants;
-import com.ashaevy.geofence.utils.NetworkUtils;
 import com.ashaevy.geofence.data.GeofenceData;
 import com.ashaevy.geofence.data.source.GeofenceDataSource;
-import com.google.android.gms.location.Geofence;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Class that contains logic of detection Geofence transitions.
+ * Android adapter over {@link GeofenceEvaluator}: reads geofence state from
+ * {@link GeofenceDataSource} and publishes detected geofence states to
+ * {@link TransitionEventBus#getDefault()}.
  */
 
 public class GeofenceTransitionDetector {
 
-    public static final String GEOFENCE_UPDATED = GeofenceTransitionsIntentService.class.getName() + ".GEOFENCE_UPDATED";
-    public static final String KEY_GEOFENCE_UPDATE_TYPE = "KEY_GEOFENCE_UPDATE_TYPE";
-
     private GeofenceDataSource mGeofenceDataSource;
+    /**
+     * Ellipsoid distance near the border keeps results of Location.distanceBetween(),
+     * which was used before, while most fixes are decided by the cheap approximation.
+     */
+    private final GeofenceEvaluator mGeofenceEvaluator =
+            new GeofenceEvaluator(GeofenceEvaluator.PRECISION_TIERED_ELLIPSOIDAL);
 
     public GeofenceTransitionDetector(GeofenceDataSource geofenceDataSource) {
         mGeofenceDataSource = geofenceDataSource;
     }
 
-    public void detectTransition(final Context context) {
-        detectTransition(context, new SsidProvider() {
-            @Override
-            public String getSsid() {
-                return NetworkUtils.getCurrentSsid(context);
-            }
-        });
+    public void detectTransition(Context context) {
+        detectTransition(context, CachedSsidProvider.getInstance(context).snapshot());
     }
 
+    /**
+     * Publishes the state on the calling thread, listeners that touch UI must move to the
+     * main thread themselves.
+     */
     void detectTransition(Context context, SsidProvider ssidProvider) {
-        Intent updateIntent = new Intent(GEOFENCE_UPDATED);
-        updateIntent.putExtra(KEY_GEOFENCE_UPDATE_TYPE, detectTransitionState(ssidProvider));
-        LocalBroadcastManager.getInstance(context).sendBroadcast(updateIntent);
+        GeofenceData geofenceData = mGeofenceDataSource.readGeofenceData();
+        int state = detectTransitionState(geofenceData, ssidProvider);
+        TransitionEventBus.getDefault().publish(fenceIdOf(geofenceData), state,
+                System.currentTimeMillis());
     }
 
     int detectTransitionState(SsidProvider ssidProvider) {
-        int geofenceState = Constants.GEOFENCE_STATE_UNKNOWN;
+        return detectTransitionState(mGeofenceDataSource.readGeofenceData(), ssidProvider);
+    }
+
+    private int detectTransitionState(GeofenceData geofenceData, SsidProvider ssidProvider) {
         int geofenceTransition = mGeofenceDataSource.readGeofenceTransition();
+        return mGeofenceEvaluator.transitionState(geofenceData, geofenceTransition,
+                ssidProvider.getSsid(), ssidProvider.getBssid());
+    }
 
-        GeofenceData geofenceData = mGeofenceDataSource.readGeofenceData();
-        if (geofenceData != null) {
-            String wifiName = geofenceData.getWifiName();
-            String currentSsid = ssidProvider.getSsid();
-            if ((!TextUtils.isEmpty(wifiName) && wifiName.equals(currentSsid)) ||
-                    (geofenceTransition == Geofence.GEOFENCE_TRANSITION_ENTER)) {
-                geofenceState = Constants.GEOFENCE_STATE_INSIDE;
-            } else {
-                geofenceState = Constants.GEOFENCE_STATE_OUTSIDE;
-            }
+    /**
+     * Returns stored geofences of the current WiFi network, looked up by its SSID and
+     * BSSID in the data source index.
+     */
+    List<GeofenceData> geofencesOnWifi(SsidProvider ssidProvider) {
+        String ssid = ssidProvider.getSsid();
+        String bssid = ssidProvider.getBssid();
+        if (ssid == null && bssid == null) {
+            return Collections.emptyList();
         }
-        return geofenceState;
+        return mGeofenceDataSource.readGeofencesOnWifi(ssid, bssid);
+    }
+
+    /**
+     * Returns id of the geofence for events and history, the name of the single
+     * Google Play geofence if it has none.
+     */
+    static String fenceIdOf(GeofenceData geofenceData) {
+        return geofenceData != null && geofenceData.getId() != null ?
+                geofenceData.getId() : GooglePlayGeofenceHelper.DEFAULT_GEOFENCE_NAME;
     }
 
     /**
@@ -66,19 +82,32 @@ public class GeofenceTransitionDetector {
      * @return Geofence.GEOFENCE_TRANSITION_ENTER or Geofence.GEOFENCE_TRANSITION_EXIT
      */
     int geofenceCoordinatesTransition(GeofenceData geofenceData, Location location) {
-        float[] results = new float[1];
-        Location.distanceBetween(geofenceData.getLatitude(), geofenceData.getLongitude(),
-                location.getLatitude(), location.getLongitude(), results);
-        float distanceInMeters = results[0];
-        if (distanceInMeters <= geofenceData.getRadius()) {
-            return Geofence.GEOFENCE_TRANSITION_ENTER;
-        } else {
-            return Geofence.GEOFENCE_TRANSITION_EXIT;
-        }
+        return mGeofenceEvaluator.coordinatesTransition(geofenceData, location.getLatitude(),
+                location.getLongitude());
+    }
+
+    /**
+     * Returns a lower bound of the distance from location to the geofence border, in meters.
+     */
+    double boundaryDistance(GeofenceData geofenceData, Location location) {
+        return mGeofenceEvaluator.boundaryDistance(geofenceData, location.getLatitude(),
+                location.getLongitude());
+    }
+
+    /**
+     * Returns evaluator used for coordinate transitions, exposes its tier counters.
+     */
+    GeofenceEvaluator getGeofenceEvaluator() {
+        return mGeofenceEvaluator;
     }
 
     interface SsidProvider {
         String getSsid();
+
+        /**
+         * Returns BSSID of the access point, null if unknown.
+         */
+        String getBssid();
     }
 
 }
@@ -0,0 +1,263 @@
+package com.ashaevy.geofence.transition;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.location.Location;
+import android.net.ConnectivityManager;
+import android.util.Log;
+
+import com.ashaevy.geofence.Constants;
+import com.ashaevy.geofence.Injection;
+import com.ashaevy.geofence.R;
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.data.source.GeofenceDataSource;
+import com.ashaevy.geofence.journal.TransitionJournal;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Handles intents of {@link GeofenceTransitionsIntentService} for the whole process, so the
+ * detector with its evaluator caches and the data source stay warm between intents.
+ *
+ * Intents wait in a bounded queue, the oldest one is dropped when it is full. The worker
+ * thread drains the queue in batches: every triggering geofence of every event is recorded
+ * in the history, while the state of the geofence shown in UI is written, flushed and
+ * published once per batch. Exit of the refresh region pages registered geofences around
+ * the new location, see {@link GeofenceRegistrationScheduler}. Transitions of polygons and
+ * corridors are checked against their shapes before they are recorded.
+ */
+class GeofenceTransitionProcessor {
+
+    private static final String TAG = "TransitionProcessor";
+
+    private static GeofenceTransitionProcessor instance;
+
+    private final Context mContext;
+    private final GeofenceDataSource mDataSource;
+    private final GeofenceTransitionDetector mGeofenceTransitionDetector;
+    private final TransitionHistory mTransitionHistory;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Guarded by itself.
+     */
+    private final ArrayDeque<Pending> mQueue = new ArrayDeque<>();
+    private boolean mDrainScheduled;
+    private long mDroppedCount;
+
+    /**
+     * Last transition of polygon and corridor geofences, used on the worker thread only.
+     */
+    private final Map<String, Integer> mShapeTransitions = new HashMap<>();
+
+    private long mBatchCount;
+    private long mEventCount;
+
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private GeofenceTransitionProcessor(Context context) {
+        mContext = context;
+        mDataSource = Injection.provideGeofenceDataSource(context);
+        mGeofenceTransitionDetector = new GeofenceTransitionDetector(mDataSource);
+        mTransitionHistory = TransitionHistory.getInstance(context);
+    }
+
+    static synchronized GeofenceTransitionProcessor getInstance(Context context) {
+        if (instance == null) {
+            instance = new GeofenceTransitionProcessor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Queues intent of the service start. The service is stopped with
+     * {@link Service#stopSelfResult(int)} after the batch with the intent is handled, so it
+     * keeps running only while newer intents wait.
+     */
+    void submit(Intent intent, Service service, int startId) {
+        synchronized (mQueue) {
+            if (mQueue.size() == Constants.TRANSITION_QUEUE_CAPACITY) {
+                mQueue.removeFirst();
+                mDroppedCount++;
+            }
+            mQueue.addLast(new Pending(intent, service, startId));
+            if (mDrainScheduled) {
+                return;
+            }
+            mDrainScheduled = true;
+        }
+        mExecutor.execute(mDrainTask);
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            long droppedCount;
+            synchronized (mQueue) {
+                if (mQueue.isEmpty()) {
+                    mDrainScheduled = false;
+                    return;
+                }
+                batch.addAll(mQueue);
+                mQueue.clear();
+                droppedCount = mDroppedCount;
+            }
+            process(batch);
+            Pending last = batch.get(batch.size() - 1);
+            last.service.stopSelfResult(last.startId);
+            Log.d(TAG, String.format("Batch of %d intents, %.1f intents per batch, %d " +
+                    "dropped", batch.size(), (double) mEventCount / mBatchCount, droppedCount));
+            batch.clear();
+        }
+    }
+
+    /**
+     * Handles intents in the order they came. Transitions of the geofence shown in UI
+     * collapse to the last one, connectivity changes collapse to one check.
+     */
+    private void process(List<Pending> batch) {
+        int lastTransition = GeofenceTransitions.TRANSITION_UNKNOWN;
+        boolean connectivityChanged = false;
+        for (Pending pending : batch) {
+            Intent intent = pending.intent;
+            if (ConnectivityManager.CONNECTIVITY_ACTION.equals(intent.getAction())) {
+                connectivityChanged = true;
+                continue;
+            }
+            int transition = processGeofencingEvent(intent);
+            if (transition != GeofenceTransitions.TRANSITION_UNKNOWN) {
+                lastTransition = transition;
+            }
+        }
+        if (lastTransition != GeofenceTransitions.TRANSITION_UNKNOWN) {
+            mDataSource.saveGeofenceTransition(lastTransition);
+            Log.i(TAG, getTransitionString(lastTransition));
+        }
+        if (lastTransition != GeofenceTransitions.TRANSITION_UNKNOWN || connectivityChanged) {
+            mGeofenceTransitionDetector.detectTransition(mContext);
+        }
+        // The service may stop after the batch and the process may be killed.
+        mDataSource.flush();
+        mBatchCount++;
+        mEventCount += batch.size();
+    }
+
+    /**
+     * Records transitions of all triggering geofences.
+     *
+     * @return transition of the geofence shown in UI, TRANSITION_UNKNOWN if it didn't
+     * trigger
+     */
+    private int processGeofencingEvent(Intent intent) {
+        GeofencingEvent geofencingEvent = GeofencingEvent.fromIntent(intent);
+        if (geofencingEvent.hasError()) {
+            String errorMessage = GeofenceErrorMessages.getErrorString(mContext,
+                    geofencingEvent.getErrorCode());
+            Log.e(TAG, errorMessage);
+            return GeofenceTransitions.TRANSITION_UNKNOWN;
+        }
+
+        // Get the transition type.
+        int geofenceTransition = geofencingEvent.getGeofenceTransition();
+
+        // Test that the reported transition was of interest.
+        if (geofenceTransition != Geofence.GEOFENCE_TRANSITION_ENTER &&
+                geofenceTransition != Geofence.GEOFENCE_TRANSITION_EXIT) {
+            Log.e(TAG, mContext.getString(R.string.geofence_transition_invalid_type,
+                    geofenceTransition));
+            return GeofenceTransitions.TRANSITION_UNKNOWN;
+        }
+
+        int result = GeofenceTransitions.TRANSITION_UNKNOWN;
+        for (Geofence geofence : geofencingEvent.getTriggeringGeofences()) {
+            String requestId = geofence.getRequestId();
+            if (GeofenceRegistrationScheduler.REFRESH_REGION_NAME.equals(requestId)) {
+                Location location = geofencingEvent.getTriggeringLocation();
+                if (location != null) {
+                    GeofenceRegistrationScheduler.getInstance(mContext).schedule(
+                            location.getLatitude(), location.getLongitude());
+                }
+                continue;
+            }
+            int transition = shapeTransition(requestId, geofenceTransition,
+                    geofencingEvent.getTriggeringLocation());
+            if (transition != GeofenceTransitions.TRANSITION_UNKNOWN) {
+                mTransitionHistory.record(requestId, transition,
+                        TransitionJournal.SOURCE_GEOFENCING_API);
+            }
+            if (GooglePlayGeofenceHelper.DEFAULT_GEOFENCE_NAME.equals(requestId)) {
+                result = geofenceTransition;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Polygons and corridors are registered by their bounding circles, so for them the
+     * transition of the circle is checked against the shape at the triggering location.
+     * Entering the circle outside the shape is not a transition; entering the shape while
+     * inside the circle raises no event and is not seen.
+     *
+     * @return transition to record, TRANSITION_UNKNOWN if the shape state didn't change
+     */
+    private int shapeTransition(String requestId, int circleTransition, Location location) {
+        GeofenceData geofence = mDataSource.readGeofence(requestId);
+        if (geofence == null ||
+                (geofence.getVertices() == null && geofence.getRoute() == null)) {
+            return circleTransition;
+        }
+        if (location == null) {
+            return GeofenceTransitions.TRANSITION_UNKNOWN;
+        }
+        int transition = mGeofenceTransitionDetector.geofenceCoordinatesTransition(geofence,
+                location);
+        Integer last = mShapeTransitions.put(requestId, transition);
+        // The device is taken to be outside of shapes it has no state for.
+        int lastTransition = last != null ? last : Geofence.GEOFENCE_TRANSITION_EXIT;
+        return transition != lastTransition ? transition :
+                GeofenceTransitions.TRANSITION_UNKNOWN;
+    }
+
+    /**
+     * Maps geofence transition types to their human-readable equivalents.
+     *
+     * @param transitionType    A transition type constant defined in Geofence
+     * @return                  A String indicating the type of transition
+     */
+    private String getTransitionString(int transitionType) {
+        switch (transitionType) {
+            case Geofence.GEOFENCE_TRANSITION_ENTER:
+                return mContext.getString(R.string.geofence_transition_entered);
+            case Geofence.GEOFENCE_TRANSITION_EXIT:
+                return mContext.getString(R.string.geofence_transition_exited);
+            default:
+                return mContext.getString(R.string.unknown_geofence_transition);
+        }
+    }
+
+    private static class Pending {
+        final Intent intent;
+        final Service service;
+        final int startId;
+
+        Pending(Intent intent, Service service, int startId) {
+            this.intent = intent;
+            this.service = service;
+            this.startId = startId;
+        }
+    }
+}
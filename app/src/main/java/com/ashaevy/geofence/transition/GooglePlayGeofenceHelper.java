@@ -5,6 +5,7 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.location.Location;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
@@ -26,6 +27,10 @@ import static com.google.android.gms.location.Geofence.NEVER_EXPIRE;
 /**
  * This class contains all helper code to setup receiving geofence transition events from
  * Google Play Geofence API.
+ *
+ * Once the geofence shown in UI is added, stored geofences nearest to the device are
+ * registered too, see {@link GeofenceRegistrationScheduler}, so large geofence sets are
+ * monitored by the platform instead of continuous location updates.
  */
 public class GooglePlayGeofenceHelper extends BaseGeofenceHelper implements
         GoogleApiClient.ConnectionCallbacks,
@@ -157,7 +162,7 @@ public class GooglePlayGeofenceHelper extends BaseGeofenceHelper implements
      * Adds geofence, which sets alerts to be notified when the device enters or exits the
      * specified geofence. Handles the success or failure results returned by addGeofences().
      */
-    public void addGeofence(String requestId, LatLng point, float radius) {
+    public void addGeofence(String requestId, final LatLng point, float radius) {
         if (checkGoogleClientNotReady()) return;
 
         if (ContextCompat.checkSelfPermission(mContext, Manifest.permission.ACCESS_FINE_LOCATION)
@@ -174,6 +179,9 @@ public class GooglePlayGeofenceHelper extends BaseGeofenceHelper implements
                 @Override
                 public void onResult(@NonNull Status status) {
                     geofenceAddedResult(status, true);
+                    if (status.isSuccess()) {
+                        scheduleRegistration(point);
+                    }
                 }
             }); // Result processed in onResult().
         } else {
@@ -208,6 +216,10 @@ public class GooglePlayGeofenceHelper extends BaseGeofenceHelper implements
                 @Override
                 public void onResult(@NonNull Status status) {
                     geofenceAddedResult(status, false);
+                    if (status.isSuccess()) {
+                        // Paged geofences share the pending intent and are removed too.
+                        GeofenceRegistrationScheduler.getInstance(mContext).clear();
+                    }
                 }
             }); // Result processed in onResult().
         } else {
@@ -216,6 +228,26 @@ public class GooglePlayGeofenceHelper extends BaseGeofenceHelper implements
 
     }
 
+    /**
+     * Pages stored geofences around the last known location, around the added geofence
+     * if the location is unknown.
+     */
+    private void scheduleRegistration(LatLng geofencePosition) {
+        Location location = null;
+        try {
+            location = LocationServices.FusedLocationApi.getLastLocation(mGoogleApiClient);
+        } catch (SecurityException e) {
+            Log.e(TAG, "Invalid permission.", e);
+        }
+        GeofenceRegistrationScheduler scheduler =
+                GeofenceRegistrationScheduler.getInstance(mContext);
+        if (location != null) {
+            scheduler.schedule(location.getLatitude(), location.getLongitude());
+        } else {
+            scheduler.schedule(geofencePosition.latitude, geofencePosition.longitude);
+        }
+    }
+
     private void geofenceAddedResult(Status status, boolean added) {
         if (status.isSuccess()) {
             mPresenter.updateGeofenceAddedState(added);
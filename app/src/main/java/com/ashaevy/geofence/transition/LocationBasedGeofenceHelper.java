@@ -5,23 +5,51 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.location.Location;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.util.Log;
 
 import com.ashaevy.geofence.Constants;
+import com.ashaevy.geofence.data.GeofenceData;
 import com.ashaevy.geofence.data.source.GeofenceDataSource;
+import com.ashaevy.geofence.journal.TransitionJournal;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationListener;
 import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.model.LatLng;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * This class receives users location from Location services and detect geofence transitions.
+ *
+ * Location requests adapt to the distance to the geofence border, see
+ * {@link SamplingScheduler}: far from it updates come rarely and with lower accuracy, and
+ * the request is reissued only when the schedule changes.
+ *
+ * With {@link Constants#LOCATION_BATCH_FIXES} above 1 fixes are delivered in batches
+ * when the schedule is longer than the minimum interval, and evaluated by
+ * {@link FixBatchEvaluator}: the state is written and broadcast once per batch and only
+ * if the batch changed the transition. Fixes delivered one by one go the same way as
+ * batches of one fix. Paths between consecutive fixes are checked by
+ * {@link CrossingDetector}, so sparse fixes don't hide visits to the geofence.
+ *
+ * Fixes and network changes are evaluated on {@link EvaluationPipeline} between
+ * {@link #start()} and {@link #stop()}, newest fixes replace those that still wait. The
+ * geofence is read from the data source there, evaluation state is used on the pipeline
+ * thread only and the location request is changed on the main thread only.
  */
 public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements GeofenceHelper,
         GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener,
@@ -46,6 +74,44 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
 
     private final GeofenceDataSource mDataSource;
     private final GeofenceTransitionDetector mGeofenceTransitionDetector;
+    private final TransitionHistory mTransitionHistory;
+    private final SamplingScheduler mSamplingScheduler = new SamplingScheduler(
+            UPDATE_INTERVAL_IN_MILLISECONDS, Constants.SAMPLING_MAX_INTERVAL_MILLIS,
+            Constants.SAMPLING_MAX_SPEED_METERS_PER_SECOND);
+    private final boolean mBatched = Constants.LOCATION_BATCH_FIXES > 1;
+    private final FixBatchEvaluator mFixBatchEvaluator;
+    private final LocationCallback mLocationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult result) {
+            submitLocations(result.getLocations());
+        }
+    };
+    private final EvaluationPipeline.Callback mPipelineCallback =
+            new EvaluationPipeline.Callback() {
+        @Override
+        public void onLocations(List<Location> locations) {
+            processLocationBatch(locations);
+        }
+
+        @Override
+        public void onStateCheck() {
+            updateWifiGeofences();
+            updateGeofenceTransitionState();
+        }
+    };
+    /**
+     * Created in {@link #start()}, used on the main thread only.
+     */
+    private EvaluationPipeline mPipeline;
+    /**
+     * Set on the main thread when a geofence is added, the pipeline resets the scheduler.
+     */
+    private volatile boolean mSamplingResetPending;
+    /**
+     * Ids of stored geofences of the current WiFi network, null until the first state check
+     * after start. Used on the pipeline thread only.
+     */
+    private Set<String> mWifiFenceIds;
 
     /**
      * Stores parameters for requests to the FusedLocationProviderApi.
@@ -55,12 +121,19 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
     /**
      * Represents a geographical location.
      */
-    protected Location mCurrentLocation;
+    protected volatile Location mCurrentLocation;
 
     public LocationBasedGeofenceHelper(Context context, GeofenceDataSource geofenceDataSource) {
         super(context);
         mDataSource = geofenceDataSource;
         mGeofenceTransitionDetector = new GeofenceTransitionDetector(mDataSource);
+        mTransitionHistory = TransitionHistory.getInstance(context);
+        GeofenceEvaluator geofenceEvaluator = mGeofenceTransitionDetector.getGeofenceEvaluator();
+        mFixBatchEvaluator = new FixBatchEvaluator(geofenceEvaluator,
+                SystemClock.elapsedRealtime());
+        mFixBatchEvaluator.setCrossingDetector(new CrossingDetector(geofenceEvaluator,
+                Constants.SAMPLING_MAX_SPEED_METERS_PER_SECOND,
+                Constants.CROSSING_MAX_GAP_MILLIS));
     }
 
     @Override
@@ -73,9 +146,31 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
         buildGoogleApiClient();
     }
 
+    @Override
+    public void start() {
+        mWifiFenceIds = null;
+        mPipeline = new EvaluationPipeline(TAG, mPipelineCallback);
+        super.start();
+        // Shows the state of the last known location, events published while stopped
+        // were not delivered.
+        mPipeline.submitStateCheck();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        Log.d(TAG, "Pipeline stopped, " + mPipeline.getDroppedFixCount() +
+                " fixes replaced by newer ones before evaluation");
+        mPipeline.quit();
+        mPipeline = null;
+    }
+
     @Override
     public void addGeofence(LatLng position, double radius) {
         if (!mPresenter.geofenceAdded()) {
+            mSamplingResetPending = true;
+            applySamplingSchedule(UPDATE_INTERVAL_IN_MILLISECONDS,
+                    SamplingScheduler.PRIORITY_HIGH_ACCURACY);
             startLocationUpdates();
         }
     }
@@ -90,7 +185,7 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
 
     @Override
     public void notifyAboutNetworkChange() {
-        updateGeofenceTransitionState();
+        submitStateCheck();
     }
 
     /**
@@ -108,8 +203,7 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
                 // is not null.
                 mCurrentLocation = savedInstanceState.getParcelable(LOCATION_KEY);
             }
-
-            updateGeofenceTransitionState();
+            // The state is evaluated in start().
         }
     }
 
@@ -142,18 +236,49 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
      */
     protected void createLocationRequest() {
         mLocationRequest = new LocationRequest();
+        applySamplingSchedule(UPDATE_INTERVAL_IN_MILLISECONDS,
+                SamplingScheduler.PRIORITY_HIGH_ACCURACY);
+    }
+
+    /**
+     * Sets interval and priority of the location request from the sampling schedule.
+     * Starts with {@link #UPDATE_INTERVAL_IN_MILLISECONDS} and high accuracy.
+     *
+     * @param priority one of {@code SamplingScheduler.PRIORITY_*} constants
+     */
+    private void applySamplingSchedule(long interval, int priority) {
 
         // Sets the desired interval for active location updates. This interval is
         // inexact. You may not receive updates at all if no location sources are available, or
         // you may receive them slower than requested. You may also receive updates faster than
         // requested if other applications are requesting location at a faster interval.
-        mLocationRequest.setInterval(UPDATE_INTERVAL_IN_MILLISECONDS);
+        mLocationRequest.setInterval(interval);
 
         // Sets the fastest rate for active location updates. This interval is exact, and your
-        // application will never receive updates faster than this value.
-        mLocationRequest.setFastestInterval(FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS);
+        // application will never receive updates faster than this value. Far from the border
+        // fixes requested by other applications are not needed either.
+        mLocationRequest.setFastestInterval(interval == UPDATE_INTERVAL_IN_MILLISECONDS ?
+                FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS : interval / 2);
+
+        switch (priority) {
+            case SamplingScheduler.PRIORITY_LOW_POWER:
+                mLocationRequest.setPriority(LocationRequest.PRIORITY_LOW_POWER);
+                break;
+            case SamplingScheduler.PRIORITY_BALANCED_POWER_ACCURACY:
+                mLocationRequest.setPriority(
+                        LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
+                break;
+            default:
+                mLocationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        }
 
-        mLocationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        // Near the border every fix is delivered at once, batching would delay transitions
+        // by several intervals exactly where they happen.
+        if (mBatched && interval > UPDATE_INTERVAL_IN_MILLISECONDS) {
+            mLocationRequest.setMaxWaitTime(interval * Constants.LOCATION_BATCH_FIXES);
+        } else {
+            mLocationRequest.setMaxWaitTime(0);
+        }
     }
 
     /**
@@ -166,12 +291,15 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
             // try to init current location
             if (mCurrentLocation == null) {
                 mCurrentLocation = LocationServices.FusedLocationApi.getLastLocation(mGoogleApiClient);
-                updateGeofenceTransitionState();
+                submitStateCheck();
             }
 
-            LocationServices.FusedLocationApi.requestLocationUpdates(
-                    mGoogleApiClient, mLocationRequest, this).setResultCallback(
-                    new ResultCallback<Status>() {
+            PendingResult<Status> result = mBatched ?
+                    LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient,
+                            mLocationRequest, mLocationCallback, Looper.getMainLooper()) :
+                    LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient,
+                            mLocationRequest, this);
+            result.setResultCallback(new ResultCallback<Status>() {
                 @Override
                 public void onResult(@NonNull Status status) {
                     mPresenter.updateGeofenceAddedState(status.isSuccess());
@@ -182,16 +310,142 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
         }
     }
 
+    private void submitLocations(List<Location> locations) {
+        if (mPipeline != null) {
+            mPipeline.submitLocations(locations);
+        }
+    }
+
+    private void submitStateCheck() {
+        if (mPipeline != null) {
+            mPipeline.submitStateCheck();
+        }
+    }
+
     /**
-     * Updates the latitude, the longitude, and the last location time in the UI.
+     * Evaluates the last known location, runs on the pipeline thread.
      */
     private void updateGeofenceTransitionState() {
-        if (mCurrentLocation != null) {
+        Location currentLocation = mCurrentLocation;
+        GeofenceData geofenceData = mDataSource.readGeofenceData();
+        if (currentLocation != null && geofenceData != null) {
             int geofenceTransition = mGeofenceTransitionDetector.
-                    geofenceCoordinatesTransition(mPresenter.getGeofenceData(), mCurrentLocation);
+                    geofenceCoordinatesTransition(geofenceData, currentLocation);
+            if (geofenceTransition != mDataSource.readGeofenceTransition()) {
+                mTransitionHistory.record(GeofenceTransitionDetector.fenceIdOf(geofenceData),
+                        geofenceTransition, TransitionJournal.SOURCE_LOCATION);
+            }
+            mDataSource.saveGeofenceTransition(geofenceTransition);
+            mGeofenceTransitionDetector.detectTransition(mContext);
+            updateSamplingSchedule(geofenceData, currentLocation);
+        }
+    }
+
+    /**
+     * Records WiFi enters and exits of all stored geofences of the network, found with one
+     * index lookup. The first check after start only remembers them. Runs on the pipeline
+     * thread.
+     */
+    private void updateWifiGeofences() {
+        Set<String> fenceIds = new HashSet<>();
+        for (GeofenceData geofence : mGeofenceTransitionDetector.geofencesOnWifi(
+                CachedSsidProvider.getInstance(mContext).snapshot())) {
+            fenceIds.add(geofence.getId());
+        }
+        if (mWifiFenceIds != null) {
+            for (String fenceId : fenceIds) {
+                if (!mWifiFenceIds.contains(fenceId)) {
+                    mTransitionHistory.record(fenceId, GeofenceTransitions.TRANSITION_ENTER,
+                            TransitionJournal.SOURCE_NETWORK);
+                }
+            }
+            for (String fenceId : mWifiFenceIds) {
+                if (!fenceIds.contains(fenceId)) {
+                    mTransitionHistory.record(fenceId, GeofenceTransitions.TRANSITION_EXIT,
+                            TransitionJournal.SOURCE_NETWORK);
+                }
+            }
+        }
+        mWifiFenceIds = fenceIds;
+    }
+
+    /**
+     * Evaluates a batch of fixes in timestamp order. Every transition inside the batch,
+     * including crossings between fixes, is recorded in the history with its time, while
+     * the state is written and broadcast only for the net transition of the batch. Runs on
+     * the pipeline thread.
+     */
+    private void processLocationBatch(List<Location> locations) {
+        Location currentLocation = mCurrentLocation;
+        for (Location location : locations) {
+            if (currentLocation == null || location.getTime() >= currentLocation.getTime()) {
+                currentLocation = location;
+            }
+        }
+        mCurrentLocation = currentLocation;
+        GeofenceData geofenceData = mDataSource.readGeofenceData();
+        if (geofenceData == null || locations.isEmpty()) {
+            return;
+        }
+        for (Location location : locations) {
+            mFixBatchEvaluator.add(location.getTime(), location.getLatitude(),
+                    location.getLongitude());
+        }
+        final String fenceId = GeofenceTransitionDetector.fenceIdOf(geofenceData);
+        int lastTransition = mDataSource.readGeofenceTransition();
+        int geofenceTransition = mFixBatchEvaluator.evaluate(geofenceData, lastTransition,
+                new FixBatchEvaluator.TransitionListener() {
+                    @Override
+                    public void onTransition(long time, int transition) {
+                        mTransitionHistory.record(time, fenceId, transition,
+                                TransitionJournal.SOURCE_LOCATION);
+                    }
+                });
+        if (geofenceTransition != lastTransition) {
             mDataSource.saveGeofenceTransition(geofenceTransition);
             mGeofenceTransitionDetector.detectTransition(mContext);
         }
+        updateSamplingSchedule(geofenceData, currentLocation);
+
+        long now = SystemClock.elapsedRealtime();
+        Log.d(TAG, String.format("Batch of %d fixes, saved %.1f wakeups and %.1f " +
+                        "broadcasts per hour, %d crossings between fixes", locations.size(),
+                mFixBatchEvaluator.getWakeupsSavedPerHour(now),
+                mFixBatchEvaluator.getBroadcastsSavedPerHour(now),
+                mFixBatchEvaluator.getCrossingCount()));
+    }
+
+    /**
+     * Reissues the location request on the main thread if the distance to the border
+     * changed the schedule. Runs on the pipeline thread.
+     */
+    private void updateSamplingSchedule(GeofenceData geofenceData, Location currentLocation) {
+        if (mSamplingResetPending) {
+            mSamplingResetPending = false;
+            mSamplingScheduler.reset();
+        }
+        if (geofenceData == null || !mDataSource.geofenceAdded()) {
+            return;
+        }
+        double boundaryDistance = mGeofenceTransitionDetector.boundaryDistance(geofenceData,
+                currentLocation);
+        if (mSamplingScheduler.update(boundaryDistance, currentLocation.getAccuracy())) {
+            final long interval = mSamplingScheduler.getInterval();
+            final int priority = mSamplingScheduler.getPriority();
+            Log.i(TAG, "Location updates every " + interval + " ms, priority " + priority);
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mPipeline == null || !mPresenter.geofenceAdded() ||
+                            mGoogleApiClient == null || !mGoogleApiClient.isConnected()) {
+                        return;
+                    }
+                    applySamplingSchedule(interval, priority);
+                    // Requesting again with the same listener replaces the previous request.
+                    startLocationUpdates();
+                }
+            });
+        }
     }
 
     /**
@@ -204,7 +458,12 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
 
         // The final argument to {@code requestLocationUpdates()} is a LocationListener
         // (http://developer.android.com/reference/com/google/android/gms/location/LocationListener.html).
-        LocationServices.FusedLocationApi.removeLocationUpdates(mGoogleApiClient, this);
+        if (mBatched) {
+            LocationServices.FusedLocationApi.removeLocationUpdates(mGoogleApiClient,
+                    mLocationCallback);
+        } else {
+            LocationServices.FusedLocationApi.removeLocationUpdates(mGoogleApiClient, this);
+        }
     }
 
     /**
@@ -224,8 +483,7 @@ public class LocationBasedGeofenceHelper extends BaseGeofenceHelper implements G
      */
     @Override
     public void onLocationChanged(Location location) {
-        mCurrentLocation = location;
-        updateGeofenceTransitionState();
+        submitLocations(Collections.singletonList(location));
     }
 
     @Override
@@ -0,0 +1,107 @@
+package com.ashaevy.geofence.transition;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.ashaevy.geofence.Constants;
+import com.ashaevy.geofence.journal.TransitionJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * History of geofence transitions kept in {@link TransitionJournal}.
+ *
+ * Journal is opened, compacted and appended on a background thread, so recording
+ * a transition never blocks the caller.
+ */
+public class TransitionHistory {
+
+    private static final String TAG = "TransitionHistory";
+
+    private static TransitionHistory instance;
+
+    private final File mDirectory;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private TransitionJournal mJournal;
+
+    private TransitionHistory(Context context) {
+        mDirectory = new File(context.getFilesDir(), Constants.TRANSITION_JOURNAL_DIRECTORY);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mJournal = new TransitionJournal(mDirectory,
+                            Constants.TRANSITION_JOURNAL_SEGMENT_RECORDS);
+                    int removed = mJournal.compact(System.currentTimeMillis() -
+                            Constants.TRANSITION_JOURNAL_RETENTION_MILLIS);
+                    Log.i(TAG, "Removed " + removed + " transitions on compaction");
+                } catch (IOException e) {
+                    Log.e(TAG, "Can't open transition journal", e);
+                }
+            }
+        });
+    }
+
+    public static synchronized TransitionHistory getInstance(Context context) {
+        if (instance == null) {
+            instance = new TransitionHistory(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Records transition of the fence that happened now.
+     *
+     * @param source one of {@code TransitionJournal.SOURCE_*} constants
+     */
+    public void record(String fenceId, int transition, int source) {
+        record(System.currentTimeMillis(), fenceId, transition, source);
+    }
+
+    /**
+     * Records transition of the fence that happened at timestamp, for fixes delivered late.
+     *
+     * @param source one of {@code TransitionJournal.SOURCE_*} constants
+     */
+    public void record(final long timestamp, final String fenceId, final int transition,
+                       final int source) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mJournal == null) {
+                    return;
+                }
+                try {
+                    mJournal.append(timestamp, fenceId, transition, source);
+                } catch (IOException e) {
+                    Log.e(TAG, "Can't record transition", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns reader of recorded transitions, null if journal can't be opened.
+     * Must not be called on the main thread, waits for the journal to open.
+     */
+    public TransitionJournal.Reader reader() throws InterruptedException {
+        final TransitionJournal.Reader[] reader = new TransitionJournal.Reader[1];
+        try {
+            mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (mJournal != null) {
+                        reader[0] = mJournal.reader();
+                    }
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return reader[0];
+    }
+}
@@ -14,21 +14,34 @@ import android.text.TextUtils;
 public class NetworkUtils {
     public static String getCurrentSsid(Context context) {
         String ssid = null;
-        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo networkInfo = cm.getActiveNetworkInfo();
-        if (networkInfo == null) {
+        WifiInfo connectionInfo = getConnectionInfo(context);
+        if (connectionInfo != null && !TextUtils.isEmpty(connectionInfo.getSSID())) {
+            ssid = connectionInfo.getSSID();
+        }
+
+        return eliminateQuotes(ssid);
+    }
+
+    /**
+     * Returns BSSID of the access point of current WIFI connection, null if there is none.
+     */
+    public static String getCurrentBssid(Context context) {
+        WifiInfo connectionInfo = getConnectionInfo(context);
+        if (connectionInfo == null || TextUtils.isEmpty(connectionInfo.getBSSID())) {
             return null;
         }
+        return connectionInfo.getBSSID();
+    }
 
-        if (networkInfo.isConnected()) {
-            final WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
-            final WifiInfo connectionInfo = wifiManager.getConnectionInfo();
-            if (connectionInfo != null && !TextUtils.isEmpty(connectionInfo.getSSID())) {
-                ssid = connectionInfo.getSSID();
-            }
+    private static WifiInfo getConnectionInfo(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = cm.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return null;
         }
 
-        return eliminateQuotes(ssid);
+        final WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        return wifiManager.getConnectionInfo();
     }
 
     private static String eliminateQuotes(String string) {
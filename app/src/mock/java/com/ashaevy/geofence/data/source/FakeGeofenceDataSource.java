@@ -1,8 +1,17 @@
 package com.ashaevy.geofence.data.source;
 
 import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.index.WifiIndex;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.SphericalUtil;
 import com.google.android.gms.location.Geofence;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Fake DataSource. Stores data in memory.
  */
@@ -14,6 +23,7 @@ public class FakeGeofenceDataSource implements GeofenceDataSource {
     private GeofenceData mGeofenceData = SPGeofenceDataSource.generateDefaultGeofence();
     private boolean mGeofenceAdded;
     private int mTransition = Geofence.GEOFENCE_TRANSITION_EXIT;
+    private final Map<String, GeofenceData> mGeofences = new LinkedHashMap<>();
 
     @Override
     public void saveGeofenceData(GeofenceData geofenceData) {
@@ -45,6 +55,58 @@ public class FakeGeofenceDataSource implements GeofenceDataSource {
         return mTransition;
     }
 
+    @Override
+    public void saveGeofences(Collection<GeofenceData> geofences) {
+        for (GeofenceData geofence : geofences) {
+            mGeofences.put(geofence.getId(), geofence);
+        }
+    }
+
+    @Override
+    public void deleteGeofences(Collection<String> ids) {
+        mGeofences.keySet().removeAll(ids);
+    }
+
+    @Override
+    public GeofenceData readGeofence(String id) {
+        return mGeofences.get(id);
+    }
+
+    @Override
+    public List<GeofenceData> readGeofencesNear(double latitude, double longitude,
+                                                double distance) {
+        List<GeofenceData> result = new ArrayList<>();
+        GeoPoint point = new GeoPoint(latitude, longitude);
+        for (GeofenceData geofence : mGeofences.values()) {
+            double centerDistance = SphericalUtil.computeDistanceBetween(point,
+                    new GeoPoint(geofence.getLatitude(), geofence.getLongitude()));
+            if (centerDistance - geofence.getRadius() <= distance) {
+                result.add(geofence);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<GeofenceData> readGeofencesOnWifi(String ssid, String bssid) {
+        List<GeofenceData> result = new ArrayList<>();
+        for (GeofenceData geofence : mGeofences.values()) {
+            if (WifiIndex.matches(geofence, ssid, bssid)) {
+                result.add(geofence);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int geofenceCount() {
+        return mGeofences.size();
+    }
+
+    @Override
+    public void flush() {
+    }
+
     public static GeofenceDataSource getInstance() {
         return instance;
     }
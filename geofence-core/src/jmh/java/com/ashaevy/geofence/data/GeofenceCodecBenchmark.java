@@ -0,0 +1,71 @@
+package com.ashaevy.geofence.data;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding of a geofence list stored with {@link GeofenceCodec} and with GSON,
+ * which was used to persist geofences before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeofenceCodecBenchmark {
+
+    @Param({"1", "1000", "10000"})
+    public int geofenceCount;
+
+    private final Gson mGson = new Gson();
+    private final Type mListType = new TypeToken<List<GeofenceData>>() {}.getType();
+    private String mJson;
+    private byte[] mBinary;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(geofenceCount);
+        List<GeofenceData> geofences = new ArrayList<>(geofenceCount);
+        for (int i = 0; i < geofenceCount; i++) {
+            GeofenceData geofence = new GeofenceData();
+            geofence.setId("fence-" + i);
+            geofence.setLatitude(50 + random.nextDouble());
+            geofence.setLongitude(30 + random.nextDouble());
+            geofence.setRadius(50 + random.nextDouble() * 450);
+            geofence.setWifiName("office-" + random.nextInt(100));
+            geofences.add(geofence);
+        }
+        mJson = mGson.toJson(geofences);
+        mBinary = GeofenceCodec.encode(geofences);
+    }
+
+    @Benchmark
+    public List<GeofenceData> decodeGson() {
+        return mGson.fromJson(mJson, mListType);
+    }
+
+    @Benchmark
+    public List<GeofenceData> decodeCodec() throws IOException {
+        return GeofenceCodec.decodeAll(mBinary);
+    }
+}
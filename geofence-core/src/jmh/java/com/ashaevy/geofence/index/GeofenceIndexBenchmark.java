@@ -0,0 +1,90 @@
+package com.ashaevy.geofence.index;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.transition.GeofenceEvaluator;
+import com.ashaevy.geofence.transition.GeofenceTransitions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-fix cost of {@link GeofenceIndex} with the full scan over all geofences.
+ *
+ * Geofences with 50..500 m radius are spread over a 1 x 1 degree area (a large city),
+ * fixes are uniformly distributed over the same area. Every operation checks one fix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeofenceIndexBenchmark {
+
+    private static final int FIX_COUNT = 1024;
+
+    @Param({"100", "10000", "100000"})
+    public int geofenceCount;
+
+    private final double[] mLatitudes = new double[FIX_COUNT];
+    private final double[] mLongitudes = new double[FIX_COUNT];
+    private final List<GeofenceData> mResult = new ArrayList<>();
+    private final GeofenceEvaluator mEvaluator = new GeofenceEvaluator();
+    private GeofenceData[] mGeofences;
+    private GeofenceIndex mIndex;
+    private int mFix;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(geofenceCount);
+        List<GeofenceData> geofences = new ArrayList<>(geofenceCount);
+        for (int i = 0; i < geofenceCount; i++) {
+            GeofenceData geofence = new GeofenceData();
+            geofence.setId(String.valueOf(i));
+            geofence.setLatitude(50 + random.nextDouble());
+            geofence.setLongitude(30 + random.nextDouble());
+            geofence.setRadius(50 + random.nextDouble() * 450);
+            geofences.add(geofence);
+        }
+        for (int i = 0; i < FIX_COUNT; i++) {
+            mLatitudes[i] = 50 + random.nextDouble();
+            mLongitudes[i] = 30 + random.nextDouble();
+        }
+        mGeofences = geofences.toArray(new GeofenceData[geofenceCount]);
+        mIndex = new GeofenceIndex(geofences);
+    }
+
+    @Benchmark
+    public int index() {
+        int fix = mFix++ & (FIX_COUNT - 1);
+        mResult.clear();
+        return mIndex.findContaining(mLatitudes[fix], mLongitudes[fix], mResult);
+    }
+
+    @Benchmark
+    public int fullScan() {
+        int fix = mFix++ & (FIX_COUNT - 1);
+        int hits = 0;
+        for (GeofenceData geofence : mGeofences) {
+            if (mEvaluator.coordinatesTransition(geofence, mLatitudes[fix], mLongitudes[fix]) ==
+                    GeofenceTransitions.TRANSITION_ENTER) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,107 @@
+package com.ashaevy.geofence.replay;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures replay of CSV traces on a fork-join pool of the given parallelism.
+ * Fixes per second are trace count * path length / score.
+ *
+ * 10000 geofences with 50..500 m radius are spread over a 1 x 1 degree area, traces are
+ * random walks over the same area with about 10 m between fixes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraceReplayBenchmark {
+
+    private static final int GEOFENCE_COUNT = 10000;
+    private static final int TRACE_COUNT = 32;
+
+    @Param({"1000", "20000"})
+    public int pathLength;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private final List<File> mTraces = new ArrayList<>(TRACE_COUNT);
+    private TraceReplayer mReplayer;
+    private ForkJoinPool mPool;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(1);
+        List<GeofenceData> geofences = new ArrayList<>(GEOFENCE_COUNT);
+        for (int i = 0; i < GEOFENCE_COUNT; i++) {
+            GeofenceData geofence = new GeofenceData();
+            geofence.setId(String.valueOf(i));
+            geofence.setLatitude(50 + random.nextDouble());
+            geofence.setLongitude(30 + random.nextDouble());
+            geofence.setRadius(50 + random.nextDouble() * 450);
+            geofences.add(geofence);
+        }
+        mReplayer = new TraceReplayer(geofences);
+        for (int i = 0; i < TRACE_COUNT; i++) {
+            mTraces.add(writeTrace(random));
+        }
+        mPool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mPool.shutdown();
+        for (File trace : mTraces) {
+            trace.delete();
+        }
+    }
+
+    @Benchmark
+    public ReplayReport replayAll() throws IOException {
+        return mReplayer.replayAll(mTraces, mPool);
+    }
+
+    private File writeTrace(Random random) throws IOException {
+        File trace = File.createTempFile("trace", ".csv");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(trace));
+        try {
+            writer.write("time,lat,lon\n");
+            double latitude = 50 + random.nextDouble();
+            double longitude = 30 + random.nextDouble();
+            for (int i = 0; i < pathLength; i++) {
+                latitude += (random.nextDouble() - 0.5) * 2e-4;
+                longitude += (random.nextDouble() - 0.5) * 3e-4;
+                latitude = Math.min(51, Math.max(50, latitude));
+                longitude = Math.min(31, Math.max(30, longitude));
+                writer.write(1000L * i + "," + latitude + "," + longitude + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        return trace;
+    }
+}
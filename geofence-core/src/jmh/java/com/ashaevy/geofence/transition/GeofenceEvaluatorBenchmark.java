@@ -0,0 +1,86 @@
+package com.ashaevy.geofence.transition;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures containment check the transition detector runs on every fix, in every
+ * precision mode. Every operation checks one fix against all geofences.
+ *
+ * Fixes are placed at 0..2 radii from a random geofence, so a good share of them is close
+ * to the border, where tiered modes fall back to exact distance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeofenceEvaluatorBenchmark {
+
+    private static final int FIX_COUNT = 1024;
+
+    @Param({"1", "100", "1000"})
+    public int geofenceCount;
+
+    @Param({"0", "1", "2"})
+    public int precision;
+
+    private final double[] mLatitudes = new double[FIX_COUNT];
+    private final double[] mLongitudes = new double[FIX_COUNT];
+    private GeofenceData[] mGeofences;
+    private GeofenceEvaluator mEvaluator;
+    private int mFix;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(geofenceCount);
+        mGeofences = new GeofenceData[geofenceCount];
+        for (int i = 0; i < geofenceCount; i++) {
+            GeofenceData geofence = new GeofenceData();
+            geofence.setLatitude(50 + random.nextDouble() * 0.1);
+            geofence.setLongitude(30 + random.nextDouble() * 0.1);
+            geofence.setRadius(50 + random.nextDouble() * 950);
+            mGeofences[i] = geofence;
+        }
+        for (int i = 0; i < FIX_COUNT; i++) {
+            GeofenceData geofence = mGeofences[random.nextInt(geofenceCount)];
+            double distance = random.nextDouble() * 2 * geofence.getRadius();
+            double heading = random.nextDouble() * 2 * Math.PI;
+            // Small distances, flat offset in degrees is accurate enough.
+            mLatitudes[i] = geofence.getLatitude() + Math.toDegrees(
+                    distance * Math.cos(heading) / 6371009);
+            mLongitudes[i] = geofence.getLongitude() + Math.toDegrees(
+                    distance * Math.sin(heading) / 6371009 /
+                            Math.cos(Math.toRadians(geofence.getLatitude())));
+        }
+        mEvaluator = new GeofenceEvaluator(precision);
+    }
+
+    @Benchmark
+    public int coordinatesTransition() {
+        int fix = mFix++ & (FIX_COUNT - 1);
+        int inside = 0;
+        for (GeofenceData geofence : mGeofences) {
+            if (mEvaluator.coordinatesTransition(geofence, mLatitudes[fix], mLongitudes[fix]) ==
+                    GeofenceTransitions.TRANSITION_ENTER) {
+                inside++;
+            }
+        }
+        return inside;
+    }
+}
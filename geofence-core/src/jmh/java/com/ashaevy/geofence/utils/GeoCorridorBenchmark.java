@@ -0,0 +1,94 @@
+package com.ashaevy.geofence.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link GeoCorridor} containment with the distance to every route segment, and
+ * measures building the corridor. Routes are random walks with 200 m steps and a 50 m
+ * corridor, fixes are scattered around route points so about half of them are inside.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoCorridorBenchmark {
+
+    private static final int FIX_COUNT = 1024;
+    private static final double DISTANCE = 50;
+
+    @Param({"16", "1024", "16384"})
+    public int pointCount;
+
+    private final double[] mLatitudes = new double[FIX_COUNT];
+    private final double[] mLongitudes = new double[FIX_COUNT];
+    private double[] mRoute;
+    private double[] mRouteRadians;
+    private GeoCorridor mCorridor;
+    private int mFix;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(pointCount);
+        mRoute = new double[2 * pointCount];
+        GeoPoint point = new GeoPoint(50.45, 30.52);
+        double heading = 0;
+        for (int i = 0; i < pointCount; i++) {
+            mRoute[2 * i] = point.latitude;
+            mRoute[2 * i + 1] = point.longitude;
+            heading += random.nextGaussian() * 30;
+            point = SphericalUtil.computeOffset(point, 200, heading);
+        }
+        mRouteRadians = new double[mRoute.length];
+        for (int i = 0; i < mRoute.length; i++) {
+            mRouteRadians[i] = Math.toRadians(mRoute[i]);
+        }
+        for (int i = 0; i < FIX_COUNT; i++) {
+            int routePoint = random.nextInt(pointCount);
+            mLatitudes[i] = mRoute[2 * routePoint] + random.nextGaussian() * 0.0006;
+            mLongitudes[i] = mRoute[2 * routePoint + 1] + random.nextGaussian() * 0.0009;
+        }
+        mCorridor = new GeoCorridor(mRoute, DISTANCE);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        int fix = mFix++ & (FIX_COUNT - 1);
+        return mCorridor.contains(mLatitudes[fix], mLongitudes[fix]);
+    }
+
+    @Benchmark
+    public boolean segmentScan() {
+        int fix = mFix++ & (FIX_COUNT - 1);
+        double lat = Math.toRadians(mLatitudes[fix]);
+        double lng = Math.toRadians(mLongitudes[fix]);
+        double[] route = mRouteRadians;
+        double angle = DISTANCE / SphericalUtil.EARTH_RADIUS;
+        for (int i = 0; i + 3 < route.length; i += 2) {
+            if (SphericalUtil.distanceToSegmentRadians(lat, lng, route[i], route[i + 1],
+                    route[i + 2], route[i + 3]) <= angle) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public GeoCorridor build() {
+        return new GeoCorridor(mRoute, DISTANCE);
+    }
+}
@@ -0,0 +1,96 @@
+package com.ashaevy.geofence.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link GeoPolygon} containment with ray casting over all edges, and measures
+ * building and 5 m simplification of the polygon. Polygons are random star shapes 4 km
+ * wide, fixes are uniformly distributed over their bounding box.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoPolygonBenchmark {
+
+    private static final int FIX_COUNT = 1024;
+
+    @Param({"16", "1024", "8192"})
+    public int vertexCount;
+
+    private final double[] mLatitudes = new double[FIX_COUNT];
+    private final double[] mLongitudes = new double[FIX_COUNT];
+    private double[] mVertices;
+    private GeoPolygon mPolygon;
+    private int mFix;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(vertexCount);
+        mVertices = new double[2 * vertexCount];
+        GeoPoint center = new GeoPoint(50.45, 30.52);
+        for (int i = 0; i < vertexCount; i++) {
+            GeoPoint vertex = SphericalUtil.computeOffset(center,
+                    2000 * (0.3 + 0.7 * random.nextDouble()), 360.0 * i / vertexCount);
+            mVertices[2 * i] = vertex.latitude;
+            mVertices[2 * i + 1] = vertex.longitude;
+        }
+        for (int i = 0; i < FIX_COUNT; i++) {
+            mLatitudes[i] = 50.45 + (random.nextDouble() - 0.5) * 0.036;
+            mLongitudes[i] = 30.52 + (random.nextDouble() - 0.5) * 0.057;
+        }
+        mPolygon = new GeoPolygon(mVertices);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        int fix = mFix++ & (FIX_COUNT - 1);
+        return mPolygon.contains(mLatitudes[fix], mLongitudes[fix]);
+    }
+
+    @Benchmark
+    public boolean rayCasting() {
+        int fix = mFix++ & (FIX_COUNT - 1);
+        double latitude = mLatitudes[fix];
+        double longitude = mLongitudes[fix];
+        double[] vertices = mVertices;
+        boolean inside = false;
+        for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+            double yi = vertices[2 * i];
+            double yj = vertices[2 * j];
+            if ((yi > latitude) != (yj > latitude)) {
+                double xi = vertices[2 * i + 1];
+                double xj = vertices[2 * j + 1];
+                if (longitude < (xj - xi) * (latitude - yi) / (yj - yi) + xi) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    @Benchmark
+    public GeoPolygon build() {
+        return new GeoPolygon(mVertices);
+    }
+
+    @Benchmark
+    public double[] simplify() {
+        return PolygonSimplifier.simplifyRing(mVertices, 5);
+    }
+}
@@ -0,0 +1,111 @@
+package com.ashaevy.geofence.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SphericalUtil} on a random walk path. Pairwise operations run over all
+ * consecutive points of the path, so every benchmark costs about path length operations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SphericalUtilBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int pathLength;
+
+    private List<GeoPoint> mPath;
+    private double[] mLatLngs;
+    private double[] mLatLngsRadians;
+    private double[] mDistances;
+    private double[] mHeadings;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(pathLength);
+        mPath = new ArrayList<>(pathLength);
+        mDistances = new double[pathLength];
+        mHeadings = new double[pathLength];
+        mLatLngs = new double[2 * pathLength];
+        mLatLngsRadians = new double[2 * pathLength];
+        double latitude = 50.45;
+        double longitude = 30.52;
+        for (int i = 0; i < pathLength; i++) {
+            latitude += (random.nextDouble() - 0.5) * 1e-3;
+            longitude += (random.nextDouble() - 0.5) * 1e-3;
+            mPath.add(new GeoPoint(latitude, longitude));
+            mLatLngs[2 * i] = latitude;
+            mLatLngs[2 * i + 1] = longitude;
+            mLatLngsRadians[2 * i] = Math.toRadians(latitude);
+            mLatLngsRadians[2 * i + 1] = Math.toRadians(longitude);
+            mDistances[i] = random.nextDouble() * 1000;
+            mHeadings[i] = random.nextDouble() * 360 - 180;
+        }
+    }
+
+    @Benchmark
+    public double computeDistanceBetween() {
+        double sum = 0;
+        for (int i = 1; i < pathLength; i++) {
+            sum += SphericalUtil.computeDistanceBetween(mPath.get(i - 1), mPath.get(i));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void computeOffset(Blackhole blackhole) {
+        for (int i = 0; i < pathLength; i++) {
+            blackhole.consume(SphericalUtil.computeOffset(mPath.get(i), mDistances[i],
+                    mHeadings[i]));
+        }
+    }
+
+    @Benchmark
+    public double computeLength() {
+        return SphericalUtil.computeLength(mPath);
+    }
+
+    @Benchmark
+    public double computeSignedArea() {
+        return SphericalUtil.computeSignedArea(mPath);
+    }
+
+    @Benchmark
+    public double computeLengthArray() {
+        return SphericalUtil.computeLength(mLatLngs, 0, pathLength);
+    }
+
+    @Benchmark
+    public double computeLengthRadians() {
+        return SphericalUtil.computeLengthRadians(mLatLngsRadians, 0, pathLength);
+    }
+
+    @Benchmark
+    public double computeSignedAreaArray() {
+        return SphericalUtil.computeSignedArea(mLatLngs, 0, pathLength);
+    }
+
+    @Benchmark
+    public double computeSignedAreaRadians() {
+        return SphericalUtil.computeSignedAreaRadians(mLatLngsRadians, 0, pathLength);
+    }
+}
@@ -0,0 +1,337 @@
+package com.ashaevy.geofence.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact binary format of geofences.
+ *
+ * Stream starts with a header: magic bytes 'G' 'F' and a format version byte. Every geofence
+ * is a record of a flags byte, fixed-width latitude, longitude and radius (IEEE 754 doubles)
+ * followed by id and WiFi name, each present only if its flag is set and stored with a
+ * two-byte length prefix (see {@link DataOutputStream#writeUTF(String)}). Version 2 adds
+ * polygon vertices after them: a vertex count and interleaved latitude, longitude doubles.
+ * Version 3 adds a corridor route after the vertices: a point count, interleaved latitude,
+ * longitude doubles and the distance from the route. Version 4 adds SSIDs and BSSIDs of
+ * the geofence WiFi networks after the route, each list as a count and strings with a
+ * two-byte length prefix.
+ *
+ * Point and string lists are also encoded on their own, without the header, by
+ * {@link #encodePoints(double[])} and {@link #encodeStrings(String[])} for stores that
+ * keep geofence fields in separate columns.
+ */
+public final class GeofenceCodec {
+
+    static final byte MAGIC_0 = 'G';
+    static final byte MAGIC_1 = 'F';
+    static final byte VERSION = 4;
+    private static final byte VERSION_CIRCLES = 1;
+
+    private static final int FLAG_ID = 1;
+    private static final int FLAG_WIFI_NAME = 1 << 1;
+    private static final int FLAG_VERTICES = 1 << 2;
+    private static final int FLAG_ROUTE = 1 << 3;
+    private static final int FLAG_WIFI_SSIDS = 1 << 4;
+    private static final int FLAG_WIFI_BSSIDS = 1 << 5;
+
+    /**
+     * Guards against allocating huge arrays for corrupted data.
+     */
+    private static final int MAX_VERTICES = 1 << 20;
+    private static final int MAX_WIFI_NETWORKS = 1 << 16;
+
+    private GeofenceCodec() {}
+
+    /**
+     * Returns whether data starts with the header of this format, so stored values can be
+     * told apart from legacy formats.
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data.length >= 3 && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+    }
+
+    public static byte[] encode(GeofenceData geofenceData) {
+        List<GeofenceData> geofences = new ArrayList<>(1);
+        geofences.add(geofenceData);
+        return encode(geofences);
+    }
+
+    public static byte[] encode(Collection<GeofenceData> geofences) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 * geofences.size() + 3);
+        try {
+            Encoder encoder = new Encoder(bytes);
+            for (GeofenceData geofence : geofences) {
+                encoder.write(geofence);
+            }
+            encoder.flush();
+        } catch (IOException e) {
+            // Memory stream does not throw.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the first geofence of data or null if there are no geofences.
+     *
+     * @throws IOException if data is not in this format or is truncated
+     */
+    public static GeofenceData decode(byte[] data) throws IOException {
+        return new Decoder(new ByteArrayInputStream(data)).read();
+    }
+
+    /**
+     * @throws IOException if data is not in this format or is truncated
+     */
+    public static List<GeofenceData> decodeAll(byte[] data) throws IOException {
+        Decoder decoder = new Decoder(new ByteArrayInputStream(data));
+        List<GeofenceData> result = new ArrayList<>();
+        GeofenceData geofence;
+        while ((geofence = decoder.read()) != null) {
+            result.add(geofence);
+        }
+        return result;
+    }
+
+    /**
+     * Encodes polygon vertices or a corridor route as a point count and interleaved
+     * latitude, longitude doubles, the same as in a geofence record.
+     */
+    public static byte[] encodePoints(double[] latLngs) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + 8 * latLngs.length);
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            writePoints(out, latLngs);
+            out.flush();
+        } catch (IOException e) {
+            // Memory stream does not throw.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException if data is not encoded by {@link #encodePoints(double[])}
+     */
+    public static double[] decodePoints(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        double[] latLngs = readPoints(in);
+        checkFullyRead(in);
+        return latLngs;
+    }
+
+    /**
+     * Encodes SSIDs or BSSIDs as a count and strings with a two-byte length prefix, the same
+     * as in a geofence record.
+     */
+    public static byte[] encodeStrings(String[] strings) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeStrings(out, strings);
+            out.flush();
+        } catch (IOException e) {
+            // Memory stream does not throw.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException if data is not encoded by {@link #encodeStrings(String[])}
+     */
+    public static String[] decodeStrings(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        String[] strings = readStrings(in);
+        checkFullyRead(in);
+        return strings;
+    }
+
+    private static void writePoints(DataOutputStream out, double[] latLngs) throws IOException {
+        out.writeInt(latLngs.length / 2);
+        for (double coordinate : latLngs) {
+            out.writeDouble(coordinate);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings)
+            throws IOException {
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static double[] readPoints(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_VERTICES) {
+            throw new IOException("Invalid vertex count: " + count);
+        }
+        double[] latLngs = new double[2 * count];
+        for (int i = 0; i < latLngs.length; i++) {
+            latLngs[i] = in.readDouble();
+        }
+        return latLngs;
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_WIFI_NETWORKS) {
+            throw new IOException("Invalid WiFi network count: " + count);
+        }
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = in.readUTF();
+        }
+        return strings;
+    }
+
+    private static void checkFullyRead(DataInputStream in) throws IOException {
+        if (in.read() >= 0) {
+            throw new IOException("Unexpected data after the list.");
+        }
+    }
+
+    /**
+     * Writes geofences to a stream one by one. The header is written with the first record.
+     */
+    public static class Encoder {
+        private final DataOutputStream mOut;
+        private boolean mHeaderWritten;
+
+        public Encoder(OutputStream out) {
+            mOut = new DataOutputStream(out);
+        }
+
+        public void write(GeofenceData geofence) throws IOException {
+            writeHeader();
+            String id = geofence.getId();
+            String wifiName = geofence.getWifiName();
+            double[] vertices = geofence.getVertices();
+            double[] route = geofence.getRoute();
+            String[] wifiSsids = geofence.getWifiSsids();
+            String[] wifiBssids = geofence.getWifiBssids();
+            int flags = (id != null ? FLAG_ID : 0) | (wifiName != null ? FLAG_WIFI_NAME : 0) |
+                    (vertices != null ? FLAG_VERTICES : 0) | (route != null ? FLAG_ROUTE : 0) |
+                    (wifiSsids != null ? FLAG_WIFI_SSIDS : 0) |
+                    (wifiBssids != null ? FLAG_WIFI_BSSIDS : 0);
+            mOut.writeByte(flags);
+            mOut.writeDouble(geofence.getLatitude());
+            mOut.writeDouble(geofence.getLongitude());
+            mOut.writeDouble(geofence.getRadius());
+            if (id != null) {
+                mOut.writeUTF(id);
+            }
+            if (wifiName != null) {
+                mOut.writeUTF(wifiName);
+            }
+            if (vertices != null) {
+                writePoints(mOut, vertices);
+            }
+            if (route != null) {
+                writePoints(mOut, route);
+                mOut.writeDouble(geofence.getRouteDistance());
+            }
+            if (wifiSsids != null) {
+                writeStrings(mOut, wifiSsids);
+            }
+            if (wifiBssids != null) {
+                writeStrings(mOut, wifiBssids);
+            }
+        }
+
+        /**
+         * Writes the header if nothing was written and flushes the stream.
+         */
+        public void flush() throws IOException {
+            writeHeader();
+            mOut.flush();
+        }
+
+        private void writeHeader() throws IOException {
+            if (!mHeaderWritten) {
+                mOut.writeByte(MAGIC_0);
+                mOut.writeByte(MAGIC_1);
+                mOut.writeByte(VERSION);
+                mHeaderWritten = true;
+            }
+        }
+    }
+
+    /**
+     * Reads geofences from a stream one by one.
+     */
+    public static class Decoder {
+        private final DataInputStream mIn;
+        private boolean mHeaderRead;
+
+        public Decoder(InputStream in) {
+            mIn = new DataInputStream(in);
+        }
+
+        /**
+         * Returns the next geofence or null at the end of the stream.
+         *
+         * @throws IOException if data is not in this format or is truncated
+         */
+        public GeofenceData read() throws IOException {
+            readHeader();
+            int flags = mIn.read();
+            if (flags < 0) {
+                return null;
+            }
+            GeofenceData geofence = new GeofenceData();
+            geofence.setLatitude(mIn.readDouble());
+            geofence.setLongitude(mIn.readDouble());
+            geofence.setRadius(mIn.readDouble());
+            if ((flags & FLAG_ID) != 0) {
+                geofence.setId(mIn.readUTF());
+            }
+            if ((flags & FLAG_WIFI_NAME) != 0) {
+                geofence.setWifiName(mIn.readUTF());
+            }
+            if ((flags & FLAG_VERTICES) != 0) {
+                geofence.setVertices(readPoints(mIn));
+            }
+            if ((flags & FLAG_ROUTE) != 0) {
+                geofence.setRoute(readPoints(mIn));
+                geofence.setRouteDistance(mIn.readDouble());
+            }
+            if ((flags & FLAG_WIFI_SSIDS) != 0) {
+                geofence.setWifiSsids(readStrings(mIn));
+            }
+            if ((flags & FLAG_WIFI_BSSIDS) != 0) {
+                geofence.setWifiBssids(readStrings(mIn));
+            }
+            return geofence;
+        }
+
+        private void readHeader() throws IOException {
+            if (mHeaderRead) {
+                return;
+            }
+            try {
+                if (mIn.readByte() != MAGIC_0 || mIn.readByte() != MAGIC_1) {
+                    throw new IOException("Not a geofence stream.");
+                }
+                int version = mIn.readByte();
+                // Newer versions only add flagged fields, so older data reads as is.
+                if (version < VERSION_CIRCLES || version > VERSION) {
+                    throw new IOException("Unsupported geofence format version: " + version);
+                }
+            } catch (EOFException e) {
+                throw new IOException("Geofence stream has no header.", e);
+            }
+            mHeaderRead = true;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.ashaevy.geofence.data;
+
+import com.ashaevy.geofence.utils.GeoCorridor;
+import com.ashaevy.geofence.utils.GeoPolygon;
+
+/**
+ * POJO that stores data about current geofence configuration.
+ *
+ * Polygon geofences also have vertices and corridor geofences have a route; their center
+ * and radius describe the circle around the shape, so code that only knows circles still
+ * gets conservative bounds.
+ *
+ * Besides the WiFi name edited in UI, a geofence may list SSIDs and BSSIDs of all access
+ * points of its site; being connected to any of them means being inside.
+ */
+
+public class GeofenceData {
+    private String id;
+    private double latitude;
+    private double longitude;
+    private String wifiName;
+    private String[] wifiSsids;
+    private String[] wifiBssids;
+    private double radius;
+    private double[] vertices;
+    private double[] route;
+    private double routeDistance;
+
+    public GeofenceData() {
+    }
+
+    public GeofenceData(GeofenceData other) {
+        id = other.id;
+        latitude = other.latitude;
+        longitude = other.longitude;
+        wifiName = other.wifiName;
+        radius = other.radius;
+        // Arrays are never modified in place, so copies share them.
+        wifiSsids = other.wifiSsids;
+        wifiBssids = other.wifiBssids;
+        vertices = other.vertices;
+        route = other.route;
+        routeDistance = other.routeDistance;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public String getWifiName() {
+        return wifiName;
+    }
+
+    public void setWifiName(String wifiName) {
+        this.wifiName = wifiName;
+    }
+
+    /**
+     * Returns SSIDs of the geofence WiFi networks besides {@link #getWifiName()}, may be
+     * null. The array must not be modified.
+     */
+    public String[] getWifiSsids() {
+        return wifiSsids;
+    }
+
+    /**
+     * The array must not be modified afterwards.
+     */
+    public void setWifiSsids(String[] wifiSsids) {
+        this.wifiSsids = wifiSsids;
+    }
+
+    /**
+     * Returns BSSIDs of the geofence access points, MAC addresses compared ignoring case,
+     * may be null. The array must not be modified.
+     */
+    public String[] getWifiBssids() {
+        return wifiBssids;
+    }
+
+    /**
+     * The array must not be modified afterwards.
+     */
+    public void setWifiBssids(String[] wifiBssids) {
+        this.wifiBssids = wifiBssids;
+    }
+
+    public void setRadius(double radius) {
+        this.radius = radius;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Returns interleaved latitude, longitude pairs in degrees, null for circle geofences.
+     * The array must not be modified.
+     */
+    public double[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Sets polygon vertices, see {@link com.ashaevy.geofence.utils.GeoPolygon}. The array
+     * must not be modified afterwards.
+     */
+    public void setVertices(double[] vertices) {
+        this.vertices = vertices;
+    }
+
+    /**
+     * Makes this a polygon geofence: sets vertices of the polygon and the circle around it.
+     */
+    public void setPolygon(GeoPolygon polygon) {
+        double[] circle = polygon.getBoundingCircle();
+        latitude = circle[0];
+        longitude = circle[1];
+        radius = circle[2];
+        vertices = polygon.getVertices();
+    }
+
+    /**
+     * Returns interleaved latitude, longitude pairs in degrees of the corridor route, null
+     * for other geofences. The array must not be modified.
+     */
+    public double[] getRoute() {
+        return route;
+    }
+
+    /**
+     * Sets the corridor route, see {@link com.ashaevy.geofence.utils.GeoCorridor}. The array
+     * must not be modified afterwards.
+     */
+    public void setRoute(double[] route) {
+        this.route = route;
+    }
+
+    /**
+     * Returns the maximum distance from the corridor route, in meters.
+     */
+    public double getRouteDistance() {
+        return routeDistance;
+    }
+
+    public void setRouteDistance(double routeDistance) {
+        this.routeDistance = routeDistance;
+    }
+
+    /**
+     * Makes this a corridor geofence: sets the route, the distance from it and the circle
+     * around the corridor.
+     */
+    public void setCorridor(GeoCorridor corridor) {
+        double[] circle = corridor.getBoundingCircle();
+        latitude = circle[0];
+        longitude = circle[1];
+        radius = circle[2];
+        route = corridor.getRoute();
+        routeDistance = corridor.getDistance();
+    }
+}
@@ -0,0 +1,150 @@
+package com.ashaevy.geofence.data;
+
+import com.ashaevy.geofence.utils.GeoCorridor;
+import com.ashaevy.geofence.utils.GeoPolygon;
+import com.ashaevy.geofence.utils.PolygonSimplifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Prepares imported geofences for storage: validates polygons and simplifies them, so
+ * containment checks and map redraws don't pay for vertices that change nothing.
+ *
+ * Polygons are simplified with the given tolerance. If the simplified polygon is not valid
+ * (usually edges of a narrow part intersect), the tolerance is halved until it is, and the
+ * polygon is kept as is when the tolerance goes below {@link #MIN_TOLERANCE}.
+ *
+ * Corridor routes are validated and kept as is, only their bounding circles are set.
+ */
+public class GeofenceIngest {
+
+    /**
+     * Smallest tolerance tried, in meters.
+     */
+    public static final double MIN_TOLERANCE = 0.01;
+
+    private final double mTolerance;
+
+    /**
+     * @param tolerance maximum distance of a dropped vertex from the simplified polygon,
+     *                  in meters; 0 keeps all vertices
+     */
+    public GeofenceIngest(double tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Negative tolerance: " + tolerance);
+        }
+        mTolerance = tolerance;
+    }
+
+    /**
+     * Returns copies of geofences ready for storage: polygons are simplified and their
+     * bounding circles are set, corridors get their bounding circles, circles are unchanged.
+     *
+     * @throws IllegalArgumentException if a polygon or a corridor is invalid, see
+     *                                  {@link GeoPolygon} and {@link GeoCorridor}
+     */
+    public Result ingest(Collection<GeofenceData> geofences) {
+        List<GeofenceData> result = new ArrayList<>(geofences.size());
+        int polygonCount = 0;
+        long originalVertexCount = 0;
+        long simplifiedVertexCount = 0;
+        double maxAreaError = 0;
+        double maxRelativeAreaError = 0;
+        for (GeofenceData geofence : geofences) {
+            GeofenceData ingested = new GeofenceData(geofence);
+            if (geofence.getVertices() != null) {
+                GeoPolygon original;
+                try {
+                    original = new GeoPolygon(geofence.getVertices());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid polygon of geofence " +
+                            geofence.getId() + ": " + e.getMessage(), e);
+                }
+                GeoPolygon simplified = simplify(original);
+                ingested.setPolygon(simplified);
+
+                double areaError = Math.abs(simplified.getArea() - original.getArea());
+                polygonCount++;
+                originalVertexCount += original.getVertexCount();
+                simplifiedVertexCount += simplified.getVertexCount();
+                maxAreaError = Math.max(maxAreaError, areaError);
+                maxRelativeAreaError = Math.max(maxRelativeAreaError,
+                        areaError / original.getArea());
+            } else if (geofence.getRoute() != null) {
+                try {
+                    ingested.setCorridor(new GeoCorridor(geofence.getRoute(),
+                            geofence.getRouteDistance()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid corridor of geofence " +
+                            geofence.getId() + ": " + e.getMessage(), e);
+                }
+            }
+            result.add(ingested);
+        }
+        return new Result(result, polygonCount, originalVertexCount, simplifiedVertexCount,
+                maxAreaError, maxRelativeAreaError);
+    }
+
+    private GeoPolygon simplify(GeoPolygon original) {
+        double[] vertices = original.getVertices();
+        for (double tolerance = mTolerance; tolerance >= MIN_TOLERANCE; tolerance /= 2) {
+            double[] simplified = PolygonSimplifier.simplifyRing(vertices, tolerance);
+            if (simplified.length == vertices.length) {
+                break;
+            }
+            try {
+                return new GeoPolygon(simplified);
+            } catch (IllegalArgumentException e) {
+                // Simplification made the polygon invalid, retry with a smaller tolerance.
+            }
+        }
+        return original;
+    }
+
+    /**
+     * Ingested geofences and simplification statistics of their polygons.
+     */
+    public static final class Result {
+        public final List<GeofenceData> geofences;
+        public final int polygonCount;
+        public final long originalVertexCount;
+        public final long simplifiedVertexCount;
+        /**
+         * Largest difference of polygon area after simplification, in square meters.
+         */
+        public final double maxAreaError;
+        /**
+         * Largest difference of polygon area relative to the original area.
+         */
+        public final double maxRelativeAreaError;
+
+        Result(List<GeofenceData> geofences, int polygonCount, long originalVertexCount,
+               long simplifiedVertexCount, double maxAreaError, double maxRelativeAreaError) {
+            this.geofences = Collections.unmodifiableList(geofences);
+            this.polygonCount = polygonCount;
+            this.originalVertexCount = originalVertexCount;
+            this.simplifiedVertexCount = simplifiedVertexCount;
+            this.maxAreaError = maxAreaError;
+            this.maxRelativeAreaError = maxRelativeAreaError;
+        }
+
+        /**
+         * Returns the share of polygon vertices removed, from 0 to 1.
+         */
+        public double getVertexReduction() {
+            return originalVertexCount > 0 ?
+                    1 - (double) simplifiedVertexCount / originalVertexCount : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d polygons, %d -> %d vertices (%.1f%% removed), " +
+                            "max area error %.1f m2 (%.3f%%)", polygonCount,
+                    originalVertexCount, simplifiedVertexCount, getVertexReduction() * 100,
+                    maxAreaError, maxRelativeAreaError * 100);
+        }
+    }
+}
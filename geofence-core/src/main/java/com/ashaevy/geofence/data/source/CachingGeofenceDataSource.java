@@ -0,0 +1,164 @@
+package com.ashaevy.geofence.data.source;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-through cache in front of another {@link GeofenceDataSource}. Keeps decoded geofences,
+ * the last transition and the added flag in memory, so repeated reads on the detection path
+ * don't go to the underlying storage. Writes go through to the storage and update the cache.
+ *
+ * Geofences are copied in and out of the cache, so callers are free to modify them.
+ * Changes made to the storage bypassing this class must be reported with invalidate methods.
+ */
+public class CachingGeofenceDataSource implements GeofenceDataSource {
+
+    private final GeofenceDataSource mSource;
+
+    private GeofenceData mGeofenceData;
+    private boolean mGeofenceDataLoaded;
+
+    private int mGeofenceTransition;
+    private boolean mGeofenceTransitionLoaded;
+
+    private boolean mGeofenceAdded;
+    private boolean mGeofenceAddedLoaded;
+
+    private final Map<String, GeofenceData> mGeofences = new HashMap<>();
+
+    public CachingGeofenceDataSource(GeofenceDataSource source) {
+        mSource = source;
+    }
+
+    @Override
+    public synchronized void saveGeofenceData(GeofenceData geofenceData) {
+        mSource.saveGeofenceData(geofenceData);
+        mGeofenceData = copy(geofenceData);
+        mGeofenceDataLoaded = true;
+    }
+
+    @Override
+    public synchronized GeofenceData readGeofenceData() {
+        if (!mGeofenceDataLoaded) {
+            mGeofenceData = copy(mSource.readGeofenceData());
+            mGeofenceDataLoaded = true;
+        }
+        return copy(mGeofenceData);
+    }
+
+    @Override
+    public synchronized boolean geofenceAdded() {
+        if (!mGeofenceAddedLoaded) {
+            mGeofenceAdded = mSource.geofenceAdded();
+            mGeofenceAddedLoaded = true;
+        }
+        return mGeofenceAdded;
+    }
+
+    @Override
+    public synchronized void saveGeofenceAdded(boolean geofenceAdded) {
+        mSource.saveGeofenceAdded(geofenceAdded);
+        mGeofenceAdded = geofenceAdded;
+        mGeofenceAddedLoaded = true;
+    }
+
+    @Override
+    public synchronized void saveGeofenceTransition(int transition) {
+        mSource.saveGeofenceTransition(transition);
+        mGeofenceTransition = transition;
+        mGeofenceTransitionLoaded = true;
+    }
+
+    @Override
+    public synchronized int readGeofenceTransition() {
+        if (!mGeofenceTransitionLoaded) {
+            mGeofenceTransition = mSource.readGeofenceTransition();
+            mGeofenceTransitionLoaded = true;
+        }
+        return mGeofenceTransition;
+    }
+
+    @Override
+    public synchronized void saveGeofences(Collection<GeofenceData> geofences) {
+        mSource.saveGeofences(geofences);
+        for (GeofenceData geofence : geofences) {
+            mGeofences.put(geofence.getId(), copy(geofence));
+        }
+    }
+
+    @Override
+    public synchronized void deleteGeofences(Collection<String> ids) {
+        mSource.deleteGeofences(ids);
+        mGeofences.keySet().removeAll(ids);
+    }
+
+    @Override
+    public synchronized GeofenceData readGeofence(String id) {
+        GeofenceData geofence = mGeofences.get(id);
+        if (geofence == null) {
+            geofence = mSource.readGeofence(id);
+            if (geofence == null) {
+                return null;
+            }
+            geofence = copy(geofence);
+            mGeofences.put(id, geofence);
+        }
+        return copy(geofence);
+    }
+
+    /**
+     * Spatial queries are served by the index of the underlying storage.
+     */
+    @Override
+    public List<GeofenceData> readGeofencesNear(double latitude, double longitude,
+                                                double distance) {
+        return mSource.readGeofencesNear(latitude, longitude, distance);
+    }
+
+    @Override
+    public List<GeofenceData> readGeofencesOnWifi(String ssid, String bssid) {
+        return mSource.readGeofencesOnWifi(ssid, bssid);
+    }
+
+    @Override
+    public int geofenceCount() {
+        return mSource.geofenceCount();
+    }
+
+    @Override
+    public void flush() {
+        mSource.flush();
+    }
+
+    public synchronized void invalidateGeofenceData() {
+        mGeofenceDataLoaded = false;
+        mGeofenceData = null;
+    }
+
+    public synchronized void invalidateGeofenceTransition() {
+        mGeofenceTransitionLoaded = false;
+    }
+
+    public synchronized void invalidateGeofenceAdded() {
+        mGeofenceAddedLoaded = false;
+    }
+
+    public synchronized void invalidateGeofences() {
+        mGeofences.clear();
+    }
+
+    public synchronized void invalidateAll() {
+        invalidateGeofenceData();
+        invalidateGeofenceTransition();
+        invalidateGeofenceAdded();
+        invalidateGeofences();
+    }
+
+    private static GeofenceData copy(GeofenceData geofenceData) {
+        return geofenceData != null ? new GeofenceData(geofenceData) : null;
+    }
+}
@@ -0,0 +1,53 @@
+package com.ashaevy.geofence.data.source;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interface for Data Source that stores all geofence data.
+ *
+ * Besides the geofence edited in UI ({@link #readGeofenceData()}), data source keeps a store
+ * of many geofences identified by {@link GeofenceData#getId()}.
+ */
+public interface GeofenceDataSource {
+    void saveGeofenceData(GeofenceData geofenceData);
+    GeofenceData readGeofenceData();
+
+    boolean geofenceAdded();
+    void saveGeofenceAdded(boolean geofenceAdded);
+
+    void saveGeofenceTransition(int transition);
+    int readGeofenceTransition();
+
+    /**
+     * Inserts geofences in one batch. Geofence with the same id as already stored one
+     * replaces it.
+     */
+    void saveGeofences(Collection<GeofenceData> geofences);
+
+    void deleteGeofences(Collection<String> ids);
+
+    GeofenceData readGeofence(String id);
+
+    /**
+     * Returns geofences which border is not farther than distance meters from the point.
+     * Geofences that contain the point are always returned.
+     */
+    List<GeofenceData> readGeofencesNear(double latitude, double longitude, double distance);
+
+    /**
+     * Returns geofences of the WiFi network: its SSID or BSSID is one of theirs, see
+     * {@link com.ashaevy.geofence.index.WifiIndex}.
+     */
+    List<GeofenceData> readGeofencesOnWifi(String ssid, String bssid);
+
+    int geofenceCount();
+
+    /**
+     * Persists writes that the data source delays. Called when geofencing stops and when
+     * the process may be killed.
+     */
+    void flush();
+}
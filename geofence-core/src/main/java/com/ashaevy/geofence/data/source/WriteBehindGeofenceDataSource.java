@@ -0,0 +1,235 @@
+package com.ashaevy.geofence.data.source;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delays writes of frequently updated state (last transition and added flag) to another
+ * {@link GeofenceDataSource}. Writes of a value that is already stored are dropped, writes
+ * made within the window after the first pending one are coalesced into a single write,
+ * so storage I/O follows real state changes instead of the location fix rate.
+ *
+ * Geofence data and the geofence store are written through immediately. Changes made to
+ * the underlying storage bypassing this class must be reported with invalidate methods.
+ */
+public class WriteBehindGeofenceDataSource implements GeofenceDataSource {
+
+    private final GeofenceDataSource mSource;
+    private final ScheduledExecutorService mExecutor;
+    private final long mWindowMillis;
+
+    private int mStoredTransition;
+    private boolean mStoredTransitionLoaded;
+    private int mPendingTransition;
+    private boolean mTransitionPending;
+
+    private boolean mStoredAdded;
+    private boolean mStoredAddedLoaded;
+    private boolean mPendingAdded;
+    private boolean mAddedPending;
+
+    private boolean mFlushScheduled;
+
+    private long mDroppedWriteCount;
+    private long mCoalescedWriteCount;
+    private long mFlushedWriteCount;
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param executor     runs delayed flushes
+     * @param windowMillis time pending writes are kept before flush, 0 writes immediately
+     */
+    public WriteBehindGeofenceDataSource(GeofenceDataSource source,
+                                         ScheduledExecutorService executor,
+                                         long windowMillis) {
+        mSource = source;
+        mExecutor = executor;
+        mWindowMillis = windowMillis;
+    }
+
+    @Override
+    public void saveGeofenceData(GeofenceData geofenceData) {
+        mSource.saveGeofenceData(geofenceData);
+    }
+
+    @Override
+    public GeofenceData readGeofenceData() {
+        return mSource.readGeofenceData();
+    }
+
+    @Override
+    public synchronized boolean geofenceAdded() {
+        return mAddedPending ? mPendingAdded : storedAdded();
+    }
+
+    @Override
+    public void saveGeofenceAdded(boolean geofenceAdded) {
+        synchronized (this) {
+            if (geofenceAdded == (mAddedPending ? mPendingAdded : storedAdded())) {
+                mDroppedWriteCount++;
+                return;
+            }
+            if (mAddedPending) {
+                mCoalescedWriteCount++;
+            }
+            // Going back to the stored value cancels the pending write.
+            mAddedPending = geofenceAdded != storedAdded();
+            mPendingAdded = geofenceAdded;
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void saveGeofenceTransition(int transition) {
+        synchronized (this) {
+            if (transition == (mTransitionPending ? mPendingTransition : storedTransition())) {
+                mDroppedWriteCount++;
+                return;
+            }
+            if (mTransitionPending) {
+                mCoalescedWriteCount++;
+            }
+            mTransitionPending = transition != storedTransition();
+            mPendingTransition = transition;
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public synchronized int readGeofenceTransition() {
+        return mTransitionPending ? mPendingTransition : storedTransition();
+    }
+
+    @Override
+    public void saveGeofences(Collection<GeofenceData> geofences) {
+        mSource.saveGeofences(geofences);
+    }
+
+    @Override
+    public void deleteGeofences(Collection<String> ids) {
+        mSource.deleteGeofences(ids);
+    }
+
+    @Override
+    public GeofenceData readGeofence(String id) {
+        return mSource.readGeofence(id);
+    }
+
+    @Override
+    public List<GeofenceData> readGeofencesNear(double latitude, double longitude,
+                                                double distance) {
+        return mSource.readGeofencesNear(latitude, longitude, distance);
+    }
+
+    @Override
+    public List<GeofenceData> readGeofencesOnWifi(String ssid, String bssid) {
+        return mSource.readGeofencesOnWifi(ssid, bssid);
+    }
+
+    @Override
+    public int geofenceCount() {
+        return mSource.geofenceCount();
+    }
+
+    /**
+     * Writes pending values to the underlying data source.
+     */
+    @Override
+    public synchronized void flush() {
+        mFlushScheduled = false;
+        if (mTransitionPending) {
+            mSource.saveGeofenceTransition(mPendingTransition);
+            mStoredTransition = mPendingTransition;
+            mStoredTransitionLoaded = true;
+            mTransitionPending = false;
+            mFlushedWriteCount++;
+        }
+        if (mAddedPending) {
+            mSource.saveGeofenceAdded(mPendingAdded);
+            mStoredAdded = mPendingAdded;
+            mStoredAddedLoaded = true;
+            mAddedPending = false;
+            mFlushedWriteCount++;
+        }
+        mSource.flush();
+    }
+
+    /**
+     * Returns number of writes dropped because the value was already stored.
+     */
+    public synchronized long getDroppedWriteCount() {
+        return mDroppedWriteCount;
+    }
+
+    /**
+     * Returns number of writes merged into an already pending write.
+     */
+    public synchronized long getCoalescedWriteCount() {
+        return mCoalescedWriteCount;
+    }
+
+    /**
+     * Returns number of writes that reached the underlying data source.
+     */
+    public synchronized long getFlushedWriteCount() {
+        return mFlushedWriteCount;
+    }
+
+    /**
+     * Forgets the stored transition, so it is read again. A pending write still wins.
+     */
+    public synchronized void invalidateGeofenceTransition() {
+        if (!mTransitionPending) {
+            mStoredTransitionLoaded = false;
+        }
+    }
+
+    /**
+     * Forgets the stored added flag, so it is read again. A pending write still wins.
+     */
+    public synchronized void invalidateGeofenceAdded() {
+        if (!mAddedPending) {
+            mStoredAddedLoaded = false;
+        }
+    }
+
+    private void scheduleFlush() {
+        if (mWindowMillis <= 0) {
+            flush();
+            return;
+        }
+        synchronized (this) {
+            if (mFlushScheduled || (!mTransitionPending && !mAddedPending)) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        mExecutor.schedule(mFlushTask, mWindowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private int storedTransition() {
+        if (!mStoredTransitionLoaded) {
+            mStoredTransition = mSource.readGeofenceTransition();
+            mStoredTransitionLoaded = true;
+        }
+        return mStoredTransition;
+    }
+
+    private boolean storedAdded() {
+        if (!mStoredAddedLoaded) {
+            mStoredAdded = mSource.geofenceAdded();
+            mStoredAddedLoaded = true;
+        }
+        return mStoredAdded;
+    }
+}
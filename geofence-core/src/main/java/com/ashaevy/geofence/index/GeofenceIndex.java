@@ -0,0 +1,318 @@
+package com.ashaevy.geofence.index;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.utils.GeoBounds;
+import com.ashaevy.geofence.utils.GeoCorridor;
+import com.ashaevy.geofence.utils.GeoPolygon;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.toRadians;
+
+/**
+ * Immutable in-memory R-tree over geofences, bulk loaded with the
+ * Sort-Tile-Recursive algorithm. Bounding boxes are only used to select candidates:
+ * exact distance is computed just for geofences which bounds contain the point.
+ *
+ * Nodes are kept in flat arrays, one set per tree level. Children of a node are stored
+ * contiguously in the level below, so a node only keeps the range of its children.
+ * Geofence centers are kept in radians with precomputed cos(latitude) and haversine
+ * radius threshold, so the exact check does no trigonometry on the geofence side.
+ * Polygon geofences are indexed by their bounding circle and checked with {@link GeoPolygon},
+ * corridor geofences likewise with {@link GeoCorridor}.
+ */
+public class GeofenceIndex {
+
+    /**
+     * Maximum number of children of a node.
+     */
+    static final int NODE_CAPACITY = 16;
+
+    /**
+     * Bounding boxes are built around circles this much larger, so they also hold the
+     * circle on the WGS84 ellipsoid, which differs from the sphere by less than 0.6%.
+     */
+    private static final double BOUNDS_MARGIN = 1.01;
+
+    private final GeofenceData[] mGeofences;
+    private final double[] mLatitudes;
+    private final double[] mCosLatitudes;
+    private final double[] mLongitudes;
+    private final double[] mHavRadii;
+    /**
+     * Polygons of polygon geofences, null for circles.
+     */
+    private final GeoPolygon[] mPolygons;
+    /**
+     * Corridors of corridor geofences, null for other geofences.
+     */
+    private final GeoCorridor[] mCorridors;
+    private final Level[] mLevels;
+
+    public GeofenceIndex(Collection<GeofenceData> geofences) {
+        int size = geofences.size();
+        Level leaves = new Level(size);
+        GeofenceData[] items = geofences.toArray(new GeofenceData[size]);
+        for (int i = 0; i < size; i++) {
+            GeofenceData geofence = items[i];
+            GeoBounds bounds = GeoBounds.ofCircle(geofence.getLatitude(),
+                    geofence.getLongitude(), geofence.getRadius() * BOUNDS_MARGIN);
+            leaves.set(i, bounds.minLatitude, bounds.minLongitude,
+                    bounds.maxLatitude, bounds.maxLongitude, i, i + 1);
+        }
+
+        List<Level> levels = new ArrayList<>();
+        Level level = leaves;
+        while (true) {
+            int[] packed = strOrder(level);
+            level = level.permute(packed);
+            levels.add(level);
+            if (level.size <= 1) {
+                break;
+            }
+            level = level.pack();
+        }
+        mLevels = levels.toArray(new Level[levels.size()]);
+
+        // Leaf entries refer to the geofence they were built from.
+        Level packedLeaves = mLevels[0];
+        mGeofences = new GeofenceData[size];
+        mLatitudes = new double[size];
+        mCosLatitudes = new double[size];
+        mLongitudes = new double[size];
+        mHavRadii = new double[size];
+        mPolygons = new GeoPolygon[size];
+        mCorridors = new GeoCorridor[size];
+        for (int i = 0; i < size; i++) {
+            GeofenceData geofence = items[packedLeaves.childStart[i]];
+            mGeofences[i] = geofence;
+            mLatitudes[i] = toRadians(geofence.getLatitude());
+            mCosLatitudes[i] = cos(mLatitudes[i]);
+            mLongitudes[i] = toRadians(geofence.getLongitude());
+            mHavRadii[i] = SphericalUtil.havThreshold(geofence.getRadius());
+            if (geofence.getVertices() != null) {
+                mPolygons[i] = new GeoPolygon(geofence.getVertices());
+            } else if (geofence.getRoute() != null) {
+                mCorridors[i] = new GeoCorridor(geofence.getRoute(), geofence.getRouteDistance());
+            }
+        }
+    }
+
+    public int size() {
+        return mGeofences.length;
+    }
+
+    /**
+     * Adds geofences that contain the point to result.
+     *
+     * @return number of added geofences
+     */
+    public int findContaining(double latitude, double longitude,
+                              Collection<GeofenceData> result) {
+        if (mGeofences.length == 0) {
+            return 0;
+        }
+        double lat = toRadians(latitude);
+        return search(mLevels.length - 1, 0, latitude, longitude,
+                lat, cos(lat), toRadians(longitude), result);
+    }
+
+    /**
+     * Returns geofences that contain the point.
+     */
+    public List<GeofenceData> findContaining(double latitude, double longitude) {
+        List<GeofenceData> result = new ArrayList<>();
+        findContaining(latitude, longitude, result);
+        return result;
+    }
+
+    /**
+     * Adds geofences which bounding box intersects bounds to result, without exact checks.
+     * Used to select candidates for another evaluator.
+     *
+     * @return number of added geofences
+     */
+    public int findIntersecting(GeoBounds bounds, Collection<GeofenceData> result) {
+        if (mGeofences.length == 0) {
+            return 0;
+        }
+        return searchIntersecting(mLevels.length - 1, 0, bounds, result);
+    }
+
+    private int searchIntersecting(int levelIndex, int node, GeoBounds bounds,
+                                   Collection<GeofenceData> result) {
+        Level level = mLevels[levelIndex];
+        if (!level.intersects(node, bounds)) {
+            return 0;
+        }
+        if (levelIndex == 0) {
+            result.add(mGeofences[node]);
+            return 1;
+        }
+        int found = 0;
+        for (int child = level.childStart[node]; child < level.childEnd[node]; child++) {
+            found += searchIntersecting(levelIndex - 1, child, bounds, result);
+        }
+        return found;
+    }
+
+    private int search(int levelIndex, int node, double latitude, double longitude,
+                       double lat, double cosLat, double lng,
+                       Collection<GeofenceData> result) {
+        Level level = mLevels[levelIndex];
+        if (!level.contains(node, latitude, longitude)) {
+            return 0;
+        }
+        if (levelIndex == 0) {
+            GeoPolygon polygon = mPolygons[node];
+            GeoCorridor corridor = mCorridors[node];
+            boolean inside;
+            if (polygon != null) {
+                inside = polygon.contains(latitude, longitude);
+            } else if (corridor != null) {
+                inside = corridor.contains(latitude, longitude);
+            } else {
+                inside = SphericalUtil.isWithinDistance(mLatitudes[node], mCosLatitudes[node],
+                        mLongitudes[node], lat, cosLat, lng, mHavRadii[node]);
+            }
+            if (inside) {
+                result.add(mGeofences[node]);
+                return 1;
+            }
+            return 0;
+        }
+        int found = 0;
+        for (int child = level.childStart[node]; child < level.childEnd[node]; child++) {
+            found += search(levelIndex - 1, child, latitude, longitude, lat, cosLat, lng,
+                    result);
+        }
+        return found;
+    }
+
+    /**
+     * Returns Sort-Tile-Recursive order of level entries: entries are sorted by
+     * longitude of the center, cut into vertical slices and each slice is sorted by
+     * latitude, so every run of {@link #NODE_CAPACITY} entries is spatially close.
+     */
+    private static int[] strOrder(final Level level) {
+        Integer[] order = new Integer[level.size];
+        for (int i = 0; i < level.size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(level.centerLongitude(a), level.centerLongitude(b));
+            }
+        });
+        int nodeCount = (level.size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+        for (int start = 0; start < level.size; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(start + sliceSize, level.size),
+                    new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(level.centerLatitude(a), level.centerLatitude(b));
+                }
+            });
+        }
+        int[] result = new int[level.size];
+        for (int i = 0; i < level.size; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /**
+     * Bounds of all nodes of one tree level and ranges of their children in the level below.
+     * For leaves the range holds the index of the geofence instead.
+     */
+    private static class Level {
+        final int size;
+        final double[] minLatitude;
+        final double[] minLongitude;
+        final double[] maxLatitude;
+        final double[] maxLongitude;
+        final int[] childStart;
+        final int[] childEnd;
+
+        Level(int size) {
+            this.size = size;
+            minLatitude = new double[size];
+            minLongitude = new double[size];
+            maxLatitude = new double[size];
+            maxLongitude = new double[size];
+            childStart = new int[size];
+            childEnd = new int[size];
+        }
+
+        void set(int i, double minLat, double minLng, double maxLat, double maxLng,
+                 int start, int end) {
+            minLatitude[i] = minLat;
+            minLongitude[i] = minLng;
+            maxLatitude[i] = maxLat;
+            maxLongitude[i] = maxLng;
+            childStart[i] = start;
+            childEnd[i] = end;
+        }
+
+        boolean contains(int i, double latitude, double longitude) {
+            return latitude >= minLatitude[i] && latitude <= maxLatitude[i] &&
+                    longitude >= minLongitude[i] && longitude <= maxLongitude[i];
+        }
+
+        boolean intersects(int i, GeoBounds bounds) {
+            return bounds.minLatitude <= maxLatitude[i] && bounds.maxLatitude >= minLatitude[i] &&
+                    bounds.minLongitude <= maxLongitude[i] &&
+                    bounds.maxLongitude >= minLongitude[i];
+        }
+
+        double centerLatitude(int i) {
+            return (minLatitude[i] + maxLatitude[i]) / 2;
+        }
+
+        double centerLongitude(int i) {
+            return (minLongitude[i] + maxLongitude[i]) / 2;
+        }
+
+        Level permute(int[] order) {
+            Level result = new Level(size);
+            for (int i = 0; i < size; i++) {
+                int from = order[i];
+                result.set(i, minLatitude[from], minLongitude[from], maxLatitude[from],
+                        maxLongitude[from], childStart[from], childEnd[from]);
+            }
+            return result;
+        }
+
+        /**
+         * Builds parent level: every run of {@link #NODE_CAPACITY} entries becomes one node.
+         */
+        Level pack() {
+            Level parents = new Level((size + NODE_CAPACITY - 1) / NODE_CAPACITY);
+            for (int p = 0; p < parents.size; p++) {
+                int start = p * NODE_CAPACITY;
+                int end = Math.min(start + NODE_CAPACITY, size);
+                double minLat = Double.POSITIVE_INFINITY;
+                double minLng = Double.POSITIVE_INFINITY;
+                double maxLat = Double.NEGATIVE_INFINITY;
+                double maxLng = Double.NEGATIVE_INFINITY;
+                for (int i = start; i < end; i++) {
+                    minLat = Math.min(minLat, minLatitude[i]);
+                    minLng = Math.min(minLng, minLongitude[i]);
+                    maxLat = Math.max(maxLat, maxLatitude[i]);
+                    maxLng = Math.max(maxLng, maxLongitude[i]);
+                }
+                parents.set(p, minLat, minLng, maxLat, maxLng, start, end);
+            }
+            return parents;
+        }
+    }
+}
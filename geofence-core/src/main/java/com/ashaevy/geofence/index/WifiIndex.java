@@ -0,0 +1,150 @@
+package com.ashaevy.geofence.index;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable hash index from WiFi networks to geofences, so a connectivity change resolves
+ * every geofence of the new network with two lookups instead of comparing strings with
+ * each geofence.
+ *
+ * SSIDs are the WiFi name and {@link GeofenceData#getWifiSsids()}, compared exactly.
+ * BSSIDs are {@link GeofenceData#getWifiBssids()}, compared ignoring case. Geofences
+ * without id are not indexed.
+ */
+public class WifiIndex {
+
+    private static final String[] NO_IDS = new String[0];
+
+    private final Map<String, String[]> mSsidFenceIds;
+    private final Map<String, String[]> mBssidFenceIds;
+
+    public WifiIndex(Collection<GeofenceData> geofences) {
+        Map<String, Set<String>> ssidFenceIds = new HashMap<>();
+        Map<String, Set<String>> bssidFenceIds = new HashMap<>();
+        for (GeofenceData geofence : geofences) {
+            String id = geofence.getId();
+            if (id == null) {
+                continue;
+            }
+            String wifiName = geofence.getWifiName();
+            if (wifiName != null && !wifiName.isEmpty()) {
+                add(ssidFenceIds, wifiName, id);
+            }
+            if (geofence.getWifiSsids() != null) {
+                for (String ssid : geofence.getWifiSsids()) {
+                    if (ssid != null && !ssid.isEmpty()) {
+                        add(ssidFenceIds, ssid, id);
+                    }
+                }
+            }
+            if (geofence.getWifiBssids() != null) {
+                for (String bssid : geofence.getWifiBssids()) {
+                    if (bssid != null && !bssid.isEmpty()) {
+                        add(bssidFenceIds, normalizeBssid(bssid), id);
+                    }
+                }
+            }
+        }
+        mSsidFenceIds = freeze(ssidFenceIds);
+        mBssidFenceIds = freeze(bssidFenceIds);
+    }
+
+    /**
+     * Returns ids of geofences of the network, each id once.
+     *
+     * @param ssid  SSID without quotes, may be null
+     * @param bssid BSSID of the access point, may be null
+     */
+    public Set<String> findFenceIds(String ssid, String bssid) {
+        Set<String> result = new LinkedHashSet<>();
+        findFenceIds(ssid, bssid, result);
+        return result;
+    }
+
+    /**
+     * Adds ids of geofences of the network to result. An id matched by both SSID and BSSID
+     * is added twice unless result is a set.
+     *
+     * @return number of added ids
+     */
+    public int findFenceIds(String ssid, String bssid, Collection<String> result) {
+        String[] bySsid = ssid != null ? mSsidFenceIds.get(ssid) : null;
+        String[] byBssid = bssid != null ? mBssidFenceIds.get(normalizeBssid(bssid)) : null;
+        int count = 0;
+        for (String id : bySsid != null ? bySsid : NO_IDS) {
+            result.add(id);
+            count++;
+        }
+        for (String id : byBssid != null ? byBssid : NO_IDS) {
+            result.add(id);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns number of indexed SSIDs and BSSIDs.
+     */
+    public int networkCount() {
+        return mSsidFenceIds.size() + mBssidFenceIds.size();
+    }
+
+    /**
+     * Returns whether the device connected to the network is inside the geofence, checks
+     * only the networks of this geofence.
+     */
+    public static boolean matches(GeofenceData geofence, String ssid, String bssid) {
+        if (ssid != null && !ssid.isEmpty()) {
+            if (ssid.equals(geofence.getWifiName())) {
+                return true;
+            }
+            if (geofence.getWifiSsids() != null) {
+                for (String wifiSsid : geofence.getWifiSsids()) {
+                    if (ssid.equals(wifiSsid)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        if (bssid != null && !bssid.isEmpty() && geofence.getWifiBssids() != null) {
+            for (String wifiBssid : geofence.getWifiBssids()) {
+                if (bssid.equalsIgnoreCase(wifiBssid)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String normalizeBssid(String bssid) {
+        return bssid.toLowerCase(Locale.US);
+    }
+
+    private static void add(Map<String, Set<String>> index, String network, String id) {
+        Set<String> ids = index.get(network);
+        if (ids == null) {
+            ids = new LinkedHashSet<>();
+            index.put(network, ids);
+        }
+        ids.add(id);
+    }
+
+    /**
+     * Replaces sets with arrays, which take less memory and iterate without allocation.
+     */
+    private static Map<String, String[]> freeze(Map<String, Set<String>> index) {
+        Map<String, String[]> result = new HashMap<>(index.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            Set<String> ids = entry.getValue();
+            result.put(entry.getKey(), ids.toArray(new String[ids.size()]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,442 @@
+package com.ashaevy.geofence.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal of geofence transitions.
+ *
+ * Records have a fixed size and are written into memory mapped segment files, so an append
+ * is a memory write that never waits for disk. When the active segment is full, a new one is
+ * started. {@link #compact(long)} rewrites full segments without expired and repeated records.
+ *
+ * Segment layout: 16 byte header (magic 'T' 'J', version, record size, capacity) followed
+ * by records. Record layout: timestamp (8 bytes), committed flag, transition, source,
+ * fence id length (1 byte each) and the UTF-8 fence id padded to {@link #MAX_FENCE_ID_BYTES}.
+ * The committed flag is written last, so a record torn by a crash is never read.
+ *
+ * Journal has a single writer; readers may run concurrently with it.
+ */
+public class TransitionJournal implements Closeable {
+
+    public static final int SOURCE_UNKNOWN = 0;
+    public static final int SOURCE_LOCATION = 1;
+    public static final int SOURCE_GEOFENCING_API = 2;
+    public static final int SOURCE_NETWORK = 3;
+
+    public static final int MAX_FENCE_ID_BYTES = 52;
+
+    static final int RECORD_SIZE = 64;
+    static final int HEADER_SIZE = 16;
+    private static final byte MAGIC_0 = 'T';
+    private static final byte MAGIC_1 = 'J';
+    private static final byte VERSION = 1;
+
+    private static final int OFFSET_TIMESTAMP = 0;
+    private static final int OFFSET_COMMITTED = 8;
+    private static final int OFFSET_TRANSITION = 9;
+    private static final int OFFSET_SOURCE = 10;
+    private static final int OFFSET_ID_LENGTH = 11;
+    private static final int OFFSET_ID = 12;
+
+    private static final String SEGMENT_PREFIX = "transitions-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String COMPACTED_SUFFIX = ".compacted";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+    private final int mRecordsPerSegment;
+    private final List<Segment> mSegments = new ArrayList<>();
+
+    /**
+     * Opens journal in directory or creates a new one.
+     *
+     * @param recordsPerSegment capacity of new segments, existing ones keep their capacity
+     */
+    public TransitionJournal(File directory, int recordsPerSegment) throws IOException {
+        if (recordsPerSegment <= 0) {
+            throw new IllegalArgumentException("Segment capacity must be positive.");
+        }
+        mDirectory = directory;
+        mRecordsPerSegment = recordsPerSegment;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create journal directory " + directory);
+        }
+        for (File file : listFiles(COMPACTED_SUFFIX)) {
+            // Left by an interrupted compaction. A segment it replaces is still in place,
+            // so the compacted copy is dropped; records may repeat, but none are lost.
+            File target = new File(directory, file.getName().substring(0,
+                    file.getName().length() - COMPACTED_SUFFIX.length()) + SEGMENT_SUFFIX);
+            if (target.exists()) {
+                if (!file.delete()) {
+                    throw new IOException("Can't delete " + file);
+                }
+            } else if (!file.renameTo(target)) {
+                throw new IOException("Can't rename " + file + " to " + target);
+            }
+        }
+        for (File file : listFiles(SEGMENT_SUFFIX)) {
+            mSegments.add(Segment.open(file, sequenceOf(file)));
+        }
+        if (mSegments.isEmpty()) {
+            mSegments.add(Segment.create(segmentFile(1, SEGMENT_SUFFIX), 1, recordsPerSegment));
+        }
+    }
+
+    /**
+     * Appends a transition record.
+     *
+     * @throws IllegalArgumentException if fence id is longer than {@link #MAX_FENCE_ID_BYTES}
+     *                                  in UTF-8
+     */
+    public synchronized void append(long timestamp, String fenceId, int transition, int source)
+            throws IOException {
+        byte[] id = fenceId != null ? fenceId.getBytes(UTF_8) : new byte[0];
+        if (id.length > MAX_FENCE_ID_BYTES) {
+            throw new IllegalArgumentException("Fence id is too long: " + fenceId);
+        }
+        Segment active = activeSegment();
+        if (active.isFull()) {
+            active = Segment.create(segmentFile(active.sequence + 1, SEGMENT_SUFFIX),
+                    active.sequence + 1, mRecordsPerSegment);
+            mSegments.add(active);
+        }
+        active.append(timestamp, id, transition, source);
+    }
+
+    /**
+     * Returns a reader positioned before the oldest record. Reader sees segments that
+     * existed when it was created and records appended to them later.
+     */
+    public synchronized Reader reader() {
+        return new Reader(new ArrayList<>(mSegments));
+    }
+
+    /**
+     * Rewrites full segments without records older than retainAfter and without records
+     * that repeat the previous transition of the same fence. The active segment is kept
+     * as is.
+     *
+     * @return number of removed records
+     */
+    public synchronized int compact(long retainAfter) throws IOException {
+        List<Segment> sealed = new ArrayList<>(mSegments.subList(0, mSegments.size() - 1));
+        if (sealed.isEmpty()) {
+            return 0;
+        }
+
+        List<Segment> compacted = new ArrayList<>();
+        Map<String, Integer> lastTransitions = new HashMap<>();
+        byte[] record = new byte[RECORD_SIZE];
+        int removed = 0;
+        Segment output = null;
+        for (Segment segment : sealed) {
+            for (int i = 0; i < segment.count; i++) {
+                segment.read(i, record);
+                ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+                long timestamp = recordBuffer.getLong(OFFSET_TIMESTAMP);
+                int transition = record[OFFSET_TRANSITION];
+                String fenceId = new String(record, OFFSET_ID, record[OFFSET_ID_LENGTH], UTF_8);
+                Integer lastTransition = lastTransitions.get(fenceId);
+                if (timestamp < retainAfter ||
+                        (lastTransition != null && lastTransition == transition)) {
+                    removed++;
+                    continue;
+                }
+                lastTransitions.put(fenceId, transition);
+                if (output == null || output.isFull()) {
+                    Segment target = sealed.get(compacted.size());
+                    output = Segment.create(segmentFile(target.sequence, COMPACTED_SUFFIX),
+                            target.sequence, target.capacity);
+                    compacted.add(output);
+                }
+                output.appendRaw(record);
+            }
+        }
+
+        // Compacted segments replace the first sealed ones by rename, the rest are deleted
+        // afterwards, so every record stays in a segment file at any point of a crash.
+        for (Segment segment : compacted) {
+            segment.buffer.force();
+        }
+        List<Segment> result = new ArrayList<>();
+        for (int i = 0; i < compacted.size(); i++) {
+            Segment segment = compacted.get(i);
+            File target = sealed.get(i).file;
+            sealed.get(i).close();
+            if (!segment.file.renameTo(target)) {
+                throw new IOException("Can't rename " + segment.file + " to " + target);
+            }
+            result.add(segment.renamed(target));
+        }
+        for (Segment segment : sealed.subList(compacted.size(), sealed.size())) {
+            segment.close();
+            if (!segment.file.delete()) {
+                throw new IOException("Can't delete " + segment.file);
+            }
+        }
+        result.add(activeSegment());
+        mSegments.clear();
+        mSegments.addAll(result);
+        return removed;
+    }
+
+    public synchronized int segmentCount() {
+        return mSegments.size();
+    }
+
+    /**
+     * Forces written records to the storage device.
+     */
+    public synchronized void sync() {
+        activeSegment().buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : mSegments) {
+            segment.close();
+        }
+    }
+
+    private Segment activeSegment() {
+        return mSegments.get(mSegments.size() - 1);
+    }
+
+    private File segmentFile(long sequence, String suffix) {
+        return new File(mDirectory, String.format("%s%012d%s", SEGMENT_PREFIX, sequence, suffix));
+    }
+
+    private File[] listFiles(final String suffix) {
+        File[] files = mDirectory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(suffix);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        // Sequence numbers are zero padded, so names sort in the order of segments.
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static long sequenceOf(File file) throws IOException {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected journal file " + file, e);
+        }
+    }
+
+    /**
+     * Sequential reader of journal records. Accessors return fields of the current record.
+     */
+    public static class Reader {
+        private final List<Segment> mSegments;
+        private int mSegmentIndex;
+        private int mRecordIndex = -1;
+        private ByteBuffer mBuffer;
+        private int mOffset;
+
+        Reader(List<Segment> segments) {
+            mSegments = segments;
+            if (!segments.isEmpty()) {
+                mBuffer = segments.get(0).readOnlyBuffer();
+            }
+        }
+
+        /**
+         * Moves to the next record.
+         *
+         * @return false if there are no more records
+         */
+        public boolean next() {
+            while (mBuffer != null) {
+                Segment segment = mSegments.get(mSegmentIndex);
+                int next = mRecordIndex + 1;
+                if (next < segment.capacity) {
+                    int offset = HEADER_SIZE + next * RECORD_SIZE;
+                    if (mBuffer.get(offset + OFFSET_COMMITTED) != 0) {
+                        mRecordIndex = next;
+                        mOffset = offset;
+                        return true;
+                    }
+                    if (mSegmentIndex == mSegments.size() - 1) {
+                        // End of the active segment, more records may be appended later.
+                        return false;
+                    }
+                }
+                mSegmentIndex++;
+                mRecordIndex = -1;
+                mBuffer = mSegmentIndex < mSegments.size() ?
+                        mSegments.get(mSegmentIndex).readOnlyBuffer() : null;
+            }
+            return false;
+        }
+
+        public long getTimestamp() {
+            return mBuffer.getLong(mOffset + OFFSET_TIMESTAMP);
+        }
+
+        public int getTransition() {
+            return mBuffer.get(mOffset + OFFSET_TRANSITION);
+        }
+
+        public int getSource() {
+            return mBuffer.get(mOffset + OFFSET_SOURCE);
+        }
+
+        /**
+         * Returns fence id of the current record, null if it was not set.
+         */
+        public String getFenceId() {
+            int length = mBuffer.get(mOffset + OFFSET_ID_LENGTH);
+            if (length == 0) {
+                return null;
+            }
+            byte[] id = new byte[length];
+            ByteBuffer duplicate = mBuffer.duplicate();
+            duplicate.position(mOffset + OFFSET_ID);
+            duplicate.get(id);
+            return new String(id, UTF_8);
+        }
+    }
+
+    /**
+     * Memory mapped segment file.
+     */
+    private static class Segment {
+        final File file;
+        final long sequence;
+        final int capacity;
+        final RandomAccessFile randomAccessFile;
+        final MappedByteBuffer buffer;
+        int count;
+
+        private Segment(File file, long sequence, int capacity,
+                        RandomAccessFile randomAccessFile, MappedByteBuffer buffer, int count) {
+            this.file = file;
+            this.sequence = sequence;
+            this.capacity = capacity;
+            this.randomAccessFile = randomAccessFile;
+            this.buffer = buffer;
+            this.count = count;
+        }
+
+        static Segment create(File file, long sequence, int capacity) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+                randomAccessFile.setLength(size);
+                MappedByteBuffer buffer = randomAccessFile.getChannel().map(
+                        FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.put(0, MAGIC_0);
+                buffer.put(1, MAGIC_1);
+                buffer.put(2, VERSION);
+                buffer.putInt(4, RECORD_SIZE);
+                buffer.putInt(8, capacity);
+                return new Segment(file, sequence, capacity, randomAccessFile, buffer, 0);
+            } catch (IOException e) {
+                randomAccessFile.close();
+                throw e;
+            }
+        }
+
+        static Segment open(File file, long sequence) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                MappedByteBuffer buffer = randomAccessFile.getChannel().map(
+                        FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+                if (buffer.limit() < HEADER_SIZE || buffer.get(0) != MAGIC_0 ||
+                        buffer.get(1) != MAGIC_1 || buffer.get(2) != VERSION ||
+                        buffer.getInt(4) != RECORD_SIZE) {
+                    throw new IOException("Not a transition journal segment: " + file);
+                }
+                int capacity = buffer.getInt(8);
+                if (buffer.limit() < HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+                    throw new IOException("Truncated transition journal segment: " + file);
+                }
+                // Records are committed in order, so the first uncommitted one is found
+                // by binary search.
+                int low = 0;
+                int high = capacity;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (buffer.get(HEADER_SIZE + middle * RECORD_SIZE + OFFSET_COMMITTED) != 0) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                return new Segment(file, sequence, capacity, randomAccessFile, buffer, low);
+            } catch (IOException e) {
+                randomAccessFile.close();
+                throw e;
+            }
+        }
+
+        boolean isFull() {
+            return count >= capacity;
+        }
+
+        void append(long timestamp, byte[] id, int transition, int source) {
+            int offset = HEADER_SIZE + count * RECORD_SIZE;
+            buffer.putLong(offset + OFFSET_TIMESTAMP, timestamp);
+            buffer.put(offset + OFFSET_TRANSITION, (byte) transition);
+            buffer.put(offset + OFFSET_SOURCE, (byte) source);
+            buffer.put(offset + OFFSET_ID_LENGTH, (byte) id.length);
+            for (int i = 0; i < id.length; i++) {
+                buffer.put(offset + OFFSET_ID + i, id[i]);
+            }
+            buffer.put(offset + OFFSET_COMMITTED, (byte) 1);
+            count++;
+        }
+
+        void appendRaw(byte[] record) {
+            int offset = HEADER_SIZE + count * RECORD_SIZE;
+            for (int i = 0; i < RECORD_SIZE; i++) {
+                if (i != OFFSET_COMMITTED) {
+                    buffer.put(offset + i, record[i]);
+                }
+            }
+            buffer.put(offset + OFFSET_COMMITTED, (byte) 1);
+            count++;
+        }
+
+        void read(int index, byte[] record) {
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(HEADER_SIZE + index * RECORD_SIZE);
+            duplicate.get(record);
+        }
+
+        ByteBuffer readOnlyBuffer() {
+            return buffer.asReadOnlyBuffer();
+        }
+
+        Segment renamed(File newFile) {
+            // Mapping stays valid after rename.
+            return new Segment(newFile, sequence, capacity, randomAccessFile, buffer, count);
+        }
+
+        void close() throws IOException {
+            randomAccessFile.close();
+        }
+    }
+}
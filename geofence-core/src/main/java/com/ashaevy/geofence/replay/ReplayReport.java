@@ -0,0 +1,34 @@
+package com.ashaevy.geofence.replay;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of a batch replay, in the order of traces, with the overall throughput.
+ */
+public final class ReplayReport {
+
+    public final List<ReplayResult> results;
+    public final long fixCount;
+    public final long elapsedNanos;
+
+    public ReplayReport(List<ReplayResult> results, long elapsedNanos) {
+        this.results = Collections.unmodifiableList(results);
+        long fixCount = 0;
+        for (ReplayResult result : results) {
+            fixCount += result.fixCount;
+        }
+        this.fixCount = fixCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public double getFixesPerSecond() {
+        return elapsedNanos > 0 ? fixCount * 1e9 / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d traces, %d fixes in %.1f ms, %.0f fixes/s",
+                results.size(), fixCount, elapsedNanos / 1e6, getFixesPerSecond());
+    }
+}
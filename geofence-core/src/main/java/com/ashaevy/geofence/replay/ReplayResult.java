@@ -0,0 +1,20 @@
+package com.ashaevy.geofence.replay;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Transitions produced by replay of one trace.
+ */
+public final class ReplayResult {
+
+    public final String traceName;
+    public final long fixCount;
+    public final List<ReplayTransition> transitions;
+
+    public ReplayResult(String traceName, long fixCount, List<ReplayTransition> transitions) {
+        this.traceName = traceName;
+        this.fixCount = fixCount;
+        this.transitions = Collections.unmodifiableList(transitions);
+    }
+}
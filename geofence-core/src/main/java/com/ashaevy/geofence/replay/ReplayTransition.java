@@ -0,0 +1,30 @@
+package com.ashaevy.geofence.replay;
+
+import com.ashaevy.geofence.transition.GeofenceTransitions;
+
+/**
+ * Geofence transition produced by trace replay.
+ */
+public final class ReplayTransition {
+
+    public final String traceName;
+    public final String geofenceId;
+    public final long time;
+    /**
+     * {@link GeofenceTransitions#TRANSITION_ENTER} or {@link GeofenceTransitions#TRANSITION_EXIT}
+     */
+    public final int transition;
+
+    public ReplayTransition(String traceName, String geofenceId, long time, int transition) {
+        this.traceName = traceName;
+        this.geofenceId = geofenceId;
+        this.time = time;
+        this.transition = transition;
+    }
+
+    @Override
+    public String toString() {
+        return traceName + " " + time + " " + geofenceId + " " +
+                (transition == GeofenceTransitions.TRANSITION_ENTER ? "ENTER" : "EXIT");
+    }
+}
@@ -0,0 +1,246 @@
+package com.ashaevy.geofence.replay;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Streaming parser of recorded GPS traces. Fixes are passed to the handler as they are read,
+ * the trace is never kept in memory.
+ *
+ * Supported formats:
+ * <ul>
+ * <li>GPX: {@code trkpt} and {@code rtept} points with optional {@code time};</li>
+ * <li>CSV: time, latitude, longitude columns in this order, or in any order with a header
+ * naming them. Time is epoch milliseconds or ISO 8601.</li>
+ * </ul>
+ */
+public final class TraceParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String DISALLOW_DOCTYPE_FEATURE =
+            "http://apache.org/xml/features/disallow-doctype-decl";
+
+    private TraceParser() {
+    }
+
+    /**
+     * Receives parsed fixes.
+     */
+    public interface FixHandler {
+        /**
+         * @param time epoch milliseconds, 0 if the trace has no time
+         */
+        void onFix(long time, double latitude, double longitude);
+    }
+
+    /**
+     * Parses file, format is chosen by extension: .gpx or CSV otherwise.
+     */
+    public static void parse(File file, FixHandler handler) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            if (file.getName().toLowerCase().endsWith(".gpx")) {
+                parseGpx(in, handler);
+            } else {
+                parseCsv(new InputStreamReader(in, UTF_8), handler);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void parseCsv(Reader reader, FixHandler handler) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ?
+                (BufferedReader) reader : new BufferedReader(reader);
+        int timeColumn = 0;
+        int latitudeColumn = 1;
+        int longitudeColumn = 2;
+        boolean firstLine = true;
+        int lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("[,;\\t]");
+            if (firstLine) {
+                firstLine = false;
+                if (!isNumber(fields[0].trim()) && !isNumber(fields[fields.length - 1].trim())) {
+                    timeColumn = -1;
+                    latitudeColumn = -1;
+                    longitudeColumn = -1;
+                    for (int i = 0; i < fields.length; i++) {
+                        String name = fields[i].trim().toLowerCase();
+                        if (name.equals("time") || name.equals("timestamp")) {
+                            timeColumn = i;
+                        } else if (name.equals("lat") || name.equals("latitude")) {
+                            latitudeColumn = i;
+                        } else if (name.equals("lon") || name.equals("lng") ||
+                                name.equals("longitude")) {
+                            longitudeColumn = i;
+                        }
+                    }
+                    if (latitudeColumn < 0 || longitudeColumn < 0) {
+                        throw new IOException("CSV header has no latitude or longitude: " + line);
+                    }
+                    continue;
+                }
+            }
+            try {
+                long time = timeColumn >= 0 ? parseTime(fields[timeColumn].trim()) : 0;
+                handler.onFix(time, Double.parseDouble(fields[latitudeColumn].trim()),
+                        Double.parseDouble(fields[longitudeColumn].trim()));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Malformed CSV line " + lineNumber + ": " + line, e);
+            }
+        }
+    }
+
+    /**
+     * Parses GPX. Documents with a DOCTYPE are rejected, so a trace can't pull in external
+     * entities.
+     */
+    public static void parseGpx(InputStream in, final FixHandler handler) throws IOException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            // A parser that doesn't support these fails the parse instead of ignoring them.
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature(DISALLOW_DOCTYPE_FEATURE, true);
+            factory.newSAXParser().parse(in, new DefaultHandler() {
+                private boolean mInPoint;
+                private boolean mInTime;
+                private double mLatitude;
+                private double mLongitude;
+                private long mTime;
+                private final StringBuilder mText = new StringBuilder();
+
+                @Override
+                public void startElement(String uri, String localName, String qName,
+                                         Attributes attributes) throws SAXException {
+                    if (isPoint(localName)) {
+                        try {
+                            mLatitude = Double.parseDouble(attributes.getValue("lat"));
+                            mLongitude = Double.parseDouble(attributes.getValue("lon"));
+                        } catch (NullPointerException | NumberFormatException e) {
+                            throw new SAXException("Point without coordinates", e);
+                        }
+                        mTime = 0;
+                        mInPoint = true;
+                    } else if (mInPoint && localName.equals("time")) {
+                        mText.setLength(0);
+                        mInTime = true;
+                    }
+                }
+
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    if (mInTime) {
+                        mText.append(ch, start, length);
+                    }
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName)
+                        throws SAXException {
+                    if (mInTime && localName.equals("time")) {
+                        mInTime = false;
+                        try {
+                            mTime = parseTime(mText.toString().trim());
+                        } catch (NumberFormatException e) {
+                            throw new SAXException("Malformed time: " + mText, e);
+                        }
+                    } else if (mInPoint && isPoint(localName)) {
+                        mInPoint = false;
+                        handler.onFix(mTime, mLatitude, mLongitude);
+                    }
+                }
+
+                private boolean isPoint(String localName) {
+                    return localName.equals("trkpt") || localName.equals("rtept");
+                }
+            });
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Malformed GPX: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses epoch milliseconds or ISO 8601 date time, like 2016-05-01T10:15:30.250Z or
+     * 2016-05-01T12:15:30+02:00.
+     */
+    static long parseTime(String value) {
+        if (isNumber(value)) {
+            return Long.parseLong(value);
+        }
+        if (value.length() < 19 || value.charAt(4) != '-' || value.charAt(10) != 'T') {
+            throw new NumberFormatException("Unsupported time: " + value);
+        }
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(Integer.parseInt(value.substring(0, 4)),
+                Integer.parseInt(value.substring(5, 7)) - 1,
+                Integer.parseInt(value.substring(8, 10)),
+                Integer.parseInt(value.substring(11, 13)),
+                Integer.parseInt(value.substring(14, 16)),
+                Integer.parseInt(value.substring(17, 19)));
+        long time = calendar.getTimeInMillis();
+
+        int position = 19;
+        if (position < value.length() && value.charAt(position) == '.') {
+            int start = ++position;
+            while (position < value.length() && Character.isDigit(value.charAt(position))) {
+                position++;
+            }
+            String fraction = (value.substring(start, position) + "00").substring(0, 3);
+            time += Integer.parseInt(fraction);
+        }
+        if (position < value.length()) {
+            char zone = value.charAt(position);
+            if (zone == '+' || zone == '-') {
+                String offset = value.substring(position + 1).replace(":", "");
+                if (offset.length() != 4) {
+                    throw new NumberFormatException("Unsupported time zone: " + value);
+                }
+                long offsetMillis = (Integer.parseInt(offset.substring(0, 2)) * 60 +
+                        Integer.parseInt(offset.substring(2, 4))) * 60000L;
+                time -= zone == '+' ? offsetMillis : -offsetMillis;
+            } else if (zone != 'Z' || position != value.length() - 1) {
+                throw new NumberFormatException("Unsupported time zone: " + value);
+            }
+        }
+        return time;
+    }
+
+    private static boolean isNumber(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = value.charAt(0) == '-' ? 1 : 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!Character.isDigit(c) && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,280 @@
+package com.ashaevy.geofence.replay;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.index.GeofenceIndex;
+import com.ashaevy.geofence.transition.CrossingDetector;
+import com.ashaevy.geofence.transition.GeofenceEvaluator;
+import com.ashaevy.geofence.transition.GeofenceTransitions;
+import com.ashaevy.geofence.utils.GeoBounds;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Replays recorded GPS traces against a geofence configuration through the app's geofence
+ * evaluation: containment is decided by a {@link GeofenceEvaluator} in
+ * {@link GeofenceEvaluator#PRECISION_TIERED_ELLIPSOIDAL} mode and, if enabled, crossings
+ * between fixes are found by a {@link CrossingDetector} and kept only when they agree with
+ * the fixes, like {@link com.ashaevy.geofence.transition.FixBatchEvaluator} does. Fixes are
+ * evaluated one by one, as batches of a single fix. Transitions are reported in time order,
+ * ties by geofence id.
+ *
+ * Geofences are kept in a {@link GeofenceIndex}, which is immutable and shared by all
+ * replays and only selects candidate geofences near the fix, so traces can be replayed in
+ * parallel with {@link #replayAll(List, ForkJoinPool)}. Evaluators are per session.
+ * Every geofence is outside before the first fix, so a trace starting inside a geofence
+ * enters it on the first fix, like the initial trigger of the geofencing API.
+ */
+public class TraceReplayer {
+
+    private static final Comparator<ReplayTransition> TRANSITION_ORDER =
+            new Comparator<ReplayTransition>() {
+        @Override
+        public int compare(ReplayTransition a, ReplayTransition b) {
+            if (a.time != b.time) {
+                return a.time < b.time ? -1 : 1;
+            }
+            if (a.geofenceId == null || b.geofenceId == null) {
+                return a.geofenceId == null ? (b.geofenceId == null ? 0 : -1) : 1;
+            }
+            return a.geofenceId.compareTo(b.geofenceId);
+        }
+    };
+
+    private final GeofenceIndex mIndex;
+    private final double mMaxSpeed;
+    private final long mMaxGap;
+
+    /**
+     * Creates replayer that evaluates fixes only, without crossings between them.
+     */
+    public TraceReplayer(Collection<GeofenceData> geofences) {
+        this(geofences, 0, 0);
+    }
+
+    /**
+     * Creates replayer that also finds crossings between fixes. Pass the app's sampling
+     * limits to get its transitions.
+     *
+     * @param maxSpeed     see {@link CrossingDetector}, in meters per second
+     * @param maxGapMillis see {@link CrossingDetector}, 0 disables crossings
+     */
+    public TraceReplayer(Collection<GeofenceData> geofences, double maxSpeed,
+                         long maxGapMillis) {
+        mIndex = new GeofenceIndex(geofences);
+        mMaxSpeed = maxSpeed;
+        mMaxGap = maxGapMillis;
+    }
+
+    /**
+     * Starts replay of a trace, fixes are fed to the returned session in time order.
+     */
+    public Session newSession(String traceName) {
+        return new Session(traceName);
+    }
+
+    /**
+     * Replays one trace file, see {@link TraceParser#parse(File, TraceParser.FixHandler)}.
+     */
+    public ReplayResult replay(File trace) throws IOException {
+        Session session = newSession(trace.getName());
+        TraceParser.parse(trace, session);
+        return session.getResult();
+    }
+
+    /**
+     * Replays trace files in parallel on the pool.
+     *
+     * @return report with results in the order of traces
+     * @throws IOException error of the first failed trace
+     */
+    public ReplayReport replayAll(List<File> traces, ForkJoinPool pool) throws IOException {
+        long start = System.nanoTime();
+        List<ReplayResult> results;
+        try {
+            results = pool.invoke(new ReplayTask(traces));
+        } catch (TraceException e) {
+            throw e.getCause();
+        }
+        return new ReplayReport(results, System.nanoTime() - start);
+    }
+
+    /**
+     * Replays trace files in parallel using all processors.
+     */
+    public ReplayReport replayAll(List<File> traces) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return replayAll(traces, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * State of one trace replay. Not thread safe.
+     */
+    public class Session implements TraceParser.FixHandler {
+        private final String mTraceName;
+        private final GeofenceEvaluator mEvaluator =
+                new GeofenceEvaluator(GeofenceEvaluator.PRECISION_TIERED_ELLIPSOIDAL);
+        private final CrossingDetector mCrossingDetector;
+        private final List<ReplayTransition> mTransitions = new ArrayList<>();
+        private final Set<GeofenceData> mCandidates = newIdentitySet();
+        private Set<GeofenceData> mInside = newIdentitySet();
+        private Set<GeofenceData> mNextInside = newIdentitySet();
+        private long mFixCount;
+
+        private boolean mHasLastFix;
+        private long mLastTime;
+        private double mLastLatitude;
+        private double mLastLongitude;
+
+        private Session(String traceName) {
+            mTraceName = traceName;
+            mCrossingDetector = mMaxGap > 0 ?
+                    new CrossingDetector(mEvaluator, mMaxSpeed, mMaxGap) : null;
+        }
+
+        @Override
+        public void onFix(long time, double latitude, double longitude) {
+            mFixCount++;
+            boolean connected = mCrossingDetector != null && mHasLastFix;
+            // A geofence crossed on the path from the last fix has its border within the
+            // path length of this fix; geofences left since the last fix are inside ones.
+            double searchRadius = connected ? pathLength(time, latitude, longitude) : 0;
+            mCandidates.clear();
+            mIndex.findIntersecting(GeoBounds.ofCircle(latitude, longitude, searchRadius),
+                    mCandidates);
+            mCandidates.addAll(mInside);
+
+            mNextInside.clear();
+            int firstTransition = mTransitions.size();
+            for (GeofenceData geofence : mCandidates) {
+                int transition = mInside.contains(geofence) ?
+                        GeofenceTransitions.TRANSITION_ENTER :
+                        GeofenceTransitions.TRANSITION_EXIT;
+                int fixTransition = mEvaluator.coordinatesTransition(geofence, latitude,
+                        longitude);
+                if (connected) {
+                    int count = mCrossingDetector.findAgreeing(geofence, transition,
+                            fixTransition, mLastTime, mLastLatitude, mLastLongitude, time,
+                            latitude, longitude);
+                    for (int crossing = 0; crossing < count; crossing++) {
+                        add(geofence, mCrossingDetector.getTime(crossing),
+                                mCrossingDetector.getTransition(crossing));
+                    }
+                    if (count > 0) {
+                        transition = fixTransition;
+                    }
+                }
+                if (fixTransition != transition) {
+                    add(geofence, time, fixTransition);
+                }
+                if (fixTransition == GeofenceTransitions.TRANSITION_ENTER) {
+                    mNextInside.add(geofence);
+                }
+            }
+            // Candidates come in no particular order, crossings precede the fix.
+            Collections.sort(mTransitions.subList(firstTransition, mTransitions.size()),
+                    TRANSITION_ORDER);
+            Set<GeofenceData> inside = mInside;
+            mInside = mNextInside;
+            mNextInside = inside;
+
+            mHasLastFix = true;
+            mLastTime = time;
+            mLastLatitude = latitude;
+            mLastLongitude = longitude;
+        }
+
+        public ReplayResult getResult() {
+            return new ReplayResult(mTraceName, mFixCount, new ArrayList<>(mTransitions));
+        }
+
+        /**
+         * Returns length of the path from the last fix, 0 if the crossing detector doesn't
+         * connect the fixes.
+         */
+        private double pathLength(long time, double latitude, double longitude) {
+            long gap = time - mLastTime;
+            if (gap <= 0 || gap > mMaxGap) {
+                return 0;
+            }
+            double length = SphericalUtil.computeDistanceBetween(
+                    new GeoPoint(mLastLatitude, mLastLongitude), new GeoPoint(latitude, longitude));
+            return length <= mMaxSpeed * gap / 1000 ? length : 0;
+        }
+
+        private void add(GeofenceData geofence, long time, int transition) {
+            mTransitions.add(new ReplayTransition(mTraceName, geofence.getId(), time,
+                    transition));
+        }
+    }
+
+    private static Set<GeofenceData> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<GeofenceData, Boolean>());
+    }
+
+    /**
+     * Splits the list of traces in halves until one trace is left.
+     */
+    private class ReplayTask extends RecursiveTask<List<ReplayResult>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> mTraces;
+
+        ReplayTask(List<File> traces) {
+            mTraces = traces;
+        }
+
+        @Override
+        protected List<ReplayResult> compute() {
+            if (mTraces.size() <= 1) {
+                List<ReplayResult> results = new ArrayList<>(1);
+                if (mTraces.size() == 1) {
+                    try {
+                        results.add(replay(mTraces.get(0)));
+                    } catch (IOException e) {
+                        throw new TraceException(e);
+                    }
+                }
+                return results;
+            }
+            int middle = mTraces.size() / 2;
+            ReplayTask first = new ReplayTask(mTraces.subList(0, middle));
+            ReplayTask second = new ReplayTask(mTraces.subList(middle, mTraces.size()));
+            second.fork();
+            List<ReplayResult> results = new ArrayList<>(first.compute());
+            results.addAll(second.join());
+            return results;
+        }
+    }
+
+    /**
+     * Carries IOException of a trace out of the pool.
+     */
+    private static class TraceException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TraceException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
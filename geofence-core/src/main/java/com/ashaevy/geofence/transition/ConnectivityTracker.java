@@ -0,0 +1,113 @@
+package com.ashaevy.geofence.transition;
+
+/**
+ * Filters connectivity events: only a change of the network type or SSID that lasts for
+ * the debounce window is forwarded. Repeated broadcasts of the same state are duplicates,
+ * and a change that is reverted or replaced within the window is a flap; both are
+ * suppressed and counted.
+ *
+ * The caller reports every event with {@link #onEvent} and calls {@link #settle} when the
+ * returned deadline comes. Times are in milliseconds of any monotonic clock. Not
+ * synchronized, should be used from one thread.
+ */
+public class ConnectivityTracker {
+
+    /**
+     * Network type when there is no connection.
+     */
+    public static final int TYPE_NONE = -1;
+
+    private final long mDebounceMillis;
+
+    private boolean mHasForwarded;
+    private int mForwardedType;
+    private String mForwardedSsid;
+
+    private boolean mHasPending;
+    private int mPendingType;
+    private String mPendingSsid;
+    private long mDeadline;
+
+    private long mForwardedCount;
+    private long mDuplicateCount;
+    private long mFlapCount;
+
+    public ConnectivityTracker(long debounceMillis) {
+        mDebounceMillis = debounceMillis;
+    }
+
+    /**
+     * Records the connectivity state seen in an event. The first state is always a change.
+     *
+     * @param networkType type of the active network, {@link #TYPE_NONE} if disconnected
+     * @param ssid        SSID of the WiFi network, null for other networks
+     * @return time to call {@link #settle} at, -1 if no change is pending
+     */
+    public long onEvent(long now, int networkType, String ssid) {
+        if (mHasPending) {
+            if (sameState(networkType, ssid, mPendingType, mPendingSsid)) {
+                mDuplicateCount++;
+                return mDeadline;
+            }
+            // The pending change didn't last for the window.
+            mFlapCount++;
+            mHasPending = false;
+        } else if (mHasForwarded &&
+                sameState(networkType, ssid, mForwardedType, mForwardedSsid)) {
+            mDuplicateCount++;
+            return -1;
+        }
+        if (mHasForwarded && sameState(networkType, ssid, mForwardedType, mForwardedSsid)) {
+            // Reverted to the forwarded state, nothing changed.
+            return -1;
+        }
+        mHasPending = true;
+        mPendingType = networkType;
+        mPendingSsid = ssid;
+        mDeadline = now + mDebounceMillis;
+        return mDeadline;
+    }
+
+    /**
+     * Forwards the pending change if it lasted for the window.
+     *
+     * @return whether the change should be handled now
+     */
+    public boolean settle(long now) {
+        if (!mHasPending || now < mDeadline) {
+            return false;
+        }
+        mHasPending = false;
+        mHasForwarded = true;
+        mForwardedType = mPendingType;
+        mForwardedSsid = mPendingSsid;
+        mForwardedCount++;
+        return true;
+    }
+
+    public long getForwardedCount() {
+        return mForwardedCount;
+    }
+
+    /**
+     * Returns number of events that repeated the current state.
+     */
+    public long getDuplicateCount() {
+        return mDuplicateCount;
+    }
+
+    /**
+     * Returns number of changes reverted or replaced within the window.
+     */
+    public long getFlapCount() {
+        return mFlapCount;
+    }
+
+    public long getSuppressedCount() {
+        return mDuplicateCount + mFlapCount;
+    }
+
+    private static boolean sameState(int type1, String ssid1, int type2, String ssid2) {
+        return type1 == type2 && (ssid1 == null ? ssid2 == null : ssid1.equals(ssid2));
+    }
+}
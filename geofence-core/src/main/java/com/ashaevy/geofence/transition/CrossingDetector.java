@@ -0,0 +1,196 @@
+package com.ashaevy.geofence.transition;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import java.util.Arrays;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.acos;
+import static java.lang.Math.asin;
+import static java.lang.Math.atan2;
+import static java.lang.Math.ceil;
+import static java.lang.Math.cos;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sin;
+import static java.lang.Math.toRadians;
+
+/**
+ * Finds geofence border crossings between two consecutive fixes, assuming the device moved
+ * along the great circle between them at a constant speed. With sparse fixes a device can
+ * enter and leave a geofence between two of them, which the fixes alone never show.
+ *
+ * Circles are intersected with the path exactly: the cross-track and along-track distances
+ * of the center come from {@link SphericalUtil#computeHeading}. Polygons and corridors are
+ * sampled along the path with {@link SphericalUtil#interpolate}, and every change of
+ * containment is refined by bisection.
+ *
+ * Found crossings are kept in reused buffers until the next call. Not synchronized.
+ */
+public class CrossingDetector {
+
+    /**
+     * Sampling step of polygons and corridors, in meters.
+     */
+    private static final double SAMPLE_STEP = 10;
+    private static final int MAX_SAMPLES = 256;
+    private static final int BISECTIONS = 12;
+
+    private final GeofenceEvaluator mEvaluator;
+    private final double mMaxSpeed;
+    private final long mMaxGap;
+
+    private long[] mTimes = new long[4];
+    private int[] mTransitions = new int[4];
+    private int mCount;
+
+    /**
+     * @param evaluator      checks containment of polygons and corridors
+     * @param maxSpeed       fixes farther apart than this speed allows, in meters per
+     *                       second, are position jumps and are not connected
+     * @param maxGapMillis   fixes further apart in time are not connected, the device may
+     *                       have taken any way
+     */
+    public CrossingDetector(GeofenceEvaluator evaluator, double maxSpeed, long maxGapMillis) {
+        mEvaluator = evaluator;
+        mMaxSpeed = maxSpeed;
+        mMaxGap = maxGapMillis;
+    }
+
+    /**
+     * Finds crossings of the geofence border on the path between the fixes, in the order
+     * they happen.
+     *
+     * @return number of crossings, see {@link #getTime(int)} and {@link #getTransition(int)}
+     */
+    public int find(GeofenceData geofenceData, long time1, double latitude1, double longitude1,
+                    long time2, double latitude2, double longitude2) {
+        mCount = 0;
+        long gap = time2 - time1;
+        if (gap <= 0 || gap > mMaxGap) {
+            return 0;
+        }
+        GeoPoint from = new GeoPoint(latitude1, longitude1);
+        GeoPoint to = new GeoPoint(latitude2, longitude2);
+        double length = SphericalUtil.computeDistanceBetween(from, to);
+        if (length == 0 || length > mMaxSpeed * gap / 1000) {
+            return 0;
+        }
+        if (geofenceData.getVertices() != null || geofenceData.getRoute() != null) {
+            findBySampling(geofenceData, from, to, length, time1, gap);
+        } else {
+            findOnCircle(geofenceData, from, to, length, time1, gap);
+        }
+        return mCount;
+    }
+
+    /**
+     * Finds crossings like {@link #find} and keeps them only if they agree with the
+     * transitions at both fixes: they alternate, starting from lastTransition, and end in
+     * fixTransition. Near the border the path and the fixes may disagree, then the fixes
+     * alone are trusted.
+     *
+     * @return number of agreeing crossings, 0 if they disagree
+     */
+    public int findAgreeing(GeofenceData geofenceData, int lastTransition, int fixTransition,
+                            long time1, double latitude1, double longitude1,
+                            long time2, double latitude2, double longitude2) {
+        int count = find(geofenceData, time1, latitude1, longitude1, time2, latitude2,
+                longitude2);
+        int state = lastTransition;
+        for (int crossing = 0; crossing < count; crossing++) {
+            if (mTransitions[crossing] == state) {
+                return mCount = 0;
+            }
+            state = mTransitions[crossing];
+        }
+        if (state != fixTransition) {
+            return mCount = 0;
+        }
+        return count;
+    }
+
+    public long getTime(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * @return {@link GeofenceTransitions#TRANSITION_ENTER} or
+     * {@link GeofenceTransitions#TRANSITION_EXIT}
+     */
+    public int getTransition(int index) {
+        return mTransitions[index];
+    }
+
+    private void findOnCircle(GeofenceData geofenceData, GeoPoint from, GeoPoint to,
+                              double length, long time1, long gap) {
+        GeoPoint center = new GeoPoint(geofenceData.getLatitude(), geofenceData.getLongitude());
+        double radius = geofenceData.getRadius() / SphericalUtil.EARTH_RADIUS;
+        double pathAngle = length / SphericalUtil.EARTH_RADIUS;
+        double centerAngle = SphericalUtil.computeDistanceBetween(from, center) /
+                SphericalUtil.EARTH_RADIUS;
+        double dHeading = toRadians(SphericalUtil.computeHeading(from, center) -
+                SphericalUtil.computeHeading(from, to));
+        double crossTrack = asin(sin(centerAngle) * sin(dHeading));
+        if (abs(crossTrack) >= radius) {
+            return;
+        }
+        // Right spherical triangles: tan(along) = tan(centerAngle) * cos(dHeading) and
+        // cos(radius) = cos(crossTrack) * cos(halfChord).
+        double alongTrack = atan2(sin(centerAngle) * cos(dHeading), cos(centerAngle));
+        double halfChord = acos(min(1, cos(radius) / cos(crossTrack)));
+        addIfBetween((alongTrack - halfChord) / pathAngle, GeofenceTransitions.TRANSITION_ENTER,
+                time1, gap);
+        addIfBetween((alongTrack + halfChord) / pathAngle, GeofenceTransitions.TRANSITION_EXIT,
+                time1, gap);
+    }
+
+    private void addIfBetween(double fraction, int transition, long time1, long gap) {
+        if (fraction > 0 && fraction < 1) {
+            add(time1 + Math.round(fraction * gap), transition);
+        }
+    }
+
+    private void findBySampling(GeofenceData geofenceData, GeoPoint from, GeoPoint to,
+                                double length, long time1, long gap) {
+        int samples = (int) min(MAX_SAMPLES, max(1, ceil(length / SAMPLE_STEP)));
+        int previous = transitionAt(geofenceData, from, to, 0);
+        for (int i = 1; i <= samples; i++) {
+            double fraction = (double) i / samples;
+            int transition = transitionAt(geofenceData, from, to, fraction);
+            if (transition != previous) {
+                double low = (double) (i - 1) / samples;
+                double high = fraction;
+                for (int step = 0; step < BISECTIONS; step++) {
+                    double middle = (low + high) / 2;
+                    if (transitionAt(geofenceData, from, to, middle) == previous) {
+                        low = middle;
+                    } else {
+                        high = middle;
+                    }
+                }
+                add(time1 + Math.round((low + high) / 2 * gap), transition);
+                previous = transition;
+            }
+        }
+    }
+
+    private int transitionAt(GeofenceData geofenceData, GeoPoint from, GeoPoint to,
+                             double fraction) {
+        GeoPoint point = fraction == 0 ? from : fraction == 1 ? to :
+                SphericalUtil.interpolate(from, to, fraction);
+        return mEvaluator.coordinatesTransition(geofenceData, point.latitude, point.longitude);
+    }
+
+    private void add(long time, int transition) {
+        if (mCount == mTimes.length) {
+            mTimes = Arrays.copyOf(mTimes, 2 * mCount);
+            mTransitions = Arrays.copyOf(mTransitions, 2 * mCount);
+        }
+        mTimes[mCount] = time;
+        mTransitions[mCount] = transition;
+        mCount++;
+    }
+}
@@ -0,0 +1,213 @@
+package com.ashaevy.geofence.transition;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates location fixes delivered in batches: fixes are added one by one and evaluated
+ * together in timestamp order, so a batch ends with one net transition instead of a state
+ * write and a broadcast per fix. Fix buffers are reused between batches.
+ *
+ * With a {@link CrossingDetector} the path between consecutive fixes, also across batches,
+ * is checked too, so enter and exit pairs that happened between sparse fixes are reported
+ * with estimated times.
+ *
+ * Counts fixes, batches and batches with a net transition to show how many wakeups and
+ * broadcasts batching saves compared to handling every fix on its own. Not synchronized,
+ * should be used from one thread.
+ */
+public class FixBatchEvaluator {
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+    /**
+     * Receives transitions of a batch with their times.
+     */
+    public interface TransitionListener {
+        void onTransition(long time, int transition);
+    }
+
+    private final GeofenceEvaluator mEvaluator;
+    private final long mStartTime;
+    private CrossingDetector mCrossingDetector;
+
+    private long[] mTimes = new long[16];
+    private double[] mLatitudes = new double[16];
+    private double[] mLongitudes = new double[16];
+    private int mSize;
+
+    private boolean mHasLastFix;
+    private long mLastTime;
+    private double mLastLatitude;
+    private double mLastLongitude;
+
+    private long mFixCount;
+    private long mBatchCount;
+    private long mNetTransitionCount;
+    private long mCrossingCount;
+
+    /**
+     * @param startTime time counting starts at, in milliseconds of any clock used later
+     *                  with the per hour counters
+     */
+    public FixBatchEvaluator(GeofenceEvaluator evaluator, long startTime) {
+        mEvaluator = evaluator;
+        mStartTime = startTime;
+    }
+
+    /**
+     * Sets detector of crossings between fixes, null disables it.
+     */
+    public void setCrossingDetector(CrossingDetector crossingDetector) {
+        mCrossingDetector = crossingDetector;
+    }
+
+    public void add(long time, double latitude, double longitude) {
+        if (mSize == mTimes.length) {
+            mTimes = Arrays.copyOf(mTimes, 2 * mSize);
+            mLatitudes = Arrays.copyOf(mLatitudes, 2 * mSize);
+            mLongitudes = Arrays.copyOf(mLongitudes, 2 * mSize);
+        }
+        mTimes[mSize] = time;
+        mLatitudes[mSize] = latitude;
+        mLongitudes[mSize] = longitude;
+        mSize++;
+    }
+
+    /**
+     * Evaluates added fixes in timestamp order and clears them.
+     *
+     * @param lastTransition transition before the batch
+     * @param listener       receives transitions at fixes and crossings between them,
+     *                       may be null
+     * @return transition after the batch, lastTransition if there are no fixes
+     */
+    public int evaluate(GeofenceData geofenceData, int lastTransition,
+                        TransitionListener listener) {
+        sortByTime();
+        int transition = lastTransition;
+        for (int i = 0; i < mSize; i++) {
+            int fixTransition = mEvaluator.coordinatesTransition(geofenceData, mLatitudes[i],
+                    mLongitudes[i]);
+            if (mCrossingDetector != null && mHasLastFix) {
+                transition = reportCrossings(geofenceData, transition, fixTransition, i,
+                        listener);
+            }
+            if (fixTransition != transition) {
+                transition = fixTransition;
+                if (listener != null) {
+                    listener.onTransition(mTimes[i], transition);
+                }
+            }
+            mHasLastFix = true;
+            mLastTime = mTimes[i];
+            mLastLatitude = mLatitudes[i];
+            mLastLongitude = mLongitudes[i];
+        }
+        if (mSize > 0) {
+            mFixCount += mSize;
+            mBatchCount++;
+            if (transition != lastTransition) {
+                mNetTransitionCount++;
+            }
+        }
+        mSize = 0;
+        return transition;
+    }
+
+    /**
+     * Reports crossings on the path from the last fix to fix i if they agree with the
+     * transitions at both fixes, see {@link CrossingDetector#findAgreeing}.
+     *
+     * @return transition after the reported crossings
+     */
+    private int reportCrossings(GeofenceData geofenceData, int transition, int fixTransition,
+                                int i, TransitionListener listener) {
+        int count = mCrossingDetector.findAgreeing(geofenceData, transition, fixTransition,
+                mLastTime, mLastLatitude, mLastLongitude, mTimes[i], mLatitudes[i],
+                mLongitudes[i]);
+        if (count == 0) {
+            return transition;
+        }
+        for (int crossing = 0; crossing < count; crossing++) {
+            if (listener != null) {
+                listener.onTransition(mCrossingDetector.getTime(crossing),
+                        mCrossingDetector.getTransition(crossing));
+            }
+        }
+        mCrossingCount += count;
+        return fixTransition;
+    }
+
+    /**
+     * Batches are delivered in order almost always, so insertion sort is linear here.
+     */
+    private void sortByTime() {
+        for (int i = 1; i < mSize; i++) {
+            long time = mTimes[i];
+            double latitude = mLatitudes[i];
+            double longitude = mLongitudes[i];
+            int j = i - 1;
+            while (j >= 0 && mTimes[j] > time) {
+                mTimes[j + 1] = mTimes[j];
+                mLatitudes[j + 1] = mLatitudes[j];
+                mLongitudes[j + 1] = mLongitudes[j];
+                j--;
+            }
+            mTimes[j + 1] = time;
+            mLatitudes[j + 1] = latitude;
+            mLongitudes[j + 1] = longitude;
+        }
+    }
+
+    public long getFixCount() {
+        return mFixCount;
+    }
+
+    public long getBatchCount() {
+        return mBatchCount;
+    }
+
+    /**
+     * Returns number of batches that changed the transition, each of them is broadcast once.
+     */
+    public long getNetTransitionCount() {
+        return mNetTransitionCount;
+    }
+
+    /**
+     * Returns number of transitions found on the path between fixes.
+     */
+    public long getCrossingCount() {
+        return mCrossingCount;
+    }
+
+    /**
+     * Returns wakeups saved: every fix would wake the device up, a batch wakes it once.
+     */
+    public long getWakeupsSaved() {
+        return mFixCount - mBatchCount;
+    }
+
+    /**
+     * Returns broadcasts saved: every fix would be broadcast, a batch is broadcast only if
+     * it changed the transition.
+     */
+    public long getBroadcastsSaved() {
+        return mFixCount - mNetTransitionCount;
+    }
+
+    public double getWakeupsSavedPerHour(long now) {
+        return perHour(getWakeupsSaved(), now);
+    }
+
+    public double getBroadcastsSavedPerHour(long now) {
+        return perHour(getBroadcastsSaved(), now);
+    }
+
+    private double perHour(long count, long now) {
+        long elapsed = now - mStartTime;
+        return elapsed > 0 ? (double) count * HOUR_MILLIS / elapsed : 0;
+    }
+}
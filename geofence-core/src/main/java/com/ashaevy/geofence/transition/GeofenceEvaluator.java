@@ -0,0 +1,250 @@
+package com.ashaevy.geofence.transition;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.index.WifiIndex;
+import com.ashaevy.geofence.utils.EllipsoidalUtil;
+import com.ashaevy.geofence.utils.GeoCorridor;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.GeoPolygon;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.cos;
+import static java.lang.Math.toRadians;
+
+/**
+ * Platform independent geofence logic: containment of a coordinate in a geofence and
+ * the state machine that combines the last coordinate transition with the WiFi network.
+ *
+ * Tiered precision modes decide most fixes with the equirectangular approximation and
+ * only compute exact distance for fixes close to the geofence border. Number of decisions
+ * made by every tier is counted; counters are not synchronized, so an evaluator instance
+ * should be used from one thread.
+ *
+ * Polygon geofences are checked with {@link GeoPolygon}, which is built once per vertices
+ * array and kept while the array is in use. Corridor geofences are checked the same way with
+ * {@link GeoCorridor}, built once per route array.
+ */
+public class GeofenceEvaluator {
+
+    /**
+     * Haversine distance on the sphere for every fix.
+     */
+    public static final int PRECISION_SPHERICAL = 0;
+
+    /**
+     * Equirectangular approximation, haversine distance near the border.
+     */
+    public static final int PRECISION_TIERED_SPHERICAL = 1;
+
+    /**
+     * Equirectangular approximation, haversine distance near the border and WGS84
+     * ellipsoid distance for fixes where sphere and ellipsoid may disagree.
+     */
+    public static final int PRECISION_TIERED_ELLIPSOIDAL = 2;
+
+    /**
+     * Equirectangular approximation is only used within this angular distance and latitude,
+     * where its error together with the sphere/ellipsoid difference is below
+     * {@link #FLAT_RELATIVE_MARGIN}.
+     */
+    private static final double FLAT_MAX_ANGLE = 0.05;
+    private static final double FLAT_MAX_LATITUDE = toRadians(80);
+    private static final double FLAT_RELATIVE_MARGIN = 0.01;
+
+    /**
+     * Sphere of mean Earth radius and WGS84 ellipsoid distances differ by less than 0.6%.
+     */
+    private static final double ELLIPSOID_RELATIVE_MARGIN = 0.006;
+
+    /**
+     * Absolute part of both margins, covers rounding for tiny radii.
+     */
+    private static final double ABSOLUTE_MARGIN = 1;
+
+    private final int mPrecision;
+
+    private long mFlatTierCount;
+    private long mSphericalTierCount;
+    private long mEllipsoidalTierCount;
+
+    /**
+     * Arrays use identity hash codes, so polygons are found by the vertices array itself.
+     */
+    private final Map<double[], GeoPolygon> mPolygons = new WeakHashMap<>();
+    private final Map<double[], GeoCorridor> mCorridors = new WeakHashMap<>();
+
+    public GeofenceEvaluator() {
+        this(PRECISION_SPHERICAL);
+    }
+
+    public GeofenceEvaluator(int precision) {
+        if (precision < PRECISION_SPHERICAL || precision > PRECISION_TIERED_ELLIPSOIDAL) {
+            throw new IllegalArgumentException("Unknown precision: " + precision);
+        }
+        mPrecision = precision;
+    }
+
+    /**
+     * Provides last possible transition based on coordinates and geofenceData.
+     * Runs on every location fix, so it works on primitives only and allocates nothing.
+     *
+     * @return {@link GeofenceTransitions#TRANSITION_ENTER} or
+     * {@link GeofenceTransitions#TRANSITION_EXIT}
+     */
+    public int coordinatesTransition(GeofenceData geofenceData, double latitude,
+                                     double longitude) {
+        double[] vertices = geofenceData.getVertices();
+        double[] route = geofenceData.getRoute();
+        boolean inside;
+        if (vertices != null) {
+            inside = polygonOf(vertices).contains(latitude, longitude);
+        } else if (route != null) {
+            inside = corridorOf(route, geofenceData.getRouteDistance())
+                    .contains(latitude, longitude);
+        } else {
+            inside = contains(geofenceData.getLatitude(), geofenceData.getLongitude(),
+                    geofenceData.getRadius(), latitude, longitude);
+        }
+        if (inside) {
+            return GeofenceTransitions.TRANSITION_ENTER;
+        } else {
+            return GeofenceTransitions.TRANSITION_EXIT;
+        }
+    }
+
+    private GeoPolygon polygonOf(double[] vertices) {
+        GeoPolygon polygon = mPolygons.get(vertices);
+        if (polygon == null) {
+            polygon = new GeoPolygon(vertices);
+            mPolygons.put(vertices, polygon);
+        }
+        return polygon;
+    }
+
+    private GeoCorridor corridorOf(double[] route, double distance) {
+        GeoCorridor corridor = mCorridors.get(route);
+        if (corridor == null || corridor.getDistance() != distance) {
+            corridor = new GeoCorridor(route, distance);
+            mCorridors.put(route, corridor);
+        }
+        return corridor;
+    }
+
+    /**
+     * Returns a lower bound of the distance from the point to the geofence border, in
+     * meters. It is exact on the sphere for circles. Polygons and corridors are approximated
+     * by their bounding circle: the distance to it outside, 0 inside.
+     */
+    public double boundaryDistance(GeofenceData geofenceData, double latitude,
+                                   double longitude) {
+        double distance = SphericalUtil.computeDistanceBetween(
+                new GeoPoint(geofenceData.getLatitude(), geofenceData.getLongitude()),
+                new GeoPoint(latitude, longitude));
+        double radius = geofenceData.getRadius();
+        if (geofenceData.getVertices() != null || geofenceData.getRoute() != null) {
+            return Math.max(0, distance - radius);
+        }
+        return abs(distance - radius);
+    }
+
+    private boolean contains(double centerLatitude, double centerLongitude, double radius,
+                             double latitude, double longitude) {
+        double centerLat = toRadians(centerLatitude);
+        double centerLng = toRadians(centerLongitude);
+        double lat = toRadians(latitude);
+        double lng = toRadians(longitude);
+
+        if (mPrecision != PRECISION_SPHERICAL) {
+            double margin = radius * FLAT_RELATIVE_MARGIN + ABSOLUTE_MARGIN;
+            // Distance along a meridian never exceeds the great circle distance.
+            if (abs(lat - centerLat) * SphericalUtil.EARTH_RADIUS > radius + margin) {
+                mFlatTierCount++;
+                return false;
+            }
+            if (abs(lat) < FLAT_MAX_LATITUDE && abs(centerLat) < FLAT_MAX_LATITUDE) {
+                double flatDistance = SphericalUtil.computeEquirectangularDistance(
+                        centerLat, centerLng, lat, lng);
+                if (flatDistance < FLAT_MAX_ANGLE * SphericalUtil.EARTH_RADIUS) {
+                    if (flatDistance < radius - margin) {
+                        mFlatTierCount++;
+                        return true;
+                    }
+                    if (flatDistance > radius + margin) {
+                        mFlatTierCount++;
+                        return false;
+                    }
+                }
+            }
+        }
+
+        double havDistance = SphericalUtil.havDistance(centerLat, cos(centerLat), centerLng,
+                lat, cos(lat), lng);
+        if (mPrecision == PRECISION_TIERED_ELLIPSOIDAL) {
+            double margin = radius * ELLIPSOID_RELATIVE_MARGIN + ABSOLUTE_MARGIN;
+            if (havDistance >= SphericalUtil.havThreshold(radius - margin) &&
+                    havDistance <= SphericalUtil.havThreshold(radius + margin)) {
+                mEllipsoidalTierCount++;
+                return EllipsoidalUtil.computeDistanceBetween(centerLatitude, centerLongitude,
+                        latitude, longitude) <= radius;
+            }
+        }
+        mSphericalTierCount++;
+        return havDistance <= SphericalUtil.havThreshold(radius);
+    }
+
+    /**
+     * Returns number of containment decisions made by the equirectangular approximation.
+     */
+    public long getFlatTierCount() {
+        return mFlatTierCount;
+    }
+
+    /**
+     * Returns number of containment decisions made by the haversine distance.
+     */
+    public long getSphericalTierCount() {
+        return mSphericalTierCount;
+    }
+
+    /**
+     * Returns number of containment decisions made by the ellipsoid distance.
+     */
+    public long getEllipsoidalTierCount() {
+        return mEllipsoidalTierCount;
+    }
+
+    public void resetTierCounts() {
+        mFlatTierCount = 0;
+        mSphericalTierCount = 0;
+        mEllipsoidalTierCount = 0;
+    }
+
+    public int transitionState(GeofenceData geofenceData, int lastTransition, String currentSsid) {
+        return transitionState(geofenceData, lastTransition, currentSsid, null);
+    }
+
+    /**
+     * Device is inside the geofence if it is connected to one of the geofence WiFi networks,
+     * see {@link WifiIndex#matches}, or the last coordinate transition was an enter.
+     *
+     * @return {@link GeofenceTransitions#STATE_INSIDE}, {@link GeofenceTransitions#STATE_OUTSIDE}
+     * or {@link GeofenceTransitions#STATE_UNKNOWN} when there is no geofence
+     */
+    public int transitionState(GeofenceData geofenceData, int lastTransition, String currentSsid,
+                               String currentBssid) {
+        if (geofenceData == null) {
+            return GeofenceTransitions.STATE_UNKNOWN;
+        }
+        if (WifiIndex.matches(geofenceData, currentSsid, currentBssid) ||
+                (lastTransition == GeofenceTransitions.TRANSITION_ENTER)) {
+            return GeofenceTransitions.STATE_INSIDE;
+        } else {
+            return GeofenceTransitions.STATE_OUTSIDE;
+        }
+    }
+
+}
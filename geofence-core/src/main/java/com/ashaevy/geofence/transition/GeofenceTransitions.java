@@ -0,0 +1,22 @@
+package com.ashaevy.geofence.transition;
+
+/**
+ * Transition and state codes used by the geofence engine.
+ *
+ * Transition values are the same as Play Services {@code Geofence.GEOFENCE_TRANSITION_*}
+ * constants, so values coming from the OS geofencing API can be passed through unchanged.
+ */
+public final class GeofenceTransitions {
+
+    private GeofenceTransitions() {
+    }
+
+    public static final int TRANSITION_UNKNOWN = -1;
+    public static final int TRANSITION_ENTER = 1;
+    public static final int TRANSITION_EXIT = 2;
+
+    public static final int STATE_UNKNOWN = -1;
+    public static final int STATE_INSIDE = 1;
+    public static final int STATE_OUTSIDE = 2;
+
+}
@@ -0,0 +1,124 @@
+package com.ashaevy.geofence.transition;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chooses which stored geofences to register with a platform that monitors a limited
+ * number of them, e.g. 100 for Play Services: the ones with the nearest border around a
+ * location, and a refresh region around the location which exit triggers the next page.
+ *
+ * Moving by x meters brings any border at most x meters closer, so no geofence left out
+ * of the page can be entered before the refresh region is left if its radius is below
+ * the border distance of the nearest geofence left out. Geofences beyond the search radius
+ * are not known to the pager, so the search radius bounds it too. Half of that bound is
+ * used, so the next page is ready before a left out geofence gets close.
+ *
+ * The refresh radius is never below the minimum one. When more geofences than the
+ * capacity have borders within twice the minimum refresh radius no page meets the bound:
+ * leaving out more geofences only brings the nearest left out border closer. The nearest
+ * geofences are kept then, and those left out may be entered before the refresh region is
+ * left, see {@link Page#complete}.
+ */
+public class RegionPager {
+
+    private final int mCapacity;
+    private final double mSearchRadius;
+    private final double mMinRefreshRadius;
+
+    /**
+     * @param capacity         maximum number of geofences in a page
+     * @param searchRadius     maximum border distance of candidates, in meters
+     * @param minRefreshRadius smallest refresh region the platform detects reliably, in
+     *                         meters
+     */
+    public RegionPager(int capacity, double searchRadius, double minRefreshRadius) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Non-positive capacity: " + capacity);
+        }
+        mCapacity = capacity;
+        mSearchRadius = searchRadius;
+        mMinRefreshRadius = minRefreshRadius;
+    }
+
+    public double getSearchRadius() {
+        return mSearchRadius;
+    }
+
+    /**
+     * Returns the page around the location. Candidates without id or farther than the
+     * search radius are skipped.
+     */
+    public Page page(double latitude, double longitude, Collection<GeofenceData> candidates) {
+        GeoPoint point = new GeoPoint(latitude, longitude);
+        final List<GeofenceData> geofences = new ArrayList<>(candidates.size());
+        final List<Double> distances = new ArrayList<>(candidates.size());
+        for (GeofenceData geofence : candidates) {
+            if (geofence.getId() == null) {
+                continue;
+            }
+            double distance = Math.max(0, SphericalUtil.computeDistanceBetween(point,
+                    new GeoPoint(geofence.getLatitude(), geofence.getLongitude())) -
+                    geofence.getRadius());
+            if (distance <= mSearchRadius) {
+                geofences.add(geofence);
+                distances.add(distance);
+            }
+        }
+        Integer[] order = new Integer[geofences.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(distances.get(a), distances.get(b));
+            }
+        });
+
+        int size = Math.min(mCapacity, order.length);
+        List<GeofenceData> page = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            page.add(geofences.get(order[i]));
+        }
+        double bound = size < order.length ? distances.get(order[size]) : mSearchRadius;
+        double refreshRadius = Math.max(mMinRefreshRadius, Math.min(bound, mSearchRadius) / 2);
+        return new Page(latitude, longitude, refreshRadius, page,
+                2 * refreshRadius <= Math.min(bound, mSearchRadius));
+    }
+
+    public static class Page {
+        public final double latitude;
+        public final double longitude;
+        /**
+         * Radius of the refresh region around the location, in meters.
+         */
+        public final double refreshRadius;
+        /**
+         * Geofences of the page, nearest first.
+         */
+        public final List<GeofenceData> geofences;
+        /**
+         * Whether the refresh radius is at most half the bound above, false when the minimum
+         * refresh radius was used in a dense cluster.
+         */
+        public final boolean complete;
+
+        Page(double latitude, double longitude, double refreshRadius,
+             List<GeofenceData> geofences, boolean complete) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.refreshRadius = refreshRadius;
+            this.geofences = Collections.unmodifiableList(geofences);
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.ashaevy.geofence.transition;
+
+/**
+ * Chooses location request interval and priority from the distance to the geofence border.
+ *
+ * A device can't cross the border sooner than distance / max speed, so far from the border
+ * fixes may come rarely and be less accurate. Intervals are the minimum interval times
+ * a power of two, so small changes of the distance don't change the request. A shorter
+ * interval is applied at once, a longer one grows by one step per fix.
+ */
+public class SamplingScheduler {
+
+    public static final int PRIORITY_HIGH_ACCURACY = 0;
+    public static final int PRIORITY_BALANCED_POWER_ACCURACY = 1;
+    public static final int PRIORITY_LOW_POWER = 2;
+
+    /**
+     * Typical error of fixes of every priority, in meters.
+     */
+    private static final double[] PRIORITY_ERRORS = {20, 100, 10000};
+
+    /**
+     * A priority is used only when the border is this many times farther than its error.
+     */
+    private static final double PRIORITY_DISTANCE_FACTOR = 4;
+
+    private final long mMinInterval;
+    private final int mMaxLevel;
+    private final double mMaxSpeed;
+
+    private int mLevel;
+    private int mPriority;
+
+    /**
+     * @param minIntervalMillis interval near the border
+     * @param maxIntervalMillis longest interval, far from the border
+     * @param maxSpeed          fastest plausible speed of the device, meters per second
+     */
+    public SamplingScheduler(long minIntervalMillis, long maxIntervalMillis, double maxSpeed) {
+        if (minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis || maxSpeed <= 0) {
+            throw new IllegalArgumentException("Invalid sampling limits.");
+        }
+        mMinInterval = minIntervalMillis;
+        int maxLevel = 0;
+        while (minIntervalMillis << (maxLevel + 1) <= maxIntervalMillis) {
+            maxLevel++;
+        }
+        mMaxLevel = maxLevel;
+        mMaxSpeed = maxSpeed;
+    }
+
+    /**
+     * Updates the schedule for a fix.
+     *
+     * @param boundaryDistance lower bound of the distance to the border, in meters, see
+     *                         {@link GeofenceEvaluator#boundaryDistance}
+     * @param accuracy         accuracy of the fix, in meters
+     * @return whether interval or priority changed
+     */
+    public boolean update(double boundaryDistance, double accuracy) {
+        double distance = Math.max(0, boundaryDistance - accuracy);
+        int priority = PRIORITY_LOW_POWER;
+        while (priority > PRIORITY_HIGH_ACCURACY &&
+                distance < PRIORITY_DISTANCE_FACTOR * PRIORITY_ERRORS[priority]) {
+            priority--;
+        }
+        // The next fix may be late and off by the priority error.
+        double travelMillis = Math.max(0, distance - PRIORITY_ERRORS[priority]) / mMaxSpeed *
+                1000 / 2;
+        int level = 0;
+        while (level < mMaxLevel && mMinInterval << (level + 1) <= travelMillis) {
+            level++;
+        }
+        if (level > mLevel + 1) {
+            level = mLevel + 1;
+        }
+        if (level == mLevel && priority == mPriority) {
+            return false;
+        }
+        mLevel = level;
+        mPriority = priority;
+        return true;
+    }
+
+    /**
+     * Returns to the minimum interval and high accuracy, used when geofences change.
+     */
+    public void reset() {
+        mLevel = 0;
+        mPriority = PRIORITY_HIGH_ACCURACY;
+    }
+
+    public long getInterval() {
+        return mMinInterval << mLevel;
+    }
+
+    /**
+     * @return one of PRIORITY_ constants
+     */
+    public int getPriority() {
+        return mPriority;
+    }
+}
@@ -0,0 +1,82 @@
+package com.ashaevy.geofence.transition;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process bus of geofence state events: fence id, state and time.
+ *
+ * Listeners are kept in an array that is replaced on every registration, so publishing
+ * takes no lock and allocates nothing; it reads the current array once and calls the
+ * listeners on the publishing thread. Registration is rare and synchronized.
+ */
+public class TransitionEventBus {
+
+    private static final TransitionEventBus DEFAULT = new TransitionEventBus();
+
+    private static final Listener[] NO_LISTENERS = new Listener[0];
+
+    public interface Listener {
+        /**
+         * @param state one of {@code GeofenceTransitions.STATE_*} constants
+         */
+        void onTransitionEvent(String fenceId, int state, long timestamp);
+    }
+
+    private volatile Listener[] mListeners = NO_LISTENERS;
+    private final AtomicLong mPublishedCount = new AtomicLong();
+
+    /**
+     * Returns the bus shared by the whole process.
+     */
+    public static TransitionEventBus getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registers listener, registering it again does nothing.
+     */
+    public synchronized void register(Listener listener) {
+        Listener[] listeners = mListeners;
+        for (Listener registered : listeners) {
+            if (registered == listener) {
+                return;
+            }
+        }
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        mListeners = listeners;
+    }
+
+    public synchronized void unregister(Listener listener) {
+        Listener[] listeners = mListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                Listener[] result = new Listener[listeners.length - 1];
+                System.arraycopy(listeners, 0, result, 0, i);
+                System.arraycopy(listeners, i + 1, result, i, result.length - i);
+                mListeners = result.length == 0 ? NO_LISTENERS : result;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Calls listeners registered before the call on this thread. Listeners registered or
+     * unregistered meanwhile are seen by the next event.
+     */
+    public void publish(String fenceId, int state, long timestamp) {
+        Listener[] listeners = mListeners;
+        for (Listener listener : listeners) {
+            listener.onTransitionEvent(fenceId, state, timestamp);
+        }
+        mPublishedCount.incrementAndGet();
+    }
+
+    /**
+     * Returns number of published events.
+     */
+    public long getPublishedCount() {
+        return mPublishedCount.get();
+    }
+}
@@ -0,0 +1,80 @@
+package com.ashaevy.geofence.utils;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.atan;
+import static java.lang.Math.atan2;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static java.lang.Math.tan;
+import static java.lang.Math.toRadians;
+
+/**
+ * Distance on the WGS84 ellipsoid, the same model as {@code Location.distanceBetween}.
+ */
+public class EllipsoidalUtil {
+
+    static final double WGS84_A = 6378137.0;
+    static final double WGS84_F = 1 / 298.257223563;
+    static final double WGS84_B = WGS84_A * (1 - WGS84_F);
+
+    private static final int MAX_ITERATIONS = 20;
+    private static final double PRECISION = 1.0e-12;
+
+    private EllipsoidalUtil() {}
+
+    /**
+     * Returns the distance between two points in meters, computed with Vincenty's inverse
+     * formula. Nearly antipodal points may not converge, in which case the result of the
+     * last iteration is returned.
+     * See http://www.movable-type.co.uk/scripts/latlong-vincenty.html
+     */
+    public static double computeDistanceBetween(double fromLatitude, double fromLongitude,
+                                                double toLatitude, double toLongitude) {
+        double l = toRadians(toLongitude - fromLongitude);
+        double u1 = atan((1 - WGS84_F) * tan(toRadians(fromLatitude)));
+        double u2 = atan((1 - WGS84_F) * tan(toRadians(toLatitude)));
+        double sinU1 = sin(u1);
+        double cosU1 = cos(u1);
+        double sinU2 = sin(u2);
+        double cosU2 = cos(u2);
+
+        double lambda = l;
+        double lambdaPrev;
+        double sinSigma;
+        double cosSigma;
+        double sigma;
+        double cos2Alpha;
+        double cos2SigmaM;
+        int iteration = 0;
+        do {
+            double sinLambda = sin(lambda);
+            double cosLambda = cos(lambda);
+            double t1 = cosU2 * sinLambda;
+            double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            sinSigma = sqrt(t1 * t1 + t2 * t2);
+            if (sinSigma == 0) {
+                // Coincident points.
+                return 0;
+            }
+            cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+            sigma = atan2(sinSigma, cosSigma);
+            double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+            cos2Alpha = 1 - sinAlpha * sinAlpha;
+            // Both points on the equator make cos2Alpha zero.
+            cos2SigmaM = cos2Alpha != 0 ? cosSigma - 2 * sinU1 * sinU2 / cos2Alpha : 0;
+            double c = WGS84_F / 16 * cos2Alpha * (4 + WGS84_F * (4 - 3 * cos2Alpha));
+            lambdaPrev = lambda;
+            lambda = l + (1 - c) * WGS84_F * sinAlpha * (sigma + c * sinSigma *
+                    (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+        } while (abs(lambda - lambdaPrev) > PRECISION && ++iteration < MAX_ITERATIONS);
+
+        double uSq = cos2Alpha * (WGS84_A * WGS84_A - WGS84_B * WGS84_B) / (WGS84_B * WGS84_B);
+        double a = 1 + uSq / 16384 * (4096 + uSq * (-768 + uSq * (320 - 175 * uSq)));
+        double b = uSq / 1024 * (256 + uSq * (-128 + uSq * (74 - 47 * uSq)));
+        double deltaSigma = b * sinSigma * (cos2SigmaM + b / 4 * (cosSigma *
+                (-1 + 2 * cos2SigmaM * cos2SigmaM) - b / 6 * cos2SigmaM *
+                (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+        return WGS84_B * a * (sigma - deltaSigma);
+    }
+}
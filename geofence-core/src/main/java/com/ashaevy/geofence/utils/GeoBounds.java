@@ -0,0 +1,69 @@
+package com.ashaevy.geofence.utils;
+
+import static java.lang.Math.asin;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.toDegrees;
+import static java.lang.Math.toRadians;
+
+/**
+ * Latitude/longitude aligned bounding box, in degrees. Boxes that would cross
+ * the antimeridian or contain a pole are widened to the whole longitude range.
+ */
+public final class GeoBounds {
+
+    public final double minLatitude;
+    public final double minLongitude;
+    public final double maxLatitude;
+    public final double maxLongitude;
+
+    public GeoBounds(double minLatitude, double minLongitude,
+                     double maxLatitude, double maxLongitude) {
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    /**
+     * Returns the smallest bounds that contain the circle with given center and
+     * radius in meters.
+     */
+    public static GeoBounds ofCircle(double latitude, double longitude, double radius) {
+        double angle = radius / SphericalUtil.EARTH_RADIUS;
+        double dLat = toDegrees(angle);
+        double minLat = latitude - dLat;
+        double maxLat = latitude + dLat;
+        if (minLat <= -90 || maxLat >= 90) {
+            return new GeoBounds(Math.max(minLat, -90), -180, Math.min(maxLat, 90), 180);
+        }
+        // Longitude extent at the latitude where the circle touches its tangent meridians.
+        double sinDLng = sin(angle) / cos(toRadians(latitude));
+        if (sinDLng >= 1) {
+            return new GeoBounds(minLat, -180, maxLat, 180);
+        }
+        double dLng = toDegrees(asin(sinDLng));
+        double minLng = longitude - dLng;
+        double maxLng = longitude + dLng;
+        if (minLng < -180 || maxLng >= 180) {
+            return new GeoBounds(minLat, -180, maxLat, 180);
+        }
+        return new GeoBounds(minLat, minLng, maxLat, maxLng);
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude &&
+                longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    public boolean intersects(GeoBounds other) {
+        return other.minLatitude <= maxLatitude && other.maxLatitude >= minLatitude &&
+                other.minLongitude <= maxLongitude && other.maxLongitude >= minLongitude;
+    }
+
+    @Override
+    public String toString() {
+        return "GeoBounds(" + minLatitude + "," + minLongitude + " - " +
+                maxLatitude + "," + maxLongitude + ")";
+    }
+}
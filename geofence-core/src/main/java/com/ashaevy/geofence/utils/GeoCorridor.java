@@ -0,0 +1,310 @@
+package com.ashaevy.geofence.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.ceil;
+import static java.lang.Math.cos;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.toDegrees;
+import static java.lang.Math.toRadians;
+
+/**
+ * Immutable corridor on Earth: points within a distance of a route, a polyline of great
+ * circle segments. The route may cross the antimeridian, but must not be wider than
+ * 180 degrees of longitude or come close to a pole.
+ *
+ * Route segments are split with {@link SphericalUtil#interpolate} into pieces not longer
+ * than a grid cell, and every piece is registered in the cells its buffered bounds cover.
+ * A query finds its cell with a binary search and computes the distance to the pieces of
+ * that cell only, instead of to every segment of the route.
+ */
+public final class GeoCorridor {
+
+    /**
+     * Smallest grid cell side, in meters.
+     */
+    private static final double MIN_CELL_SIZE = 100;
+    /**
+     * Routes must stay this far from the poles, where longitude cells degenerate.
+     */
+    private static final double MAX_LATITUDE = 85;
+
+    private final double[] mRoute;
+    private final double mDistance;
+    private final double mLength;
+
+    private final double mAngle;
+    private final double mMinLat;
+    private final double mMinX;
+    private final double mCellHeight;
+    private final double mCellWidth;
+
+    // Route points in radians after splitting, piece i goes from point i to point i + 1.
+    private final double[] mLat;
+    private final double[] mLng;
+    private final double[] mCosLat;
+    /**
+     * Buffered bounds of piece i in degrees and unwrapped longitude: min latitude,
+     * max latitude, min longitude, max longitude at 4 * i. Rejects most pieces of a cell
+     * without trigonometry.
+     */
+    private final double[] mPieceBounds;
+
+    /**
+     * Pieces of the cell with key mCellKeys[i] are
+     * mCellPieces[mCellStart[i]] .. mCellPieces[mCellStart[i + 1] - 1].
+     */
+    private final long[] mCellKeys;
+    private final int[] mCellStart;
+    private final int[] mCellPieces;
+
+    /**
+     * @param route    interleaved latitude, longitude pairs in degrees
+     * @param distance maximum distance from the route, in meters
+     * @throws IllegalArgumentException if the route has less than 2 points, distance is not
+     *                                  positive or the route is too wide or close to a pole
+     */
+    public GeoCorridor(double[] route, double distance) {
+        if (route.length % 2 != 0 || route.length < 4) {
+            throw new IllegalArgumentException("Route needs at least 2 points.");
+        }
+        if (!(distance > 0)) {
+            throw new IllegalArgumentException("Corridor distance must be positive: " +
+                    distance);
+        }
+        mRoute = route.clone();
+        mDistance = distance;
+        mLength = SphericalUtil.computeLength(route, 0, route.length / 2);
+        mAngle = distance / SphericalUtil.EARTH_RADIUS;
+
+        // Unwraps longitudes relative to the first point, like GeoPolygon.
+        int size = route.length / 2;
+        double[] x = new double[size];
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxAbsLat = 0;
+        for (int i = 0; i < size; i++) {
+            double lng = route[2 * i + 1];
+            x[i] = i == 0 ? lng : x[i - 1] + SphericalUtil.wrap(lng - x[i - 1], -180, 180);
+            minX = min(minX, x[i]);
+            maxX = max(maxX, x[i]);
+            maxAbsLat = max(maxAbsLat, abs(route[2 * i]));
+        }
+        double dLat = toDegrees(mAngle);
+        if (maxX - minX >= 180 || maxAbsLat + dLat > MAX_LATITUDE) {
+            throw new IllegalArgumentException("Route must not be wider than 180 degrees of " +
+                    "longitude or come close to a pole.");
+        }
+
+        // Cells are about cellSize meters at the route latitude farthest from the equator.
+        double cellSize = max(MIN_CELL_SIZE, 4 * distance);
+        mCellHeight = toDegrees(cellSize / SphericalUtil.EARTH_RADIUS);
+        double cosMaxLat = cos(toRadians(maxAbsLat + dLat));
+        mCellWidth = mCellHeight / cosMaxLat;
+        double dLng = dLat / cosMaxLat;
+        // Pieces are short, but straight lines in degrees bulge from great circles a bit.
+        double marginLat = dLat * 1.01 + mCellHeight * 0.01;
+        double marginLng = dLng * 1.01 + mCellWidth * 0.01;
+
+        // The grid starts below the buffered route bounds, so cell indexes are not negative.
+        double minLat = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            minLat = min(minLat, route[2 * i]);
+        }
+        mMinLat = minLat - marginLat - mCellHeight;
+        mMinX = minX - marginLng - mCellWidth;
+
+        List<double[]> pieces = splitRoute(route, x, cellSize);
+        int pieceCount = pieces.size();
+        mLat = new double[pieceCount];
+        mLng = new double[pieceCount];
+        mCosLat = new double[pieceCount];
+        for (int i = 0; i < pieceCount; i++) {
+            double[] point = pieces.get(i);
+            mLat[i] = toRadians(point[0]);
+            mLng[i] = toRadians(point[1]);
+            mCosLat[i] = cos(mLat[i]);
+        }
+
+        // Collects the cells of all pieces, then counts and fills in the pieces of each cell.
+        mPieceBounds = new double[4 * pieceCount];
+        int[] bounds = new int[4 * pieceCount];
+        long[] keys = new long[16];
+        int pairCount = 0;
+        for (int i = 0; i + 1 < pieceCount; i++) {
+            double[] from = pieces.get(i);
+            double[] to = pieces.get(i + 1);
+            mPieceBounds[4 * i] = min(from[0], to[0]) - marginLat;
+            mPieceBounds[4 * i + 1] = max(from[0], to[0]) + marginLat;
+            mPieceBounds[4 * i + 2] = min(from[1], to[1]) - marginLng;
+            mPieceBounds[4 * i + 3] = max(from[1], to[1]) + marginLng;
+            int row1 = bounds[4 * i] = row(mPieceBounds[4 * i]);
+            int row2 = bounds[4 * i + 1] = row(mPieceBounds[4 * i + 1]);
+            int column1 = bounds[4 * i + 2] = column(mPieceBounds[4 * i + 2]);
+            int column2 = bounds[4 * i + 3] = column(mPieceBounds[4 * i + 3]);
+            for (int row = row1; row <= row2; row++) {
+                for (int column = column1; column <= column2; column++) {
+                    if (pairCount == keys.length) {
+                        keys = Arrays.copyOf(keys, 2 * keys.length);
+                    }
+                    keys[pairCount++] = cellKey(row, column);
+                }
+            }
+        }
+        Arrays.sort(keys, 0, pairCount);
+        int cellCount = 0;
+        for (int i = 0; i < pairCount; i++) {
+            if (cellCount == 0 || keys[cellCount - 1] != keys[i]) {
+                keys[cellCount++] = keys[i];
+            }
+        }
+        mCellKeys = Arrays.copyOf(keys, cellCount);
+
+        mCellStart = new int[cellCount + 1];
+        mCellPieces = new int[pairCount];
+        for (int pass = 0; pass < 2; pass++) {
+            int[] next = pass == 0 ? mCellStart : mCellStart.clone();
+            for (int i = 0; i + 1 < pieceCount; i++) {
+                for (int row = bounds[4 * i]; row <= bounds[4 * i + 1]; row++) {
+                    for (int column = bounds[4 * i + 2]; column <= bounds[4 * i + 3]; column++) {
+                        int cell = Arrays.binarySearch(mCellKeys, cellKey(row, column));
+                        if (pass == 0) {
+                            mCellStart[cell + 1]++;
+                        } else {
+                            mCellPieces[next[cell]++] = i;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int cell = 0; cell < cellCount; cell++) {
+                    mCellStart[cell + 1] += mCellStart[cell];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the route, interleaved latitude, longitude pairs in degrees.
+     */
+    public double[] getRoute() {
+        return mRoute.clone();
+    }
+
+    /**
+     * Returns the maximum distance from the route, in meters.
+     */
+    public double getDistance() {
+        return mDistance;
+    }
+
+    /**
+     * Returns the route length, in meters.
+     */
+    public double getLength() {
+        return mLength;
+    }
+
+    /**
+     * Returns the center of the route bounds and the radius in meters of the circle around
+     * it that contains the corridor: {latitude, longitude, radius}.
+     */
+    public double[] getBoundingCircle() {
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        int size = mRoute.length / 2;
+        double x = 0;
+        for (int i = 0; i < size; i++) {
+            double lng = mRoute[2 * i + 1];
+            x = i == 0 ? lng : x + SphericalUtil.wrap(lng - x, -180, 180);
+            minX = min(minX, x);
+            maxX = max(maxX, x);
+            minLat = min(minLat, mRoute[2 * i]);
+            maxLat = max(maxLat, mRoute[2 * i]);
+        }
+        double centerLatitude = (minLat + maxLat) / 2;
+        double centerLongitude = SphericalUtil.wrap((minX + maxX) / 2, -180, 180);
+        double lat = toRadians(centerLatitude);
+        double cosLat = cos(lat);
+        double lng = toRadians(centerLongitude);
+        double maxHav = 0;
+        for (int i = 0; i < mLat.length; i++) {
+            maxHav = max(maxHav, SphericalUtil.havDistance(lat, cosLat, lng,
+                    mLat[i], mCosLat[i], mLng[i]));
+        }
+        double radius = SphericalUtil.arcHav(min(1, maxHav)) * SphericalUtil.EARTH_RADIUS;
+        return new double[]{centerLatitude, centerLongitude, radius * 1.01 + mDistance + 1};
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        double x = mMinX + SphericalUtil.mod(longitude - mMinX, 360);
+        int index = Arrays.binarySearch(mCellKeys, cellKey(row(latitude), column(x)));
+        if (index < 0) {
+            return false;
+        }
+        double lat = toRadians(latitude);
+        double lng = toRadians(longitude);
+        for (int i = mCellStart[index]; i < mCellStart[index + 1]; i++) {
+            int piece = mCellPieces[i];
+            int bounds = 4 * piece;
+            if (latitude < mPieceBounds[bounds] || latitude > mPieceBounds[bounds + 1] ||
+                    x < mPieceBounds[bounds + 2] || x > mPieceBounds[bounds + 3]) {
+                continue;
+            }
+            if (SphericalUtil.distanceToSegmentRadians(lat, lng, mLat[piece], mLng[piece],
+                    mLat[piece + 1], mLng[piece + 1]) <= mAngle) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits route segments into pieces not longer than maxLength. Returns points
+     * {latitude, unwrapped longitude}.
+     */
+    private static List<double[]> splitRoute(double[] route, double[] x, double maxLength) {
+        int size = route.length / 2;
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i + 1 < size; i++) {
+            GeoPoint from = new GeoPoint(route[2 * i], route[2 * i + 1]);
+            GeoPoint to = new GeoPoint(route[2 * i + 2], route[2 * i + 3]);
+            double length = SphericalUtil.computeDistanceBetween(from, to);
+            int parts = max(1, (int) ceil(length / maxLength));
+            double shift = x[i] - route[2 * i + 1];
+            for (int part = 0; part < parts; part++) {
+                GeoPoint point = part == 0 ? from :
+                        SphericalUtil.interpolate(from, to, (double) part / parts);
+                double pointX = point.longitude + shift;
+                // Interpolated points may be wrapped differently than the segment start.
+                pointX = x[i] + SphericalUtil.wrap(pointX - x[i], -180, 180);
+                points.add(new double[]{point.latitude, pointX});
+            }
+        }
+        points.add(new double[]{route[2 * size - 2], x[size - 1]});
+        return points;
+    }
+
+    private int row(double latitude) {
+        return (int) floor((latitude - mMinLat) / mCellHeight);
+    }
+
+    private int column(double x) {
+        return (int) floor((x - mMinX) / mCellWidth);
+    }
+
+    /**
+     * Returns the key of the cell, ordered by row and then by column. Cells outside of the
+     * grid get keys no cell of the route has.
+     */
+    private static long cellKey(int row, int column) {
+        return (long) row << 32 | (column & 0xffffffffL);
+    }
+}
@@ -0,0 +1,65 @@
+package com.ashaevy.geofence.utils;
+
+/**
+ * Fixed latitude/longitude grid used to index geofences by the cells their bounds cover.
+ * A cell is identified by a single int, so it can be stored in an indexed database column.
+ */
+public final class GeoGrid {
+
+    /**
+     * Cell size, about 5.5 km along a meridian.
+     */
+    public static final double CELL_SIZE_DEGREES = 0.05;
+
+    /**
+     * Bounds that cover more cells than this are put to {@link #OVERSIZED_CELL} instead.
+     */
+    public static final int MAX_CELLS = 4096;
+
+    /**
+     * Shared cell for very large areas. Lookups must always check it.
+     */
+    public static final int OVERSIZED_CELL = -1;
+
+    static final int COLUMNS = (int) Math.round(360 / CELL_SIZE_DEGREES);
+    static final int ROWS = (int) Math.round(180 / CELL_SIZE_DEGREES);
+
+    private GeoGrid() {}
+
+    public static int cellOf(double latitude, double longitude) {
+        return row(latitude) * COLUMNS + column(longitude);
+    }
+
+    /**
+     * Returns cells covered by bounds or only {@link #OVERSIZED_CELL} if there are more
+     * than {@link #MAX_CELLS} of them.
+     */
+    public static int[] cellsCovering(GeoBounds bounds) {
+        int minRow = row(bounds.minLatitude);
+        int maxRow = row(bounds.maxLatitude);
+        int minColumn = column(bounds.minLongitude);
+        int maxColumn = column(bounds.maxLongitude);
+        long count = (long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
+        if (count > MAX_CELLS) {
+            return new int[]{OVERSIZED_CELL};
+        }
+        int[] cells = new int[(int) count];
+        int i = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                cells[i++] = row * COLUMNS + column;
+            }
+        }
+        return cells;
+    }
+
+    private static int row(double latitude) {
+        int row = (int) Math.floor((latitude + 90) / CELL_SIZE_DEGREES);
+        return Math.max(0, Math.min(ROWS - 1, row));
+    }
+
+    private static int column(double longitude) {
+        int column = (int) Math.floor((longitude + 180) / CELL_SIZE_DEGREES);
+        return Math.max(0, Math.min(COLUMNS - 1, column));
+    }
+}
@@ -0,0 +1,43 @@
+package com.ashaevy.geofence.utils;
+
+/**
+ * Immutable point on Earth, in degrees. Plain JVM replacement for the Maps {@code LatLng}
+ * with the same normalization rules: latitude is clamped to [-90, 90] and longitude is
+ * wrapped to [-180, 180).
+ */
+public final class GeoPoint {
+
+    public final double latitude;
+    public final double longitude;
+
+    public GeoPoint(double latitude, double longitude) {
+        if (-180 <= longitude && longitude < 180) {
+            this.longitude = longitude;
+        } else {
+            this.longitude = ((longitude - 180) % 360 + 360) % 360 - 180;
+        }
+        this.latitude = Math.max(-90, Math.min(90, latitude));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GeoPoint)) return false;
+        GeoPoint other = (GeoPoint) o;
+        return Double.doubleToLongBits(latitude) == Double.doubleToLongBits(other.latitude) &&
+                Double.doubleToLongBits(longitude) == Double.doubleToLongBits(other.longitude);
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(latitude);
+        int result = (int) (bits ^ (bits >>> 32));
+        bits = Double.doubleToLongBits(longitude);
+        return 31 * result + (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "GeoPoint(" + latitude + "," + longitude + ")";
+    }
+}
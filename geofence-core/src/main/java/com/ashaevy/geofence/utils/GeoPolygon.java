@@ -0,0 +1,411 @@
+package com.ashaevy.geofence.utils;
+
+import java.util.Arrays;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.ceil;
+import static java.lang.Math.cos;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+import static java.lang.Math.toRadians;
+
+/**
+ * Immutable simple polygon on Earth with a precomputed point-in-polygon structure.
+ *
+ * Vertices are interleaved latitude, longitude pairs in degrees. Edges are straight lines
+ * in latitude/longitude, which for geofence sized polygons is within centimeters of the
+ * great circle. The polygon may cross the antimeridian, but must not contain a pole.
+ *
+ * Containment uses a uniform grid over the bounding box. Every cell keeps the edges that
+ * intersect it and whether its center is inside, computed once by a scanline. A point is
+ * inside if the center of its cell is inside and the segment from the center to the point
+ * crosses an even number of the cell edges, so a query tests a few edges instead of all
+ * of them. Points exactly on the border may be reported either way.
+ */
+public final class GeoPolygon {
+
+    /**
+     * Polygons smaller than this, in square meters, are rejected as degenerate.
+     */
+    public static final double MIN_AREA = 1;
+
+    /**
+     * Grid cells per vertex, and the limit of cells per side.
+     */
+    private static final int CELLS_PER_VERTEX = 4;
+    private static final int MAX_GRID_SIZE = 256;
+
+    private final double[] mVertices;
+    private final double mArea;
+
+    // Vertices in the plane: x is longitude unwrapped relative to the first vertex.
+    private final int mSize;
+    private final double[] mX;
+    private final double[] mY;
+    private final double mMinX;
+    private final double mMaxX;
+    private final double mMinY;
+    private final double mMaxY;
+
+    private final int mColumns;
+    private final int mRows;
+    private final double mCellWidth;
+    private final double mCellHeight;
+    /**
+     * Edges of cell i are mCellEdges[mCellStart[i]] .. mCellEdges[mCellStart[i + 1] - 1],
+     * edge j goes from vertex j to vertex j + 1.
+     */
+    private final int[] mCellStart;
+    private final int[] mCellEdges;
+    private final boolean[] mCellCenterInside;
+
+    /**
+     * @param vertices interleaved latitude, longitude pairs in degrees, in any orientation,
+     *                 the closing vertex may be omitted
+     * @throws IllegalArgumentException if the polygon has less than 3 vertices, zero area,
+     *                                  intersecting edges or contains a pole
+     */
+    public GeoPolygon(double[] vertices) {
+        if (vertices.length % 2 != 0) {
+            throw new IllegalArgumentException("Odd number of coordinates.");
+        }
+        // Repeated vertices, including the closing one, would make zero length edges.
+        double[] distinct = new double[vertices.length];
+        int size = 0;
+        for (int i = 0; i < vertices.length; i += 2) {
+            if (size == 0 || vertices[i] != distinct[2 * size - 2] ||
+                    vertices[i + 1] != distinct[2 * size - 1]) {
+                distinct[2 * size] = vertices[i];
+                distinct[2 * size + 1] = vertices[i + 1];
+                size++;
+            }
+        }
+        if (size > 1 && distinct[0] == distinct[2 * size - 2] &&
+                distinct[1] == distinct[2 * size - 1]) {
+            size--;
+        }
+        if (size < 3) {
+            throw new IllegalArgumentException("Polygon needs at least 3 vertices.");
+        }
+
+        double signedArea = SphericalUtil.computeSignedArea(distinct, 0, size);
+        if (abs(signedArea) < MIN_AREA) {
+            throw new IllegalArgumentException("Polygon area is too small: " + signedArea);
+        }
+        // Positive signed area is the counterclockwise orientation.
+        mVertices = new double[2 * size];
+        for (int i = 0; i < size; i++) {
+            int from = signedArea > 0 ? i : size - 1 - i;
+            mVertices[2 * i] = distinct[2 * from];
+            mVertices[2 * i + 1] = distinct[2 * from + 1];
+        }
+        mArea = abs(signedArea);
+
+        mSize = size;
+        mX = new double[size];
+        mY = new double[size];
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            mY[i] = mVertices[2 * i];
+            double x = mVertices[2 * i + 1];
+            mX[i] = i == 0 ? x : mX[i - 1] + SphericalUtil.wrap(x - mX[i - 1], -180, 180);
+            minX = min(minX, mX[i]);
+            maxX = max(maxX, mX[i]);
+            minY = min(minY, mY[i]);
+            maxY = max(maxY, mY[i]);
+        }
+        // Around a pole the unwrapped ring does not close.
+        if (abs(mX[size - 1] + SphericalUtil.wrap(mX[0] - mX[size - 1], -180, 180) - mX[0]) >
+                180 || maxX - minX >= 180) {
+            throw new IllegalArgumentException("Polygon must not contain a pole or be wider " +
+                    "than 180 degrees of longitude.");
+        }
+        mMinX = minX;
+        mMaxX = maxX;
+        mMinY = minY;
+        mMaxY = maxY;
+
+        int gridSize = (int) min(MAX_GRID_SIZE, max(1, ceil(sqrt(CELLS_PER_VERTEX * size))));
+        mColumns = gridSize;
+        mRows = gridSize;
+        mCellWidth = max(maxX - minX, Double.MIN_NORMAL) / mColumns;
+        mCellHeight = max(maxY - minY, Double.MIN_NORMAL) / mRows;
+
+        mCellStart = new int[mColumns * mRows + 1];
+        // First pass counts edges of every cell, the second one fills them.
+        for (int edge = 0; edge < size; edge++) {
+            forEachCell(edge, null);
+        }
+        for (int i = 0, total = 0; i <= mColumns * mRows; i++) {
+            int count = mCellStart[i];
+            mCellStart[i] = total;
+            total += count;
+        }
+        mCellEdges = new int[mCellStart[mColumns * mRows]];
+        int[] filled = Arrays.copyOf(mCellStart, mCellStart.length - 1);
+        for (int edge = 0; edge < size; edge++) {
+            forEachCell(edge, filled);
+        }
+
+        checkSimple();
+        mCellCenterInside = computeCellCenters();
+    }
+
+    /**
+     * Returns vertices in the counterclockwise order, without the closing vertex.
+     */
+    public double[] getVertices() {
+        return mVertices.clone();
+    }
+
+    public int getVertexCount() {
+        return mSize;
+    }
+
+    /**
+     * Returns the area in square meters.
+     */
+    public double getArea() {
+        return mArea;
+    }
+
+    /**
+     * Returns the center of the bounding box and the radius in meters of the circle around
+     * it that contains the polygon: {latitude, longitude, radius}.
+     */
+    public double[] getBoundingCircle() {
+        double centerLatitude = (mMinY + mMaxY) / 2;
+        double centerLongitude = SphericalUtil.wrap((mMinX + mMaxX) / 2, -180, 180);
+        double lat = toRadians(centerLatitude);
+        double cosLat = cos(lat);
+        double lng = toRadians(centerLongitude);
+        double maxHav = 0;
+        for (int i = 0; i < mSize; i++) {
+            double vertexLat = toRadians(mY[i]);
+            maxHav = max(maxHav, SphericalUtil.havDistance(lat, cosLat, lng,
+                    vertexLat, cos(vertexLat), toRadians(mX[i])));
+        }
+        double radius = SphericalUtil.arcHav(min(1, maxHav)) * SphericalUtil.EARTH_RADIUS;
+        // Straight edges in degrees bulge slightly from the great circles between vertices.
+        return new double[]{centerLatitude, centerLongitude, radius * 1.01 + 1};
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < mMinY || latitude > mMaxY) {
+            return false;
+        }
+        double x = mMinX + SphericalUtil.mod(longitude - mMinX, 360);
+        if (x > mMaxX) {
+            return false;
+        }
+        int column = min(mColumns - 1, (int) ((x - mMinX) / mCellWidth));
+        int row = min(mRows - 1, (int) ((latitude - mMinY) / mCellHeight));
+        int cell = row * mColumns + column;
+        double centerX = mMinX + (column + 0.5) * mCellWidth;
+        double centerY = mMinY + (row + 0.5) * mCellHeight;
+
+        boolean inside = mCellCenterInside[cell];
+        for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+            int edge = mCellEdges[i];
+            int next = edge + 1 < mSize ? edge + 1 : 0;
+            if (crosses(centerX, centerY, x, latitude, mX[edge], mY[edge],
+                    closingX(edge, next), mY[next])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Returns x of the end of the edge, the closing edge is continued across the antimeridian
+     * like the others.
+     */
+    private double closingX(int edge, int next) {
+        return next != 0 ? mX[next] : mX[edge] + SphericalUtil.wrap(mX[0] - mX[edge], -180, 180);
+    }
+
+    /**
+     * Calls for every cell the edge intersects: counts edges in mCellStart if filled is null,
+     * otherwise stores the edge at filled position of the cell.
+     */
+    private void forEachCell(int edge, int[] filled) {
+        int next = edge + 1 < mSize ? edge + 1 : 0;
+        double x1 = mX[edge];
+        double y1 = mY[edge];
+        double x2 = closingX(edge, next);
+        double y2 = mY[next];
+        int column1 = column(min(x1, x2));
+        int column2 = column(max(x1, x2));
+        int row1 = row(min(y1, y2));
+        int row2 = row(max(y1, y2));
+        for (int row = row1; row <= row2; row++) {
+            for (int column = column1; column <= column2; column++) {
+                if (row1 != row2 && column1 != column2 && !intersectsCell(x1, y1, x2, y2,
+                        column, row)) {
+                    continue;
+                }
+                int cell = row * mColumns + column;
+                if (filled == null) {
+                    mCellStart[cell]++;
+                } else {
+                    mCellEdges[filled[cell]++] = edge;
+                }
+            }
+        }
+    }
+
+    private int column(double x) {
+        return max(0, min(mColumns - 1, (int) floor((x - mMinX) / mCellWidth)));
+    }
+
+    private int row(double y) {
+        return max(0, min(mRows - 1, (int) floor((y - mMinY) / mCellHeight)));
+    }
+
+    /**
+     * Returns whether the segment intersects the cell, clipping it by the cell slightly
+     * enlarged, so edges on cell borders belong to both cells.
+     */
+    private boolean intersectsCell(double x1, double y1, double x2, double y2,
+                                   int column, int row) {
+        double marginX = mCellWidth * 1e-9;
+        double marginY = mCellHeight * 1e-9;
+        double left = mMinX + column * mCellWidth - marginX;
+        double right = mMinX + (column + 1) * mCellWidth + marginX;
+        double bottom = mMinY + row * mCellHeight - marginY;
+        double top = mMinY + (row + 1) * mCellHeight + marginY;
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double t0 = 0;
+        double t1 = 1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 - left, right - x1, y1 - bottom, top - y1};
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) {
+                    return false;
+                }
+            } else {
+                double t = q[i] / p[i];
+                if (p[i] < 0) {
+                    t0 = max(t0, t);
+                } else {
+                    t1 = min(t1, t);
+                }
+                if (t0 > t1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rejects polygons with intersecting edges. Intersecting edges share a cell, so only
+     * edges of the same cell are compared.
+     */
+    private void checkSimple() {
+        for (int cell = 0; cell < mColumns * mRows; cell++) {
+            for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+                int a = mCellEdges[i];
+                int aNext = a + 1 < mSize ? a + 1 : 0;
+                for (int j = i + 1; j < mCellStart[cell + 1]; j++) {
+                    int b = mCellEdges[j];
+                    int bNext = b + 1 < mSize ? b + 1 : 0;
+                    if (aNext == b || bNext == a) {
+                        continue;
+                    }
+                    if (intersects(mX[a], mY[a], closingX(a, aNext), mY[aNext],
+                            mX[b], mY[b], closingX(b, bNext), mY[bNext])) {
+                        throw new IllegalArgumentException("Polygon edges " + a + " and " +
+                                b + " intersect.");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes whether cell centers are inside with a horizontal scanline through every row
+     * of centers and the even-odd rule.
+     */
+    private boolean[] computeCellCenters() {
+        boolean[] inside = new boolean[mColumns * mRows];
+        double[] crossings = new double[mSize];
+        for (int row = 0; row < mRows; row++) {
+            double y = mMinY + (row + 0.5) * mCellHeight;
+            int count = 0;
+            for (int edge = 0; edge < mSize; edge++) {
+                int next = edge + 1 < mSize ? edge + 1 : 0;
+                double y1 = mY[edge];
+                double y2 = mY[next];
+                if ((y1 > y) != (y2 > y)) {
+                    double x1 = mX[edge];
+                    double x2 = closingX(edge, next);
+                    crossings[count++] = x1 + (y - y1) / (y2 - y1) * (x2 - x1);
+                }
+            }
+            Arrays.sort(crossings, 0, count);
+            int left = 0;
+            for (int column = 0; column < mColumns; column++) {
+                double x = mMinX + (column + 0.5) * mCellWidth;
+                while (left < count && crossings[left] < x) {
+                    left++;
+                }
+                inside[row * mColumns + column] = (left & 1) == 1;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Returns whether segment from (x1, y1) to (x2, y2) crosses edge from (x3, y3) to (x4, y4).
+     * Points on a line are counted on one side of it, so a segment passing through a vertex
+     * crosses exactly one of its edges when it passes the border, and none or both otherwise.
+     */
+    private static boolean crosses(double x1, double y1, double x2, double y2,
+                                   double x3, double y3, double x4, double y4) {
+        return (orientation(x3, y3, x4, y4, x1, y1) > 0) !=
+                (orientation(x3, y3, x4, y4, x2, y2) > 0) &&
+                (orientation(x1, y1, x2, y2, x3, y3) > 0) !=
+                        (orientation(x1, y1, x2, y2, x4, y4) > 0);
+    }
+
+    /**
+     * Returns whether two segments have a common point.
+     */
+    private static boolean intersects(double x1, double y1, double x2, double y2,
+                                      double x3, double y3, double x4, double y4) {
+        double d1 = orientation(x3, y3, x4, y4, x1, y1);
+        double d2 = orientation(x3, y3, x4, y4, x2, y2);
+        double d3 = orientation(x1, y1, x2, y2, x3, y3);
+        double d4 = orientation(x1, y1, x2, y2, x4, y4);
+        if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) &&
+                ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) {
+            return true;
+        }
+        return (d1 == 0 && onSegment(x3, y3, x4, y4, x1, y1)) ||
+                (d2 == 0 && onSegment(x3, y3, x4, y4, x2, y2)) ||
+                (d3 == 0 && onSegment(x1, y1, x2, y2, x3, y3)) ||
+                (d4 == 0 && onSegment(x1, y1, x2, y2, x4, y4));
+    }
+
+    private static boolean onSegment(double x1, double y1, double x2, double y2,
+                                     double x, double y) {
+        return x >= min(x1, x2) && x <= max(x1, x2) && y >= min(y1, y2) && y <= max(y1, y2);
+    }
+
+    /**
+     * Returns the cross product of (b - a) and (c - a), positive if c is to the left of
+     * the line from a to b.
+     */
+    private static double orientation(double ax, double ay, double bx, double by,
+                                      double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+}
@@ -0,0 +1,179 @@
+package com.ashaevy.geofence.utils;
+
+import java.util.Arrays;
+
+import static java.lang.Math.toRadians;
+
+/**
+ * Douglas-Peucker simplification of paths and polygon rings on the sphere. A vertex is
+ * dropped if it is within the tolerance of the great circle segment that replaces it,
+ * distances are computed with {@link SphericalUtil}.
+ *
+ * Coordinates are interleaved latitude, longitude pairs in degrees.
+ */
+public final class PolygonSimplifier {
+
+    private PolygonSimplifier() {
+    }
+
+    /**
+     * Simplifies an open path, the first and the last points are always kept.
+     *
+     * @param tolerance maximum distance of a dropped point from the result, in meters
+     */
+    public static double[] simplifyPath(double[] latLngs, double tolerance) {
+        int size = latLngs.length / 2;
+        if (size < 3) {
+            return latLngs.clone();
+        }
+        Vertices vertices = new Vertices(latLngs);
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        simplify(vertices, 0, size - 1, tolerance / SphericalUtil.EARTH_RADIUS, keep);
+        return select(latLngs, keep);
+    }
+
+    /**
+     * Simplifies a closed ring given without the closing vertex. The ring is split at the
+     * first vertex and the vertex farthest from it, both are kept. At least 3 vertices
+     * are kept.
+     *
+     * @param tolerance maximum distance of a dropped vertex from the result, in meters
+     */
+    public static double[] simplifyRing(double[] latLngs, double tolerance) {
+        int size = latLngs.length / 2;
+        if (size <= 3) {
+            return latLngs.clone();
+        }
+        Vertices vertices = new Vertices(latLngs);
+        int farthest = 1;
+        double maxDistance = -1;
+        for (int i = 1; i < size; i++) {
+            double distance = SphericalUtil.distanceRadians(vertices.lat(0), vertices.lng(0),
+                    vertices.lat(i), vertices.lng(i));
+            if (distance > maxDistance) {
+                maxDistance = distance;
+                farthest = i;
+            }
+        }
+
+        // Index size stands for vertex 0 closing the ring.
+        boolean[] keep = new boolean[size + 1];
+        keep[0] = true;
+        keep[farthest] = true;
+        keep[size] = true;
+        double angle = tolerance / SphericalUtil.EARTH_RADIUS;
+        simplify(vertices, 0, farthest, angle, keep);
+        simplify(vertices, farthest, size, angle, keep);
+
+        keep = Arrays.copyOf(keep, size);
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        if (kept < 3) {
+            // Both chains collapsed to the chord, keep the vertex farthest from it.
+            int third = -1;
+            maxDistance = -1;
+            for (int i = 1; i < size; i++) {
+                if (i != farthest) {
+                    double distance = vertices.distanceToSegment(i, 0, farthest);
+                    if (distance > maxDistance) {
+                        maxDistance = distance;
+                        third = i;
+                    }
+                }
+            }
+            keep[third] = true;
+        }
+        return select(latLngs, keep);
+    }
+
+    /**
+     * Marks vertices to keep between first and last, which are kept. Uses an explicit
+     * stack, so long paths do not overflow the thread stack.
+     */
+    private static void simplify(Vertices vertices, int first, int last, double angle,
+                                 boolean[] keep) {
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            int farthest = -1;
+            double maxDistance = angle;
+            for (int i = start + 1; i < end; i++) {
+                double distance = vertices.distanceToSegment(i, start, end);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = start;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = end;
+            }
+        }
+    }
+
+    private static double[] select(double[] latLngs, boolean[] keep) {
+        int count = 0;
+        for (boolean k : keep) {
+            if (k) {
+                count++;
+            }
+        }
+        double[] result = new double[2 * count];
+        int j = 0;
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                result[j++] = latLngs[2 * i];
+                result[j++] = latLngs[2 * i + 1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Vertices in radians; index equal to the vertex count refers to vertex 0.
+     */
+    private static class Vertices {
+        private final int mSize;
+        private final double[] mLat;
+        private final double[] mLng;
+
+        Vertices(double[] latLngs) {
+            mSize = latLngs.length / 2;
+            mLat = new double[mSize];
+            mLng = new double[mSize];
+            for (int i = 0; i < mSize; i++) {
+                mLat[i] = toRadians(latLngs[2 * i]);
+                mLng[i] = toRadians(latLngs[2 * i + 1]);
+            }
+        }
+
+        double lat(int i) {
+            return mLat[i == mSize ? 0 : i];
+        }
+
+        double lng(int i) {
+            return mLng[i == mSize ? 0 : i];
+        }
+
+        double distanceToSegment(int i, int start, int end) {
+            return SphericalUtil.distanceToSegmentRadians(lat(i), lng(i), lat(start),
+                    lng(start), lat(end), lng(end));
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package com.ashaevy.geofence.utils;
+
+import java.util.List;
+
+import static java.lang.Math.*;
+
+public class SphericalUtil {
+
+    public static final double EARTH_RADIUS = 6371009;
+
+    private static final double DEGREES_TO_RADIANS = PI / 180;
+
+    /**
+     * Returns hav() of distance from (lat1, lng1) to (lat2, lng2) on the unit sphere.
+     */
+    static double havDistance(double lat1, double lat2, double dLng) {
+        return hav(lat1 - lat2) + hav(dLng) * cos(lat1) * cos(lat2);
+    }
+
+    /**
+     * Returns haversine(angle-in-radians).
+     * hav(x) == (1 - cos(x)) / 2 == sin(x / 2)^2.
+     */
+    static double hav(double x) {
+        double sinHalf = sin(x * 0.5);
+        return sinHalf * sinHalf;
+    }
+
+    /**
+     * Computes inverse haversine. Has good numerical stability around 0.
+     * arcHav(x) == acos(1 - 2 * x) == 2 * asin(sqrt(x)).
+     * The argument must be in [0, 1], and the result is positive.
+     */
+    static double arcHav(double x) {
+        return 2 * asin(sqrt(x));
+    }
+
+    private SphericalUtil() {}
+
+    /**
+     * Returns the heading from one GeoPoint to another GeoPoint. Headings are
+     * expressed in degrees clockwise from North within the range [-180,180).
+     * @return The heading in degrees clockwise from north.
+     */
+    public static double computeHeading(GeoPoint from, GeoPoint to) {
+        // http://williams.best.vwh.net/avform.htm#Crs
+        double fromLat = toRadians(from.latitude);
+        double fromLng = toRadians(from.longitude);
+        double toLat = toRadians(to.latitude);
+        double toLng = toRadians(to.longitude);
+        double dLng = toLng - fromLng;
+        double heading = atan2(
+                sin(dLng) * cos(toLat),
+                cos(fromLat) * sin(toLat) - sin(fromLat) * cos(toLat) * cos(dLng));
+        return wrap(toDegrees(heading), -180, 180);
+    }
+
+    /**
+     * Returns the GeoPoint resulting from moving a distance from an origin
+     * in the specified heading (expressed in degrees clockwise from north).
+     * @param from     The GeoPoint from which to start.
+     * @param distance The distance to travel.
+     * @param heading  The heading in degrees clockwise from north.
+     */
+    public static GeoPoint computeOffset(GeoPoint from, double distance, double heading) {
+        distance /= EARTH_RADIUS;
+        heading = toRadians(heading);
+        // http://williams.best.vwh.net/avform.htm#LL
+        double fromLat = toRadians(from.latitude);
+        double fromLng = toRadians(from.longitude);
+        double cosDistance = cos(distance);
+        double sinDistance = sin(distance);
+        double sinFromLat = sin(fromLat);
+        double cosFromLat = cos(fromLat);
+        double sinLat = cosDistance * sinFromLat + sinDistance * cosFromLat * cos(heading);
+        double dLng = atan2(
+                sinDistance * cosFromLat * sin(heading),
+                cosDistance - sinFromLat * sinLat);
+        return new GeoPoint(toDegrees(asin(sinLat)), toDegrees(fromLng + dLng));
+    }
+
+    /**
+     * Returns the location of origin when provided with a GeoPoint destination,
+     * meters travelled and original heading. Headings are expressed in degrees
+     * clockwise from North. This function returns null when no solution is
+     * available.
+     * @param to       The destination GeoPoint.
+     * @param distance The distance travelled, in meters.
+     * @param heading  The heading in degrees clockwise from north.
+     */
+    public static GeoPoint computeOffsetOrigin(GeoPoint to, double distance, double heading) {
+        heading = toRadians(heading);
+        distance /= EARTH_RADIUS;
+        // http://lists.maptools.org/pipermail/proj/2008-October/003939.html
+        double n1 = cos(distance);
+        double n2 = sin(distance) * cos(heading);
+        double n3 = sin(distance) * sin(heading);
+        double n4 = sin(toRadians(to.latitude));
+        // There are two solutions for b. b = n2 * n4 +/- sqrt(), one solution results
+        // in the latitude outside the [-90, 90] range. We first try one solution and
+        // back off to the other if we are outside that range.
+        double n12 = n1 * n1;
+        double discriminant = n2 * n2 * n12 + n12 * n12 - n12 * n4 * n4;
+        if (discriminant < 0) {
+            // No real solution which would make sense in GeoPoint-space.
+            return null;
+        }
+        double b = n2 * n4 + sqrt(discriminant);
+        b /= n1 * n1 + n2 * n2;
+        double a = (n4 - n2 * b) / n1;
+        double fromLatRadians = atan2(a, b);
+        if (fromLatRadians < -PI / 2 || fromLatRadians > PI / 2) {
+            b = n2 * n4 - sqrt(discriminant);
+            b /= n1 * n1 + n2 * n2;
+            fromLatRadians = atan2(a, b);
+        }
+        if (fromLatRadians < -PI / 2 || fromLatRadians > PI / 2) {
+            // No solution which would make sense in GeoPoint-space.
+            return null;
+        }
+        double fromLngRadians = toRadians(to.longitude) -
+                atan2(n3, n1 * cos(fromLatRadians) - n2 * sin(fromLatRadians));
+        return new GeoPoint(toDegrees(fromLatRadians), toDegrees(fromLngRadians));
+    }
+
+    /**
+     * Returns the GeoPoint which lies the given fraction of the way between the
+     * origin GeoPoint and the destination GeoPoint.
+     * @param from     The GeoPoint from which to start.
+     * @param to       The GeoPoint toward which to travel.
+     * @param fraction A fraction of the distance to travel.
+     * @return The interpolated GeoPoint.
+     */
+    public static GeoPoint interpolate(GeoPoint from, GeoPoint to, double fraction) {
+        // http://en.wikipedia.org/wiki/Slerp
+        double fromLat = toRadians(from.latitude);
+        double fromLng = toRadians(from.longitude);
+        double toLat = toRadians(to.latitude);
+        double toLng = toRadians(to.longitude);
+        double cosFromLat = cos(fromLat);
+        double cosToLat = cos(toLat);
+
+        // Computes Spherical interpolation coefficients.
+        double angle = computeAngleBetween(from, to);
+        double sinAngle = sin(angle);
+        if (sinAngle < 1E-6) {
+            return from;
+        }
+        double a = sin((1 - fraction) * angle) / sinAngle;
+        double b = sin(fraction * angle) / sinAngle;
+
+        // Converts from polar to vector and interpolate.
+        double x = a * cosFromLat * cos(fromLng) + b * cosToLat * cos(toLng);
+        double y = a * cosFromLat * sin(fromLng) + b * cosToLat * sin(toLng);
+        double z = a * sin(fromLat) + b * sin(toLat);
+
+        // Converts interpolated vector back to polar.
+        double lat = atan2(z, sqrt(x * x + y * y));
+        double lng = atan2(y, x);
+        return new GeoPoint(toDegrees(lat), toDegrees(lng));
+    }
+
+    /**
+     * Returns distance on the unit sphere; the arguments are in radians.
+     */
+    static double distanceRadians(double lat1, double lng1, double lat2, double lng2) {
+        return arcHav(havDistance(lat1, lat2, lng1 - lng2));
+    }
+
+    /**
+     * Returns hav() of the central angle that corresponds to distance in meters on Earth.
+     * Points are not farther than distance from each other iff hav() of the distance
+     * between them is not greater than this threshold, so it can be computed once and
+     * compared with {@link #havDistance(double, double, double, double, double, double)}
+     * without asin() and sqrt() per test.
+     */
+    public static double havThreshold(double distance) {
+        double angle = distance / EARTH_RADIUS;
+        if (angle < 0) {
+            return -1;
+        }
+        return angle >= PI ? 1 : hav(angle);
+    }
+
+    /**
+     * Returns hav() of distance on the unit sphere. Latitudes and longitudes are in radians,
+     * cosLat are precomputed cos() of the latitudes.
+     */
+    public static double havDistance(double lat1, double cosLat1, double lng1,
+                                     double lat2, double cosLat2, double lng2) {
+        return hav(lat1 - lat2) + hav(lng1 - lng2) * cosLat1 * cosLat2;
+    }
+
+    /**
+     * Returns whether two points are within the distance given by {@link #havThreshold(double)}.
+     * Latitudes and longitudes are in radians, cosLat are precomputed cos() of the latitudes.
+     */
+    public static boolean isWithinDistance(double lat1, double cosLat1, double lng1,
+                                           double lat2, double cosLat2, double lng2,
+                                           double havThreshold) {
+        return havDistance(lat1, cosLat1, lng1, lat2, cosLat2, lng2) <= havThreshold;
+    }
+
+    /**
+     * Returns the equirectangular (flat-earth) approximation of the distance in meters;
+     * the arguments are in radians. Cheap, but only accurate for short distances away from
+     * the poles: within 0.05 radians (~318 km) and 80 degrees of latitude the relative error
+     * is below 0.35%.
+     */
+    public static double computeEquirectangularDistance(double lat1, double lng1,
+                                                        double lat2, double lng2) {
+        double dLng = wrap(lng2 - lng1, -PI, PI);
+        double x = dLng * cos((lat1 + lat2) * 0.5);
+        double y = lat2 - lat1;
+        return sqrt(x * x + y * y) * EARTH_RADIUS;
+    }
+
+    /**
+     * Returns the angle between two points, in radians. This is the same as the distance
+     * on the unit sphere.
+     */
+    static double computeAngleBetween(GeoPoint from, GeoPoint to) {
+        return distanceRadians(toRadians(from.latitude), toRadians(from.longitude),
+                toRadians(to.latitude), toRadians(to.longitude));
+    }
+
+    /**
+     * Returns the distance between two points, in meters.
+     */
+    public static double computeDistanceBetween(GeoPoint from, GeoPoint to) {
+        return computeAngleBetween(from, to) * EARTH_RADIUS;
+    }
+
+    /**
+     * Returns the distance from the point to the great circle segment between start and
+     * end, in meters.
+     */
+    public static double computeDistanceToSegment(GeoPoint point, GeoPoint start, GeoPoint end) {
+        return distanceToSegmentRadians(toRadians(point.latitude), toRadians(point.longitude),
+                toRadians(start.latitude), toRadians(start.longitude),
+                toRadians(end.latitude), toRadians(end.longitude)) * EARTH_RADIUS;
+    }
+
+    /**
+     * Returns the distance from the point to the segment on the unit sphere; the arguments
+     * are in radians. Uses the cross-track distance when the point projects onto the segment,
+     * the distance to the closer end otherwise.
+     */
+    static double distanceToSegmentRadians(double lat, double lng, double lat1, double lng1,
+                                           double lat2, double lng2) {
+        double distance13 = distanceRadians(lat1, lng1, lat, lng);
+        double distance12 = distanceRadians(lat1, lng1, lat2, lng2);
+        if (distance12 == 0 || distance13 == 0) {
+            return distance13;
+        }
+        double dHeading = headingRadians(lat1, lng1, lat, lng) -
+                headingRadians(lat1, lng1, lat2, lng2);
+        double crossTrack = asin(sin(distance13) * sin(dHeading));
+        // Right spherical triangle: tan(along) = tan(distance13) * cos(dHeading).
+        double alongTrack = atan2(sin(distance13) * cos(dHeading), cos(distance13));
+        if (alongTrack <= 0) {
+            return distance13;
+        }
+        if (alongTrack >= distance12) {
+            return distanceRadians(lat2, lng2, lat, lng);
+        }
+        return abs(crossTrack);
+    }
+
+    /**
+     * Returns the initial heading from the first point to the second one, in radians;
+     * the arguments are in radians.
+     */
+    private static double headingRadians(double lat1, double lng1, double lat2, double lng2) {
+        double dLng = lng2 - lng1;
+        return atan2(sin(dLng) * cos(lat2),
+                cos(lat1) * sin(lat2) - sin(lat1) * cos(lat2) * cos(dLng));
+    }
+
+    /**
+     * Returns the length of the given path, in meters, on Earth.
+     */
+    public static double computeLength(List<GeoPoint> path) {
+        if (path.size() < 2) {
+            return 0;
+        }
+        double length = 0;
+        GeoPoint prev = path.get(0);
+        double prevLat = toRadians(prev.latitude);
+        double prevLng = toRadians(prev.longitude);
+        for (GeoPoint point : path) {
+            double lat = toRadians(point.latitude);
+            double lng = toRadians(point.longitude);
+            length += distanceRadians(prevLat, prevLng, lat, lng);
+            prevLat = lat;
+            prevLng = lng;
+        }
+        return length * EARTH_RADIUS;
+    }
+
+    /**
+     * Returns the area of a closed path on Earth.
+     * @param path A closed path.
+     * @return The path's area in square meters.
+     */
+    public static double computeArea(List<GeoPoint> path) {
+        return abs(computeSignedArea(path));
+    }
+
+    /**
+     * Returns the signed area of a closed path on Earth. The sign of the area may be used to
+     * determine the orientation of the path.
+     * "inside" is the surface that does not contain the South Pole.
+     * @param path A closed path.
+     * @return The loop's area in square meters.
+     */
+    public static double computeSignedArea(List<GeoPoint> path) {
+        return computeSignedArea(path, EARTH_RADIUS);
+    }
+
+    /**
+     * Returns the signed area of a closed path on a sphere of given radius.
+     * The computed area uses the same units as the radius squared.
+     * Used by SphericalUtilTest.
+     */
+    static double computeSignedArea(List<GeoPoint> path, double radius) {
+        int size = path.size();
+        if (size < 3) { return 0; }
+        double total = 0;
+        GeoPoint prev = path.get(size - 1);
+        double prevTanLat = tan((PI / 2 - toRadians(prev.latitude)) / 2);
+        double prevLng = toRadians(prev.longitude);
+        // For each edge, accumulate the signed area of the triangle formed by the North Pole
+        // and that edge ("polar triangle").
+        for (GeoPoint point : path) {
+            double tanLat = tan((PI / 2 - toRadians(point.latitude)) / 2);
+            double lng = toRadians(point.longitude);
+            total += polarTriangleArea(tanLat, lng, prevTanLat, prevLng);
+            prevTanLat = tanLat;
+            prevLng = lng;
+        }
+        return total * (radius * radius);
+    }
+
+    /**
+     * Returns the length of the path of count points, in meters, on Earth. Points are
+     * interleaved latitude, longitude pairs in degrees, starting from the point offset.
+     */
+    public static double computeLength(double[] latLngs, int offset, int count) {
+        checkRange(latLngs.length, 2 * offset, count, 2);
+        return lengthRadians(latLngs, 2 * offset, latLngs, 2 * offset + 1, 2, count,
+                DEGREES_TO_RADIANS) * EARTH_RADIUS;
+    }
+
+    /**
+     * Returns the length of the path of count points, in meters, on Earth. Latitudes and
+     * longitudes are in degrees, starting from the index offset.
+     */
+    public static double computeLength(double[] latitudes, double[] longitudes,
+                                       int offset, int count) {
+        checkRange(latitudes.length, offset, count, 1);
+        checkRange(longitudes.length, offset, count, 1);
+        return lengthRadians(latitudes, offset, longitudes, offset, 1, count,
+                DEGREES_TO_RADIANS) * EARTH_RADIUS;
+    }
+
+    /**
+     * Same as {@link #computeLength(double[], int, int)} for coordinates in radians.
+     */
+    public static double computeLengthRadians(double[] latLngs, int offset, int count) {
+        checkRange(latLngs.length, 2 * offset, count, 2);
+        return lengthRadians(latLngs, 2 * offset, latLngs, 2 * offset + 1, 2, count, 1)
+                * EARTH_RADIUS;
+    }
+
+    /**
+     * Same as {@link #computeLength(double[], double[], int, int)} for coordinates in radians.
+     */
+    public static double computeLengthRadians(double[] latitudes, double[] longitudes,
+                                              int offset, int count) {
+        checkRange(latitudes.length, offset, count, 1);
+        checkRange(longitudes.length, offset, count, 1);
+        return lengthRadians(latitudes, offset, longitudes, offset, 1, count, 1) * EARTH_RADIUS;
+    }
+
+    /**
+     * Returns the area of a closed path of count points on Earth, in square meters.
+     * Points are interleaved latitude, longitude pairs in degrees.
+     */
+    public static double computeArea(double[] latLngs, int offset, int count) {
+        return abs(computeSignedArea(latLngs, offset, count));
+    }
+
+    /**
+     * Returns the area of a closed path of count points on Earth, in square meters.
+     * Latitudes and longitudes are in degrees.
+     */
+    public static double computeArea(double[] latitudes, double[] longitudes,
+                                     int offset, int count) {
+        return abs(computeSignedArea(latitudes, longitudes, offset, count));
+    }
+
+    /**
+     * Returns the signed area of a closed path of count points on Earth, in square meters,
+     * see {@link #computeSignedArea(List)}. Points are interleaved latitude, longitude pairs
+     * in degrees, starting from the point offset.
+     */
+    public static double computeSignedArea(double[] latLngs, int offset, int count) {
+        checkRange(latLngs.length, 2 * offset, count, 2);
+        return signedAreaRadians(latLngs, 2 * offset, latLngs, 2 * offset + 1, 2, count,
+                DEGREES_TO_RADIANS) * (EARTH_RADIUS * EARTH_RADIUS);
+    }
+
+    /**
+     * Returns the signed area of a closed path of count points on Earth, in square meters,
+     * see {@link #computeSignedArea(List)}. Latitudes and longitudes are in degrees, starting
+     * from the index offset.
+     */
+    public static double computeSignedArea(double[] latitudes, double[] longitudes,
+                                           int offset, int count) {
+        checkRange(latitudes.length, offset, count, 1);
+        checkRange(longitudes.length, offset, count, 1);
+        return signedAreaRadians(latitudes, offset, longitudes, offset, 1, count,
+                DEGREES_TO_RADIANS) * (EARTH_RADIUS * EARTH_RADIUS);
+    }
+
+    /**
+     * Same as {@link #computeSignedArea(double[], int, int)} for coordinates in radians.
+     */
+    public static double computeSignedAreaRadians(double[] latLngs, int offset, int count) {
+        checkRange(latLngs.length, 2 * offset, count, 2);
+        return signedAreaRadians(latLngs, 2 * offset, latLngs, 2 * offset + 1, 2, count, 1)
+                * (EARTH_RADIUS * EARTH_RADIUS);
+    }
+
+    /**
+     * Same as {@link #computeSignedArea(double[], double[], int, int)} for coordinates
+     * in radians.
+     */
+    public static double computeSignedAreaRadians(double[] latitudes, double[] longitudes,
+                                                  int offset, int count) {
+        checkRange(latitudes.length, offset, count, 1);
+        checkRange(longitudes.length, offset, count, 1);
+        return signedAreaRadians(latitudes, offset, longitudes, offset, 1, count, 1)
+                * (EARTH_RADIUS * EARTH_RADIUS);
+    }
+
+    /**
+     * Returns the length of the path on the unit sphere. Coordinate i is at
+     * array[start + i * stride] multiplied by scale, which converts it to radians.
+     */
+    private static double lengthRadians(double[] lats, int latStart, double[] lngs,
+                                        int lngStart, int stride, int count, double scale) {
+        if (count < 2) {
+            return 0;
+        }
+        double length = 0;
+        double prevLat = lats[latStart] * scale;
+        double prevLng = lngs[lngStart] * scale;
+        for (int i = 1; i < count; i++) {
+            double lat = lats[latStart + i * stride] * scale;
+            double lng = lngs[lngStart + i * stride] * scale;
+            length += distanceRadians(prevLat, prevLng, lat, lng);
+            prevLat = lat;
+            prevLng = lng;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the signed area of the closed path on the unit sphere, coordinates are
+     * addressed like in {@link #lengthRadians}.
+     */
+    private static double signedAreaRadians(double[] lats, int latStart, double[] lngs,
+                                            int lngStart, int stride, int count,
+                                            double scale) {
+        if (count < 3) {
+            return 0;
+        }
+        double total = 0;
+        int last = (count - 1) * stride;
+        double prevTanLat = tan((PI / 2 - lats[latStart + last] * scale) / 2);
+        double prevLng = lngs[lngStart + last] * scale;
+        for (int i = 0; i < count; i++) {
+            double tanLat = tan((PI / 2 - lats[latStart + i * stride] * scale) / 2);
+            double lng = lngs[lngStart + i * stride] * scale;
+            total += polarTriangleArea(tanLat, lng, prevTanLat, prevLng);
+            prevTanLat = tanLat;
+            prevLng = lng;
+        }
+        return total;
+    }
+
+    /**
+     * Checks that count values with the given stride starting at start fit into the array.
+     */
+    private static void checkRange(int arrayLength, int start, int count, int stride) {
+        if (start < 0 || count < 0 || (long) start + (long) count * stride > arrayLength) {
+            throw new IndexOutOfBoundsException("start " + start + ", count " + count +
+                    ", stride " + stride + ", array length " + arrayLength);
+        }
+    }
+
+    /**
+     * Returns the signed area of a triangle which has North Pole as a vertex.
+     * Formula derived from "Area of a spherical triangle given two edges and the included angle"
+     * as per "Spherical Trigonometry" by Todhunter, page 71, section 103, point 2.
+     * See http://books.google.com/books?id=3uBHAAAAIAAJ&pg=PA71
+     * The arguments named "tan" are tan((pi/2 - latitude)/2).
+     */
+    private static double polarTriangleArea(double tan1, double lng1, double tan2, double lng2) {
+        double deltaLng = lng1 - lng2;
+        double t = tan1 * tan2;
+        return 2 * atan2(t * sin(deltaLng), 1 + t * cos(deltaLng));
+    }
+
+    /**
+     * Wraps the given value into the inclusive-exclusive interval between min and max.
+     * @param n   The value to wrap.
+     * @param min The minimum.
+     * @param max The maximum.
+     */
+    static double wrap(double n, double min, double max) {
+        return (n >= min && n < max) ? n : (mod(n - min, max - min) + min);
+    }
+
+    /**
+     * Returns the non-negative remainder of x / m.
+     * @param x The operand.
+     * @param m The modulus.
+     */
+    static double mod(double x, double m) {
+        return ((x % m) + m) % m;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.ashaevy.geofence.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test binary geofence format.
+ */
+
+public class GeofenceCodecTest {
+
+    @Test
+    public void encode_roundTrip() throws IOException {
+        GeofenceData first = new GeofenceData();
+        first.setId("office");
+        first.setLatitude(50.4501);
+        first.setLongitude(30.5234);
+        first.setRadius(7000);
+        first.setWifiName("wifi \u0433\u043e\u0441\u0442\u0438");
+        GeofenceData second = new GeofenceData();
+        second.setLatitude(-1.5);
+        second.setLongitude(-179.9);
+        second.setRadius(25.5);
+
+        byte[] data = GeofenceCodec.encode(Arrays.asList(first, second));
+        List<GeofenceData> decoded = GeofenceCodec.decodeAll(data);
+
+        assertTrue(GeofenceCodec.isEncoded(data));
+        assertEquals(2, decoded.size());
+        assertGeofenceEquals(first, decoded.get(0));
+        assertGeofenceEquals(second, decoded.get(1));
+        assertNull(decoded.get(1).getId());
+        assertNull(decoded.get(1).getWifiName());
+    }
+
+    @Test
+    public void decoder_streamsRecords() throws IOException {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId("1");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeofenceCodec.Encoder encoder = new GeofenceCodec.Encoder(out);
+        encoder.write(geofence);
+        encoder.write(geofence);
+        encoder.flush();
+
+        GeofenceCodec.Decoder decoder = new GeofenceCodec.Decoder(
+                new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("1", decoder.read().getId());
+        assertEquals("1", decoder.read().getId());
+        assertNull(decoder.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_legacyJsonRejected() throws IOException {
+        byte[] json = "{\"latitude\":1.0}".getBytes("UTF-8");
+
+        assertFalse(GeofenceCodec.isEncoded(json));
+        GeofenceCodec.decode(json);
+    }
+
+    @Test
+    public void encode_polygonRoundTrip() throws IOException {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId("site");
+        geofence.setVertices(new double[]{50, 30, 50, 30.01, 50.01, 30.01});
+
+        GeofenceData decoded = GeofenceCodec.decode(GeofenceCodec.encode(geofence));
+
+        assertGeofenceEquals(geofence, decoded);
+    }
+
+    @Test
+    public void encode_corridorRoundTrip() throws IOException {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId("route");
+        geofence.setRoute(new double[]{50, 30, 50.01, 30.02, 50.03, 30.02});
+        geofence.setRouteDistance(75);
+
+        GeofenceData decoded = GeofenceCodec.decode(GeofenceCodec.encode(geofence));
+
+        assertGeofenceEquals(geofence, decoded);
+        assertNull(decoded.getVertices());
+    }
+
+    @Test
+    public void encode_wifiNetworksRoundTrip() throws IOException {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId("office");
+        geofence.setWifiName("office");
+        geofence.setWifiSsids(new String[]{"office-guest", ""});
+        geofence.setWifiBssids(new String[]{"00:11:22:33:44:55"});
+
+        GeofenceData decoded = GeofenceCodec.decode(GeofenceCodec.encode(geofence));
+
+        assertGeofenceEquals(geofence, decoded);
+    }
+
+    @Test
+    public void decode_readsVersionWithoutPolygons() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('G');
+        out.writeByte('F');
+        out.writeByte(1);
+        out.writeByte(0);
+        out.writeDouble(50);
+        out.writeDouble(30);
+        out.writeDouble(100);
+
+        GeofenceData decoded = GeofenceCodec.decode(bytes.toByteArray());
+
+        assertEquals(100.0, decoded.getRadius());
+        assertNull(decoded.getVertices());
+    }
+
+    @Test
+    public void encodePoints_roundTrip() throws IOException {
+        double[] latLngs = {50, 30, 50.01, 30.02, 50.03, 30.02};
+
+        assertTrue(Arrays.equals(latLngs,
+                GeofenceCodec.decodePoints(GeofenceCodec.encodePoints(latLngs))));
+        assertEquals(0, GeofenceCodec.decodePoints(
+                GeofenceCodec.encodePoints(new double[0])).length);
+    }
+
+    @Test
+    public void encodeStrings_roundTrip() throws IOException {
+        String[] strings = {"office-guest", "", "00:11:22:33:44:55"};
+
+        assertTrue(Arrays.equals(strings,
+                GeofenceCodec.decodeStrings(GeofenceCodec.encodeStrings(strings))));
+    }
+
+    @Test(expected = IOException.class)
+    public void decodePoints_rejectsTrailingData() throws IOException {
+        byte[] data = GeofenceCodec.encodePoints(new double[]{50, 30});
+
+        GeofenceCodec.decodePoints(Arrays.copyOf(data, data.length + 8));
+    }
+
+    private static void assertGeofenceEquals(GeofenceData expected, GeofenceData actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getLatitude(), actual.getLatitude());
+        assertEquals(expected.getLongitude(), actual.getLongitude());
+        assertEquals(expected.getRadius(), actual.getRadius());
+        assertEquals(expected.getWifiName(), actual.getWifiName());
+        assertTrue(Arrays.equals(expected.getVertices(), actual.getVertices()));
+        assertTrue(Arrays.equals(expected.getRoute(), actual.getRoute()));
+        assertEquals(expected.getRouteDistance(), actual.getRouteDistance());
+        assertTrue(Arrays.equals(expected.getWifiSsids(), actual.getWifiSsids()));
+        assertTrue(Arrays.equals(expected.getWifiBssids(), actual.getWifiBssids()));
+    }
+}
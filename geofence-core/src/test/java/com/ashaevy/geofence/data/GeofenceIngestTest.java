@@ -0,0 +1,82 @@
+package com.ashaevy.geofence.data;
+
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.GeoPolygon;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test simplification of geofences at ingest.
+ */
+
+public class GeofenceIngestTest {
+
+    @Test
+    public void ingest_removesVerticesWithinTolerance() {
+        // 1 km square with 100 vertices per side, jittered by up to 1 m.
+        Random random = new Random(5);
+        GeoPoint corner = new GeoPoint(50.45, 30.52);
+        double[] vertices = new double[2 * 400];
+        double[] headings = {90, 0, 270, 180};
+        GeoPoint point = corner;
+        for (int side = 0; side < 4; side++) {
+            for (int i = 0; i < 100; i++) {
+                GeoPoint jittered = SphericalUtil.computeOffset(point, random.nextDouble(),
+                        random.nextDouble() * 360);
+                vertices[2 * (side * 100 + i)] = jittered.latitude;
+                vertices[2 * (side * 100 + i) + 1] = jittered.longitude;
+                point = SphericalUtil.computeOffset(point, 10, headings[side]);
+            }
+        }
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId("square");
+        geofence.setVertices(vertices);
+        GeofenceData circle = new GeofenceData();
+        circle.setId("circle");
+        circle.setRadius(100);
+
+        GeofenceIngest.Result result = new GeofenceIngest(2).ingest(
+                Arrays.asList(geofence, circle));
+
+        assertEquals(1, result.polygonCount);
+        assertEquals(400, result.originalVertexCount);
+        assertTrue(result.simplifiedVertexCount >= 4 && result.simplifiedVertexCount <= 8);
+        assertTrue(result.getVertexReduction() > 0.95);
+        assertTrue(result.maxRelativeAreaError < 0.01);
+        GeofenceData simplified = result.geofences.get(0);
+        GeoPolygon polygon = new GeoPolygon(simplified.getVertices());
+        assertEquals(result.simplifiedVertexCount, polygon.getVertexCount());
+        assertTrue(simplified.getRadius() > 700);
+        assertNull(result.geofences.get(1).getVertices());
+        assertEquals(100.0, result.geofences.get(1).getRadius());
+        // Input is not modified.
+        assertEquals(800, geofence.getVertices().length);
+    }
+
+    @Test
+    public void ingest_zeroToleranceKeepsVertices() {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setVertices(new double[]{50, 30, 50, 30.005, 50, 30.01, 50.01, 30.01});
+
+        GeofenceIngest.Result result = new GeofenceIngest(0).ingest(Arrays.asList(geofence));
+
+        assertEquals(4, result.simplifiedVertexCount);
+        assertEquals(0.0, result.maxAreaError);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ingest_rejectsInvalidPolygon() {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setVertices(new double[]{0, 0, 1, 1, 1, 0, 0, 1});
+
+        new GeofenceIngest(1).ingest(Arrays.asList(geofence));
+    }
+}
@@ -0,0 +1,157 @@
+package com.ashaevy.geofence.data.source;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.transition.GeofenceTransitions;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test read-through cache of geofence data.
+ */
+
+public class CachingGeofenceDataSourceTest {
+
+    private InMemoryGeofenceDataSource mSource;
+    private CachingGeofenceDataSource mCache;
+
+    @Before
+    public void setUp() {
+        mSource = new InMemoryGeofenceDataSource();
+        mSource.geofenceData = geofence(null, 50.0, 30.0, 100);
+        mSource.geofenceAdded = true;
+        mSource.transition = GeofenceTransitions.TRANSITION_EXIT;
+        mSource.geofences.put("a", geofence("a", 51.0, 31.0, 200));
+        mCache = new CachingGeofenceDataSource(mSource);
+    }
+
+    @Test
+    public void read_goesToSourceOnce() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(50.0, mCache.readGeofenceData().getLatitude());
+            assertTrue(mCache.geofenceAdded());
+            assertEquals(GeofenceTransitions.TRANSITION_EXIT, mCache.readGeofenceTransition());
+            assertEquals(200.0, mCache.readGeofence("a").getRadius());
+        }
+
+        assertEquals(4, mSource.readCount);
+    }
+
+    @Test
+    public void readGeofence_missingIsNotCached() {
+        assertNull(mCache.readGeofence("b"));
+        mSource.geofences.put("b", geofence("b", 52.0, 32.0, 300));
+
+        assertEquals(300.0, mCache.readGeofence("b").getRadius());
+    }
+
+    @Test
+    public void write_updatesCache() {
+        mCache.saveGeofenceData(geofence(null, 49.0, 29.0, 150));
+        mCache.saveGeofenceAdded(false);
+        mCache.saveGeofenceTransition(GeofenceTransitions.TRANSITION_ENTER);
+        mCache.saveGeofences(Collections.singletonList(geofence("a", 51.0, 31.0, 250)));
+        int readCount = mSource.readCount;
+
+        assertEquals(49.0, mCache.readGeofenceData().getLatitude());
+        assertFalse(mCache.geofenceAdded());
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, mCache.readGeofenceTransition());
+        assertEquals(250.0, mCache.readGeofence("a").getRadius());
+        assertEquals(readCount, mSource.readCount);
+        assertEquals(4, mSource.writeCount);
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, mSource.transition);
+    }
+
+    @Test
+    public void deleteGeofences_removesFromCache() {
+        mCache.readGeofence("a");
+
+        mCache.deleteGeofences(Collections.singletonList("a"));
+
+        assertNull(mCache.readGeofence("a"));
+    }
+
+    @Test
+    public void invalidate_forcesReread() {
+        mCache.readGeofenceData();
+        mCache.geofenceAdded();
+        mCache.readGeofenceTransition();
+        mCache.readGeofence("a");
+
+        // Changes made bypassing the cache.
+        mSource.geofenceData = geofence(null, 48.0, 28.0, 100);
+        mSource.geofenceAdded = false;
+        mSource.transition = GeofenceTransitions.TRANSITION_ENTER;
+        mSource.geofences.put("a", geofence("a", 51.0, 31.0, 400));
+
+        mCache.invalidateGeofenceData();
+        assertEquals(48.0, mCache.readGeofenceData().getLatitude());
+        assertTrue(mCache.geofenceAdded());
+        mCache.invalidateGeofenceAdded();
+        assertFalse(mCache.geofenceAdded());
+        assertEquals(GeofenceTransitions.TRANSITION_EXIT, mCache.readGeofenceTransition());
+        mCache.invalidateGeofenceTransition();
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, mCache.readGeofenceTransition());
+        assertEquals(200.0, mCache.readGeofence("a").getRadius());
+        mCache.invalidateGeofences();
+        assertEquals(400.0, mCache.readGeofence("a").getRadius());
+    }
+
+    @Test
+    public void invalidateAll_forcesRereadOfEverything() {
+        mCache.readGeofenceData();
+        mCache.geofenceAdded();
+        mCache.readGeofenceTransition();
+        mCache.readGeofence("a");
+        int readCount = mSource.readCount;
+
+        mCache.invalidateAll();
+        mCache.readGeofenceData();
+        mCache.geofenceAdded();
+        mCache.readGeofenceTransition();
+        mCache.readGeofence("a");
+
+        assertEquals(readCount + 4, mSource.readCount);
+    }
+
+    @Test
+    public void returnedGeofences_areCopies() {
+        GeofenceData geofenceData = mCache.readGeofenceData();
+        geofenceData.setRadius(1);
+        GeofenceData geofence = mCache.readGeofence("a");
+        geofence.setRadius(1);
+
+        assertEquals(100.0, mCache.readGeofenceData().getRadius());
+        assertEquals(200.0, mCache.readGeofence("a").getRadius());
+    }
+
+    @Test
+    public void savedGeofences_areCopied() {
+        GeofenceData geofenceData = geofence(null, 49.0, 29.0, 150);
+        mCache.saveGeofenceData(geofenceData);
+        geofenceData.setRadius(1);
+        GeofenceData geofence = geofence("c", 53.0, 33.0, 350);
+        mCache.saveGeofences(Collections.singletonList(geofence));
+        geofence.setRadius(1);
+
+        assertEquals(150.0, mCache.readGeofenceData().getRadius());
+        assertEquals(350.0, mCache.readGeofence("c").getRadius());
+    }
+
+    private static GeofenceData geofence(String id, double latitude, double longitude,
+                                         double radius) {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId(id);
+        geofence.setLatitude(latitude);
+        geofence.setLongitude(longitude);
+        geofence.setRadius(radius);
+        return geofence;
+    }
+}
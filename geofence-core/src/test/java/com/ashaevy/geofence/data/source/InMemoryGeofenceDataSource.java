@@ -0,0 +1,108 @@
+package com.ashaevy.geofence.data.source;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.index.WifiIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data source for tests. Stores data in memory and counts writes.
+ */
+class InMemoryGeofenceDataSource implements GeofenceDataSource {
+
+    GeofenceData geofenceData;
+    boolean geofenceAdded;
+    int transition = -1;
+    final Map<String, GeofenceData> geofences = new LinkedHashMap<>();
+
+    int writeCount;
+    int readCount;
+
+    @Override
+    public void saveGeofenceData(GeofenceData geofenceData) {
+        writeCount++;
+        this.geofenceData = geofenceData;
+    }
+
+    @Override
+    public GeofenceData readGeofenceData() {
+        readCount++;
+        return geofenceData;
+    }
+
+    @Override
+    public boolean geofenceAdded() {
+        readCount++;
+        return geofenceAdded;
+    }
+
+    @Override
+    public void saveGeofenceAdded(boolean geofenceAdded) {
+        writeCount++;
+        this.geofenceAdded = geofenceAdded;
+    }
+
+    @Override
+    public void saveGeofenceTransition(int transition) {
+        writeCount++;
+        this.transition = transition;
+    }
+
+    @Override
+    public int readGeofenceTransition() {
+        readCount++;
+        return transition;
+    }
+
+    @Override
+    public void saveGeofences(Collection<GeofenceData> geofences) {
+        writeCount++;
+        for (GeofenceData geofence : geofences) {
+            this.geofences.put(geofence.getId(), geofence);
+        }
+    }
+
+    @Override
+    public void deleteGeofences(Collection<String> ids) {
+        writeCount++;
+        geofences.keySet().removeAll(ids);
+    }
+
+    @Override
+    public GeofenceData readGeofence(String id) {
+        readCount++;
+        return geofences.get(id);
+    }
+
+    @Override
+    public List<GeofenceData> readGeofencesNear(double latitude, double longitude,
+                                                double distance) {
+        readCount++;
+        return new ArrayList<>(geofences.values());
+    }
+
+    @Override
+    public List<GeofenceData> readGeofencesOnWifi(String ssid, String bssid) {
+        readCount++;
+        List<GeofenceData> result = new ArrayList<>();
+        for (GeofenceData geofence : geofences.values()) {
+            if (WifiIndex.matches(geofence, ssid, bssid)) {
+                result.add(geofence);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int geofenceCount() {
+        return geofences.size();
+    }
+
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,108 @@
+package com.ashaevy.geofence.data.source;
+
+import com.ashaevy.geofence.transition.GeofenceTransitions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test delayed writes of geofence state.
+ */
+
+public class WriteBehindGeofenceDataSourceTest {
+
+    private InMemoryGeofenceDataSource mSource;
+    private ScheduledExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mSource = new InMemoryGeofenceDataSource();
+        mSource.transition = GeofenceTransitions.TRANSITION_EXIT;
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void saveGeofenceTransition_unchangedValueDropped() {
+        WriteBehindGeofenceDataSource dataSource = new WriteBehindGeofenceDataSource(mSource,
+                mExecutor, 0);
+
+        for (int i = 0; i < 10; i++) {
+            dataSource.saveGeofenceTransition(GeofenceTransitions.TRANSITION_EXIT);
+        }
+
+        assertEquals(0, mSource.writeCount);
+        assertEquals(10, dataSource.getDroppedWriteCount());
+    }
+
+    @Test
+    public void saveGeofenceTransition_burstCoalescedUntilFlush() {
+        WriteBehindGeofenceDataSource dataSource = new WriteBehindGeofenceDataSource(mSource,
+                mExecutor, 60 * 60 * 1000);
+
+        dataSource.saveGeofenceTransition(GeofenceTransitions.TRANSITION_ENTER);
+        dataSource.saveGeofenceTransition(GeofenceTransitions.TRANSITION_EXIT);
+        dataSource.saveGeofenceTransition(GeofenceTransitions.TRANSITION_ENTER);
+        dataSource.saveGeofenceAdded(true);
+
+        assertEquals(0, mSource.writeCount);
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, dataSource.readGeofenceTransition());
+        assertTrue(dataSource.geofenceAdded());
+
+        dataSource.flush();
+
+        assertEquals(2, mSource.writeCount);
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, mSource.transition);
+        assertTrue(mSource.geofenceAdded);
+        assertEquals(1, dataSource.getCoalescedWriteCount());
+        assertEquals(2, dataSource.getFlushedWriteCount());
+    }
+
+    @Test
+    public void saveGeofenceTransition_backToStoredValueCancelsWrite() {
+        WriteBehindGeofenceDataSource dataSource = new WriteBehindGeofenceDataSource(mSource,
+                mExecutor, 60 * 60 * 1000);
+
+        dataSource.saveGeofenceTransition(GeofenceTransitions.TRANSITION_ENTER);
+        dataSource.saveGeofenceTransition(GeofenceTransitions.TRANSITION_EXIT);
+        dataSource.flush();
+
+        assertEquals(0, mSource.writeCount);
+    }
+
+    @Test
+    public void invalidateGeofenceTransition_readsChangeBypassingIt() {
+        WriteBehindGeofenceDataSource dataSource = new WriteBehindGeofenceDataSource(mSource,
+                mExecutor, 60 * 60 * 1000);
+        assertEquals(GeofenceTransitions.TRANSITION_EXIT, dataSource.readGeofenceTransition());
+
+        mSource.transition = GeofenceTransitions.TRANSITION_ENTER;
+        dataSource.invalidateGeofenceTransition();
+
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, dataSource.readGeofenceTransition());
+    }
+
+    @Test
+    public void invalidateGeofenceAdded_keepsPendingWrite() {
+        WriteBehindGeofenceDataSource dataSource = new WriteBehindGeofenceDataSource(mSource,
+                mExecutor, 60 * 60 * 1000);
+        dataSource.saveGeofenceAdded(true);
+
+        dataSource.invalidateGeofenceAdded();
+
+        assertTrue(dataSource.geofenceAdded());
+        dataSource.flush();
+        assertTrue(mSource.geofenceAdded);
+    }
+}
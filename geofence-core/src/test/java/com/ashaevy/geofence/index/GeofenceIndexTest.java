@@ -0,0 +1,82 @@
+package com.ashaevy.geofence.index;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.GeoPolygon;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test R-tree containment against the full scan.
+ */
+
+public class GeofenceIndexTest {
+
+    @Test
+    public void findContaining_sameAsFullScan() {
+        Random random = new Random(42);
+        List<GeofenceData> geofences = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            GeofenceData geofence = new GeofenceData();
+            geofence.setId("fence" + i);
+            geofence.setLatitude(50 + random.nextDouble());
+            geofence.setLongitude(30 + random.nextDouble());
+            geofence.setRadius(100 + random.nextDouble() * 5000);
+            geofences.add(geofence);
+        }
+        GeofenceIndex index = new GeofenceIndex(geofences);
+        assertEquals(geofences.size(), index.size());
+
+        for (int i = 0; i < 200; i++) {
+            double latitude = 50 + random.nextDouble();
+            double longitude = 30 + random.nextDouble();
+            Set<GeofenceData> expected = new HashSet<>();
+            for (GeofenceData geofence : geofences) {
+                if (SphericalUtil.computeDistanceBetween(new GeoPoint(latitude, longitude),
+                        new GeoPoint(geofence.getLatitude(), geofence.getLongitude())) <=
+                        geofence.getRadius()) {
+                    expected.add(geofence);
+                }
+            }
+            List<GeofenceData> found = index.findContaining(latitude, longitude);
+            assertEquals(expected.size(), found.size());
+            assertTrue(expected.containsAll(found));
+        }
+    }
+
+    @Test
+    public void findContaining_polygon() {
+        GeofenceData polygon = new GeofenceData();
+        polygon.setId("polygon");
+        polygon.setPolygon(new GeoPolygon(new double[]{
+                50.00, 30.00, 50.00, 30.02, 50.01, 30.02,
+                50.01, 30.01, 50.02, 30.01, 50.02, 30.00}));
+        GeofenceData circle = new GeofenceData();
+        circle.setId("circle");
+        circle.setLatitude(50.015);
+        circle.setLongitude(30.015);
+        circle.setRadius(100);
+        GeofenceIndex index = new GeofenceIndex(Arrays.asList(polygon, circle));
+
+        assertEquals(Arrays.asList(polygon), index.findContaining(50.005, 30.015));
+        assertEquals(Arrays.asList(circle), index.findContaining(50.015, 30.015));
+    }
+
+    @Test
+    public void findContaining_emptyIndex() {
+        GeofenceIndex index = new GeofenceIndex(new ArrayList<GeofenceData>());
+
+        assertTrue(index.findContaining(0, 0).isEmpty());
+    }
+}
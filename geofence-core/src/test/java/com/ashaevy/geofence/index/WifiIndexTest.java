@@ -0,0 +1,78 @@
+package com.ashaevy.geofence.index;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test hash index of WiFi networks against matching every geofence.
+ */
+
+public class WifiIndexTest {
+
+    @Test
+    public void findFenceIds_sameAsMatchingEveryGeofence() {
+        List<GeofenceData> geofences = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            geofences.add(geofence("fence" + i, "site" + (i % 50),
+                    new String[]{"site" + (i % 50) + "-guest"},
+                    new String[]{String.format("00:11:22:33:%02x:%02X", i / 256, i % 256)}));
+        }
+        WifiIndex index = new WifiIndex(geofences);
+
+        String[][] networks = {{"site7", null}, {"site7-guest", "00:11:22:33:01:0a"},
+                {null, "00:11:22:33:03:E7"}, {"unknown", "ff:ff:ff:ff:ff:ff"}, {null, null}};
+        for (String[] network : networks) {
+            Set<String> expected = new HashSet<>();
+            for (GeofenceData geofence : geofences) {
+                if (WifiIndex.matches(geofence, network[0], network[1])) {
+                    expected.add(geofence.getId());
+                }
+            }
+            assertEquals(expected, new HashSet<>(index.findFenceIds(network[0], network[1])));
+        }
+    }
+
+    @Test
+    public void findFenceIds_skipsEmptyNetworksAndGeofencesWithoutId() {
+        GeofenceData withoutId = geofence(null, "home", null, null);
+        GeofenceData empty = geofence("empty", "", new String[]{""}, new String[]{""});
+        WifiIndex index = new WifiIndex(Arrays.asList(withoutId, empty));
+
+        assertEquals(0, index.networkCount());
+        assertTrue(index.findFenceIds("home", null).isEmpty());
+        assertTrue(index.findFenceIds("", "").isEmpty());
+        assertFalse(WifiIndex.matches(empty, "", ""));
+    }
+
+    @Test
+    public void findFenceIds_returnsFenceMatchedTwiceOnce() {
+        WifiIndex index = new WifiIndex(Arrays.asList(
+                geofence("office", "office", null, new String[]{"00:11:22:33:44:55"})));
+
+        Set<String> ids = index.findFenceIds("office", "00:11:22:33:44:55");
+
+        assertEquals(1, ids.size());
+        assertTrue(ids.contains("office"));
+    }
+
+    private static GeofenceData geofence(String id, String wifiName, String[] ssids,
+                                         String[] bssids) {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId(id);
+        geofence.setWifiName(wifiName);
+        geofence.setWifiSsids(ssids);
+        geofence.setWifiBssids(bssids);
+        return geofence;
+    }
+}
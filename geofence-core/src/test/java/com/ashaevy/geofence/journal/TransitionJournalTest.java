@@ -0,0 +1,166 @@
+package com.ashaevy.geofence.journal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test transition journal.
+ */
+
+public class TransitionJournalTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("journal", "");
+        assertTrue(mDirectory.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void append_readsRecordsInOrderAcrossSegments() throws IOException {
+        TransitionJournal journal = new TransitionJournal(mDirectory, 4);
+        for (int i = 0; i < 10; i++) {
+            journal.append(1000 + i, "fence" + (i % 3), 1 + i % 2,
+                    TransitionJournal.SOURCE_LOCATION);
+        }
+        journal.append(2000, null, 2, TransitionJournal.SOURCE_GEOFENCING_API);
+
+        assertEquals(3, journal.segmentCount());
+        TransitionJournal.Reader reader = journal.reader();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(reader.next());
+            assertEquals(1000 + i, reader.getTimestamp());
+            assertEquals("fence" + (i % 3), reader.getFenceId());
+            assertEquals(1 + i % 2, reader.getTransition());
+            assertEquals(TransitionJournal.SOURCE_LOCATION, reader.getSource());
+        }
+        assertTrue(reader.next());
+        assertNull(reader.getFenceId());
+        assertEquals(TransitionJournal.SOURCE_GEOFENCING_API, reader.getSource());
+        assertFalse(reader.next());
+
+        journal.append(3000, "late", 1, TransitionJournal.SOURCE_NETWORK);
+        assertTrue(reader.next());
+        assertEquals("late", reader.getFenceId());
+        journal.close();
+    }
+
+    @Test
+    public void open_continuesAfterLastRecord() throws IOException {
+        TransitionJournal journal = new TransitionJournal(mDirectory, 8);
+        for (int i = 0; i < 5; i++) {
+            journal.append(i + 1, "fence", 1, TransitionJournal.SOURCE_LOCATION);
+        }
+        journal.close();
+
+        journal = new TransitionJournal(mDirectory, 8);
+        journal.append(6, "fence", 2, TransitionJournal.SOURCE_LOCATION);
+
+        assertEquals(6, countRecords(journal));
+        journal.close();
+    }
+
+    @Test
+    public void compact_removesExpiredAndRepeatedRecords() throws IOException {
+        TransitionJournal journal = new TransitionJournal(mDirectory, 4);
+        int[] transitions = {1, 2, 1, 1, 1, 2, 2, 1, 2};
+        for (int i = 0; i < transitions.length; i++) {
+            journal.append(100 + i, "fence", transitions[i], TransitionJournal.SOURCE_LOCATION);
+        }
+        assertEquals(3, journal.segmentCount());
+
+        // Full segments hold 8 records: the first one is expired, 3 repeat the previous one.
+        int removed = journal.compact(101);
+
+        assertEquals(4, removed);
+        assertEquals(2, journal.segmentCount());
+        TransitionJournal.Reader reader = journal.reader();
+        long[] expected = {101, 102, 105, 107, 108};
+        for (long timestamp : expected) {
+            assertTrue(reader.next());
+            assertEquals(timestamp, reader.getTimestamp());
+        }
+        assertFalse(reader.next());
+        journal.close();
+
+        journal = new TransitionJournal(mDirectory, 4);
+        assertEquals(expected.length, countRecords(journal));
+        journal.close();
+    }
+
+    @Test
+    public void open_keepsCompactedSegmentWithoutOriginal() throws IOException {
+        TransitionJournal journal = new TransitionJournal(mDirectory, 2);
+        for (int i = 0; i < 3; i++) {
+            journal.append(i + 1, "fence" + i, 1, TransitionJournal.SOURCE_LOCATION);
+        }
+        journal.close();
+        File first = new File(mDirectory, "transitions-000000000001.seg");
+        File compacted = new File(mDirectory, "transitions-000000000001.compacted");
+        assertTrue(first.renameTo(compacted));
+
+        journal = new TransitionJournal(mDirectory, 2);
+
+        assertEquals(3, countRecords(journal));
+        assertFalse(compacted.exists());
+        journal.close();
+    }
+
+    @Test
+    public void open_dropsCompactedSegmentWithOriginal() throws IOException {
+        TransitionJournal journal = new TransitionJournal(mDirectory, 2);
+        for (int i = 0; i < 3; i++) {
+            journal.append(i + 1, "fence" + i, 1, TransitionJournal.SOURCE_LOCATION);
+        }
+        journal.close();
+        File compacted = new File(mDirectory, "transitions-000000000001.compacted");
+        assertTrue(compacted.createNewFile());
+
+        journal = new TransitionJournal(mDirectory, 2);
+
+        assertEquals(3, countRecords(journal));
+        assertFalse(compacted.exists());
+        journal.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void append_rejectsLongFenceId() throws IOException {
+        TransitionJournal journal = new TransitionJournal(mDirectory, 4);
+        try {
+            journal.append(1, new String(new char[TransitionJournal.MAX_FENCE_ID_BYTES + 1])
+                    .replace('\0', 'x'), 1, TransitionJournal.SOURCE_LOCATION);
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static int countRecords(TransitionJournal journal) {
+        TransitionJournal.Reader reader = journal.reader();
+        int count = 0;
+        while (reader.next()) {
+            count++;
+        }
+        return count;
+    }
+}
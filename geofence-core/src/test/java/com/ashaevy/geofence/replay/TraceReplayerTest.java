@@ -0,0 +1,176 @@
+package com.ashaevy.geofence.replay;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.transition.GeofenceTransitions;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test trace parsing and replay.
+ */
+
+public class TraceReplayerTest {
+
+    private static final String CSV = "time,lat,lon\n" +
+            "1000,50.0,30.0\n" +
+            "2000,50.0,30.0009\n" +
+            "3000,50.0,30.0018\n" +
+            "4000,50.0,30.0100\n";
+
+    private static final String GPX = "<?xml version=\"1.0\"?>\n" +
+            "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\"><trk><trkseg>\n" +
+            "<trkpt lat=\"50.0\" lon=\"30.0100\"><time>1970-01-01T00:00:01Z</time></trkpt>\n" +
+            "<trkpt lat=\"50.0\" lon=\"30.0018\"><ele>100</ele>" +
+            "<time>1970-01-01T02:00:02.5+02:00</time></trkpt>\n" +
+            "</trkseg></trk></gpx>";
+
+    private TraceReplayer mReplayer;
+
+    @Before
+    public void setUp() {
+        // Fences 100 m wide, 0.0018 degrees of longitude is about 129 m at this latitude.
+        mReplayer = new TraceReplayer(Arrays.asList(
+                geofence("a", 50.0, 30.0, 100),
+                geofence("b", 50.0, 30.0018, 100)));
+    }
+
+    @Test
+    public void replay_emitsEnterAndExitTransitions() throws IOException {
+        TraceReplayer.Session session = mReplayer.newSession("csv");
+        TraceParser.parseCsv(new StringReader(CSV), session);
+        ReplayResult result = session.getResult();
+
+        assertEquals(4, result.fixCount);
+        List<ReplayTransition> transitions = result.transitions;
+        assertEquals(4, transitions.size());
+        assertTransition(transitions.get(0), "a", 1000, GeofenceTransitions.TRANSITION_ENTER);
+        assertTransition(transitions.get(1), "b", 2000, GeofenceTransitions.TRANSITION_ENTER);
+        assertTransition(transitions.get(2), "a", 3000, GeofenceTransitions.TRANSITION_EXIT);
+        assertTransition(transitions.get(3), "b", 4000, GeofenceTransitions.TRANSITION_EXIT);
+    }
+
+    @Test
+    public void replay_findsCrossingsBetweenSparseFixes() {
+        // 716 m in 20 s across both fences, neither fix is inside any of them.
+        TraceReplayer replayer = new TraceReplayer(Arrays.asList(
+                geofence("a", 50.0, 30.0, 100),
+                geofence("b", 50.0, 30.0018, 100)), 42, 60 * 1000);
+        TraceReplayer.Session session = replayer.newSession("sparse");
+        session.onFix(0, 50.0, 29.995);
+        session.onFix(20000, 50.0, 30.005);
+        List<ReplayTransition> transitions = session.getResult().transitions;
+
+        assertEquals(4, transitions.size());
+        String[] ids = {"a", "b", "a", "b"};
+        int[] types = {GeofenceTransitions.TRANSITION_ENTER, GeofenceTransitions.TRANSITION_ENTER,
+                GeofenceTransitions.TRANSITION_EXIT, GeofenceTransitions.TRANSITION_EXIT};
+        long lastTime = 0;
+        for (int i = 0; i < transitions.size(); i++) {
+            ReplayTransition transition = transitions.get(i);
+            assertEquals(ids[i], transition.geofenceId);
+            assertEquals(types[i], transition.transition);
+            assertTrue(transition.time > lastTime && transition.time < 20000);
+            lastTime = transition.time;
+        }
+
+        TraceReplayer.Session withoutCrossings = mReplayer.newSession("sparse");
+        withoutCrossings.onFix(0, 50.0, 29.995);
+        withoutCrossings.onFix(20000, 50.0, 30.005);
+        assertEquals(0, withoutCrossings.getResult().transitions.size());
+    }
+
+    @Test
+    public void parseGpx_readsPointsAndTime() throws IOException {
+        final List<Long> times = new ArrayList<>();
+        TraceParser.parseGpx(new ByteArrayInputStream(GPX.getBytes("UTF-8")),
+                new TraceParser.FixHandler() {
+                    @Override
+                    public void onFix(long time, double latitude, double longitude) {
+                        times.add(time);
+                    }
+                });
+
+        assertEquals(Arrays.asList(1000L, 2500L), times);
+    }
+
+    @Test(expected = IOException.class)
+    public void parseGpx_rejectsDoctype() throws IOException {
+        // The entity resolves to a valid time, so only rejecting the DOCTYPE fails the parse.
+        File secret = File.createTempFile("secret", ".txt");
+        try {
+            FileWriter writer = new FileWriter(secret);
+            writer.write("1000");
+            writer.close();
+            String gpx = "<?xml version=\"1.0\"?>\n" +
+                    "<!DOCTYPE gpx [<!ENTITY secret SYSTEM \"" + secret.toURI() + "\">]>\n" +
+                    "<gpx><trk><trkseg><trkpt lat=\"50.0\" lon=\"30.0\">" +
+                    "<time>&secret;</time></trkpt></trkseg></trk></gpx>";
+            TraceParser.parseGpx(new ByteArrayInputStream(gpx.getBytes("UTF-8")),
+                    new TraceParser.FixHandler() {
+                        @Override
+                        public void onFix(long time, double latitude, double longitude) {
+                        }
+                    });
+        } finally {
+            secret.delete();
+        }
+    }
+
+    @Test
+    public void replayAll_keepsOrderOfTraces() throws IOException {
+        List<File> traces = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                File trace = File.createTempFile("trace" + i, i % 2 == 0 ? ".csv" : ".gpx");
+                FileWriter writer = new FileWriter(trace);
+                writer.write(i % 2 == 0 ? CSV : GPX);
+                writer.close();
+                traces.add(trace);
+            }
+
+            ReplayReport report = mReplayer.replayAll(traces);
+
+            assertEquals(5, report.results.size());
+            assertEquals(3 * 4 + 2 * 2, report.fixCount);
+            for (int i = 0; i < traces.size(); i++) {
+                ReplayResult result = report.results.get(i);
+                assertEquals(traces.get(i).getName(), result.traceName);
+                assertEquals(i % 2 == 0 ? 4 : 1, result.transitions.size());
+            }
+        } finally {
+            for (File trace : traces) {
+                trace.delete();
+            }
+        }
+    }
+
+    private static void assertTransition(ReplayTransition transition, String geofenceId,
+                                         long time, int type) {
+        assertEquals(geofenceId, transition.geofenceId);
+        assertEquals(time, transition.time);
+        assertEquals(type, transition.transition);
+    }
+
+    private static GeofenceData geofence(String id, double latitude, double longitude,
+                                         double radius) {
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId(id);
+        geofence.setLatitude(latitude);
+        geofence.setLongitude(longitude);
+        geofence.setRadius(radius);
+        return geofence;
+    }
+}
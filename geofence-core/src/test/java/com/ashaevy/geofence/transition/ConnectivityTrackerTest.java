@@ -0,0 +1,65 @@
+package com.ashaevy.geofence.transition;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test connectivity change filtering.
+ */
+
+public class ConnectivityTrackerTest {
+
+    private static final int WIFI = 1;
+    private static final int MOBILE = 0;
+
+    private final ConnectivityTracker mTracker = new ConnectivityTracker(1000);
+
+    @Test
+    public void onEvent_forwardsChangeAfterWindow() {
+        assertEquals(1000, mTracker.onEvent(0, WIFI, "home"));
+        assertFalse(mTracker.settle(999));
+        assertTrue(mTracker.settle(1000));
+        assertFalse(mTracker.settle(1000));
+
+        assertEquals(6000, mTracker.onEvent(5000, WIFI, "office"));
+        assertTrue(mTracker.settle(6000));
+
+        assertEquals(2, mTracker.getForwardedCount());
+        assertEquals(0, mTracker.getSuppressedCount());
+    }
+
+    @Test
+    public void onEvent_suppressesDuplicates() {
+        mTracker.onEvent(0, WIFI, "home");
+        assertEquals(1000, mTracker.onEvent(10, WIFI, "home"));
+        assertTrue(mTracker.settle(1000));
+        assertEquals(-1, mTracker.onEvent(2000, WIFI, "home"));
+        assertEquals(-1, mTracker.onEvent(3000, WIFI, "home"));
+
+        assertEquals(1, mTracker.getForwardedCount());
+        assertEquals(3, mTracker.getDuplicateCount());
+    }
+
+    @Test
+    public void onEvent_suppressesFlapping() {
+        mTracker.onEvent(0, WIFI, "home");
+        mTracker.settle(1000);
+
+        // WiFi drops to mobile and comes back within the window.
+        assertEquals(3000, mTracker.onEvent(2000, MOBILE, null));
+        assertEquals(-1, mTracker.onEvent(2500, WIFI, "home"));
+        assertFalse(mTracker.settle(3000));
+
+        // Disconnected, then mobile: only the last state is forwarded.
+        mTracker.onEvent(4000, ConnectivityTracker.TYPE_NONE, null);
+        assertEquals(5200, mTracker.onEvent(4200, MOBILE, null));
+        assertFalse(mTracker.settle(5000));
+        assertTrue(mTracker.settle(5200));
+
+        assertEquals(2, mTracker.getForwardedCount());
+        assertEquals(2, mTracker.getFlapCount());
+    }
+}
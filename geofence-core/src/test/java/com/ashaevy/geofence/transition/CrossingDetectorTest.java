@@ -0,0 +1,124 @@
+package com.ashaevy.geofence.transition;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.GeoPolygon;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Test detection of geofence crossings between fixes.
+ */
+
+public class CrossingDetectorTest {
+
+    private final CrossingDetector mDetector =
+            new CrossingDetector(new GeofenceEvaluator(), 70, 30 * 60 * 1000);
+
+    @Test
+    public void find_passThroughCircle() {
+        GeofenceData circle = circle(50.0, 30.0, 1000);
+        GeoPoint center = new GeoPoint(50.0, 30.0);
+        GeoPoint from = SphericalUtil.computeOffset(center, 3000, 270);
+        GeoPoint to = SphericalUtil.computeOffset(center, 3000, 90);
+
+        // 6 km in 100 s, inside from 2 km to 4 km.
+        assertEquals(2, mDetector.find(circle, 0, from.latitude, from.longitude,
+                100000, to.latitude, to.longitude));
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, mDetector.getTransition(0));
+        assertEquals(33333, mDetector.getTime(0), 10);
+        assertEquals(GeofenceTransitions.TRANSITION_EXIT, mDetector.getTransition(1));
+        assertEquals(66667, mDetector.getTime(1), 10);
+    }
+
+    @Test
+    public void find_missesCircle() {
+        GeofenceData circle = circle(50.0, 30.0, 1000);
+        GeoPoint center = new GeoPoint(50.0, 30.0);
+        GeoPoint side = SphericalUtil.computeOffset(center, 1200, 0);
+        GeoPoint from = SphericalUtil.computeOffset(side, 3000, 270);
+        GeoPoint to = SphericalUtil.computeOffset(side, 3000, 90);
+
+        assertEquals(0, mDetector.find(circle, 0, from.latitude, from.longitude,
+                100000, to.latitude, to.longitude));
+    }
+
+    @Test
+    public void find_exitFromInside() {
+        GeofenceData circle = circle(50.0, 30.0, 1000);
+        GeoPoint center = new GeoPoint(50.0, 30.0);
+        GeoPoint to = SphericalUtil.computeOffset(center, 3000, 45);
+
+        assertEquals(1, mDetector.find(circle, 0, 50.0, 30.0, 90000, to.latitude,
+                to.longitude));
+        assertEquals(GeofenceTransitions.TRANSITION_EXIT, mDetector.getTransition(0));
+        assertEquals(30000, mDetector.getTime(0), 10);
+    }
+
+    @Test
+    public void find_ignoresJumpsAndGaps() {
+        GeofenceData circle = circle(50.0, 30.0, 1000);
+
+        // 22 km in 100 s is too fast.
+        assertEquals(0, mDetector.find(circle, 0, 49.9, 30.0, 100000, 50.1, 30.0));
+        // An hour apart, the device may have taken any way.
+        assertEquals(0, mDetector.find(circle, 0, 49.9, 30.0, 60 * 60 * 1000, 50.1, 30.0));
+    }
+
+    @Test
+    public void find_crossesPolygonArm() {
+        // L shaped site: the path crosses the lower arm, then the inner corner outside.
+        GeofenceData polygon = new GeofenceData();
+        polygon.setPolygon(new GeoPolygon(new double[]{
+                50.00, 30.00, 50.00, 30.02, 50.01, 30.02,
+                50.01, 30.01, 50.02, 30.01, 50.02, 30.00}));
+
+        assertEquals(2, mDetector.find(polygon, 0, 49.995, 30.015, 200000, 50.015, 30.015));
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, mDetector.getTransition(0));
+        assertEquals(50000, mDetector.getTime(0), 100);
+        assertEquals(GeofenceTransitions.TRANSITION_EXIT, mDetector.getTransition(1));
+        assertEquals(150000, mDetector.getTime(1), 100);
+    }
+
+    @Test
+    public void batchEvaluator_reportsMissedPair() {
+        FixBatchEvaluator batchEvaluator = new FixBatchEvaluator(new GeofenceEvaluator(), 0);
+        batchEvaluator.setCrossingDetector(mDetector);
+        final List<long[]> transitions = new ArrayList<>();
+        GeoPoint center = new GeoPoint(50.0, 30.0);
+        GeoPoint from = SphericalUtil.computeOffset(center, 3000, 270);
+        GeoPoint to = SphericalUtil.computeOffset(center, 3000, 90);
+        batchEvaluator.add(0, from.latitude, from.longitude);
+        batchEvaluator.add(100000, to.latitude, to.longitude);
+
+        int transition = batchEvaluator.evaluate(circle(50.0, 30.0, 1000),
+                GeofenceTransitions.TRANSITION_EXIT,
+                new FixBatchEvaluator.TransitionListener() {
+                    @Override
+                    public void onTransition(long time, int transition) {
+                        transitions.add(new long[]{time, transition});
+                    }
+                });
+
+        assertEquals(GeofenceTransitions.TRANSITION_EXIT, transition);
+        assertEquals(2, transitions.size());
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, transitions.get(0)[1]);
+        assertEquals(GeofenceTransitions.TRANSITION_EXIT, transitions.get(1)[1]);
+        assertEquals(2, batchEvaluator.getCrossingCount());
+        assertEquals(0, batchEvaluator.getNetTransitionCount());
+    }
+
+    private static GeofenceData circle(double latitude, double longitude, double radius) {
+        GeofenceData geofenceData = new GeofenceData();
+        geofenceData.setLatitude(latitude);
+        geofenceData.setLongitude(longitude);
+        geofenceData.setRadius(radius);
+        return geofenceData;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ashaevy.geofence.transition;
+
+import com.ashaevy.geofence.data.GeofenceData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Test batched evaluation of location fixes.
+ */
+
+public class FixBatchEvaluatorTest {
+
+    private final FixBatchEvaluator mBatchEvaluator =
+            new FixBatchEvaluator(new GeofenceEvaluator(), 0);
+    private final List<long[]> mTransitions = new ArrayList<>();
+    private final FixBatchEvaluator.TransitionListener mListener =
+            new FixBatchEvaluator.TransitionListener() {
+                @Override
+                public void onTransition(long time, int transition) {
+                    mTransitions.add(new long[]{time, transition});
+                }
+            };
+
+    @Test
+    public void evaluate_sortsFixesAndReportsNetTransition() {
+        GeofenceData geofenceData = geofence();
+        // Enters at 2000 and exits at 3000, delivered out of order.
+        mBatchEvaluator.add(3000, 50.1, 30.0);
+        mBatchEvaluator.add(1000, 50.1, 30.0);
+        mBatchEvaluator.add(2000, 50.0, 30.0);
+
+        int transition = mBatchEvaluator.evaluate(geofenceData,
+                GeofenceTransitions.TRANSITION_EXIT, mListener);
+
+        assertEquals(GeofenceTransitions.TRANSITION_EXIT, transition);
+        assertEquals(2, mTransitions.size());
+        assertEquals(2000, mTransitions.get(0)[0]);
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, mTransitions.get(0)[1]);
+        assertEquals(3000, mTransitions.get(1)[0]);
+        assertEquals(0, mBatchEvaluator.getNetTransitionCount());
+    }
+
+    @Test
+    public void counters_showSavedWakeupsAndBroadcasts() {
+        GeofenceData geofenceData = geofence();
+        for (int batch = 0; batch < 4; batch++) {
+            for (int i = 0; i < 6; i++) {
+                double latitude = batch == 3 ? 50.0 : 50.1;
+                mBatchEvaluator.add(batch * 60000 + i * 10000, latitude, 30.0);
+            }
+            mBatchEvaluator.evaluate(geofenceData, GeofenceTransitions.TRANSITION_EXIT, null);
+        }
+
+        assertEquals(24, mBatchEvaluator.getFixCount());
+        assertEquals(4, mBatchEvaluator.getBatchCount());
+        assertEquals(1, mBatchEvaluator.getNetTransitionCount());
+        assertEquals(20, mBatchEvaluator.getWakeupsSaved());
+        assertEquals(23, mBatchEvaluator.getBroadcastsSaved());
+        // Four minutes of fixes.
+        assertEquals(300.0, mBatchEvaluator.getWakeupsSavedPerHour(240000), 1e-9);
+        assertEquals(0.0, mBatchEvaluator.getWakeupsSavedPerHour(0));
+    }
+
+    @Test
+    public void evaluate_emptyBatchKeepsTransition() {
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, mBatchEvaluator.evaluate(geofence(),
+                GeofenceTransitions.TRANSITION_ENTER, mListener));
+        assertEquals(0, mBatchEvaluator.getBatchCount());
+    }
+
+    private static GeofenceData geofence() {
+        GeofenceData geofenceData = new GeofenceData();
+        geofenceData.setLatitude(50.0);
+        geofenceData.setLongitude(30.0);
+        geofenceData.setRadius(1000);
+        return geofenceData;
+    }
+}
@@ -0,0 +1,203 @@
+package com.ashaevy.geofence.transition;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.utils.EllipsoidalUtil;
+import com.ashaevy.geofence.utils.GeoCorridor;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.GeoPolygon;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test platform independent geofence logic.
+ */
+
+public class GeofenceEvaluatorTest {
+
+    private GeofenceEvaluator mGeofenceEvaluator = new GeofenceEvaluator();
+
+    @Test
+    public void transitionState_insideGeofence() {
+        GeofenceData geofenceData = new GeofenceData();
+        geofenceData.setWifiName("some_ssid");
+
+        int state = mGeofenceEvaluator.transitionState(geofenceData,
+                GeofenceTransitions.TRANSITION_ENTER, "another_ssid");
+
+        assertEquals(GeofenceTransitions.STATE_INSIDE, state);
+    }
+
+    @Test
+    public void transitionState_sameWiFi() {
+        GeofenceData geofenceData = new GeofenceData();
+        geofenceData.setWifiName("same_ssid");
+
+        int state = mGeofenceEvaluator.transitionState(geofenceData,
+                GeofenceTransitions.TRANSITION_EXIT, "same_ssid");
+
+        assertEquals(GeofenceTransitions.STATE_INSIDE, state);
+    }
+
+    @Test
+    public void transitionState_outside() {
+        GeofenceData geofenceData = new GeofenceData();
+        geofenceData.setWifiName("some_ssid");
+
+        int state = mGeofenceEvaluator.transitionState(geofenceData,
+                GeofenceTransitions.TRANSITION_EXIT, "another_ssid");
+
+        assertEquals(GeofenceTransitions.STATE_OUTSIDE, state);
+    }
+
+    @Test
+    public void transitionState_noGeofence() {
+        int state = mGeofenceEvaluator.transitionState(null,
+                GeofenceTransitions.TRANSITION_ENTER, null);
+
+        assertEquals(GeofenceTransitions.STATE_UNKNOWN, state);
+    }
+
+    @Test
+    public void coordinatesTransition_entered() {
+        GeofenceData geofenceData = new GeofenceData();
+        // dx = dy = 111 km
+        geofenceData.setLatitude(0.0d);
+        geofenceData.setLongitude(2.0d);
+        // 200 km
+        geofenceData.setRadius(200000d);
+
+        int transition = mGeofenceEvaluator.coordinatesTransition(geofenceData, 1.0d, 1.0d);
+
+        assertEquals(GeofenceTransitions.TRANSITION_ENTER, transition);
+    }
+
+    @Test
+    public void coordinatesTransition_exited() {
+        GeofenceData geofenceData = new GeofenceData();
+        // 111 km
+        geofenceData.setLatitude(3.0d);
+        geofenceData.setLongitude(2.0d);
+        // 50 km
+        geofenceData.setRadius(50000d);
+
+        int transition = mGeofenceEvaluator.coordinatesTransition(geofenceData, 2.0d, 2.0d);
+
+        assertEquals(GeofenceTransitions.TRANSITION_EXIT, transition);
+    }
+
+    @Test
+    public void coordinatesTransition_tieredSphericalSameAsSpherical() {
+        GeofenceEvaluator tiered = new GeofenceEvaluator(
+                GeofenceEvaluator.PRECISION_TIERED_SPHERICAL);
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            GeofenceData geofenceData = randomGeofence(random);
+            GeoPoint fix = randomFixNear(random, geofenceData);
+
+            assertEquals(mGeofenceEvaluator.coordinatesTransition(geofenceData,
+                    fix.latitude, fix.longitude),
+                    tiered.coordinatesTransition(geofenceData, fix.latitude, fix.longitude));
+        }
+        assertEquals(20000, tiered.getFlatTierCount() + tiered.getSphericalTierCount());
+        assertTrue(tiered.getFlatTierCount() > tiered.getSphericalTierCount());
+        assertEquals(0, tiered.getEllipsoidalTierCount());
+    }
+
+    @Test
+    public void coordinatesTransition_tieredEllipsoidalSameAsVincenty() {
+        GeofenceEvaluator tiered = new GeofenceEvaluator(
+                GeofenceEvaluator.PRECISION_TIERED_ELLIPSOIDAL);
+        Random random = new Random(2);
+        for (int i = 0; i < 20000; i++) {
+            GeofenceData geofenceData = randomGeofence(random);
+            GeoPoint fix = randomFixNear(random, geofenceData);
+            double distance = EllipsoidalUtil.computeDistanceBetween(geofenceData.getLatitude(),
+                    geofenceData.getLongitude(), fix.latitude, fix.longitude);
+            int expected = distance <= geofenceData.getRadius() ?
+                    GeofenceTransitions.TRANSITION_ENTER : GeofenceTransitions.TRANSITION_EXIT;
+
+            assertEquals(expected,
+                    tiered.coordinatesTransition(geofenceData, fix.latitude, fix.longitude));
+        }
+        assertEquals(20000, tiered.getFlatTierCount() + tiered.getSphericalTierCount() +
+                tiered.getEllipsoidalTierCount());
+        assertTrue(tiered.getEllipsoidalTierCount() > 0);
+
+        tiered.resetTierCounts();
+        assertEquals(0, tiered.getFlatTierCount());
+    }
+
+    @Test
+    public void coordinatesTransition_polygon() {
+        // L shaped site: the inner corner is inside the bounding circle, but not the polygon.
+        GeofenceData geofenceData = new GeofenceData();
+        geofenceData.setPolygon(new GeoPolygon(new double[]{
+                50.00, 30.00, 50.00, 30.02, 50.01, 30.02,
+                50.01, 30.01, 50.02, 30.01, 50.02, 30.00}));
+
+        assertTrue(geofenceData.getRadius() > 0);
+        for (int precision = GeofenceEvaluator.PRECISION_SPHERICAL;
+             precision <= GeofenceEvaluator.PRECISION_TIERED_ELLIPSOIDAL; precision++) {
+            GeofenceEvaluator evaluator = new GeofenceEvaluator(precision);
+            assertEquals(GeofenceTransitions.TRANSITION_ENTER,
+                    evaluator.coordinatesTransition(geofenceData, 50.005, 30.015));
+            assertEquals(GeofenceTransitions.TRANSITION_ENTER,
+                    evaluator.coordinatesTransition(geofenceData, 50.015, 30.005));
+            assertEquals(GeofenceTransitions.TRANSITION_EXIT,
+                    evaluator.coordinatesTransition(geofenceData, 50.015, 30.015));
+            assertFalse(SphericalUtil.computeDistanceBetween(new GeoPoint(50.015, 30.015),
+                    new GeoPoint(geofenceData.getLatitude(), geofenceData.getLongitude())) >
+                    geofenceData.getRadius());
+        }
+    }
+
+    @Test
+    public void coordinatesTransition_corridor() {
+        // Route goes east and then north; the corner of the bounding box is far from it.
+        GeofenceData geofenceData = new GeofenceData();
+        geofenceData.setCorridor(new GeoCorridor(new double[]{
+                50.00, 30.00, 50.00, 30.02, 50.02, 30.02}, 50));
+
+        for (int precision = GeofenceEvaluator.PRECISION_SPHERICAL;
+             precision <= GeofenceEvaluator.PRECISION_TIERED_ELLIPSOIDAL; precision++) {
+            GeofenceEvaluator evaluator = new GeofenceEvaluator(precision);
+            assertEquals(GeofenceTransitions.TRANSITION_ENTER,
+                    evaluator.coordinatesTransition(geofenceData, 50.0003, 30.01));
+            assertEquals(GeofenceTransitions.TRANSITION_ENTER,
+                    evaluator.coordinatesTransition(geofenceData, 50.01, 30.0205));
+            assertEquals(GeofenceTransitions.TRANSITION_EXIT,
+                    evaluator.coordinatesTransition(geofenceData, 50.001, 30.01));
+            assertEquals(GeofenceTransitions.TRANSITION_EXIT,
+                    evaluator.coordinatesTransition(geofenceData, 50.02, 30.00));
+        }
+    }
+
+    @Test
+    public void ellipsoidalDistance_knownValues() {
+        // One degree along the equator and along the meridian at the equator on WGS84.
+        assertEquals(111319.49, EllipsoidalUtil.computeDistanceBetween(0, 0, 0, 1), 0.01);
+        assertEquals(110574.39, EllipsoidalUtil.computeDistanceBetween(0, 0, 1, 0), 0.01);
+        assertEquals(0d, EllipsoidalUtil.computeDistanceBetween(10, 10, 10, 10));
+    }
+
+    private static GeofenceData randomGeofence(Random random) {
+        GeofenceData geofenceData = new GeofenceData();
+        geofenceData.setLatitude(random.nextDouble() * 170 - 85);
+        geofenceData.setLongitude(random.nextDouble() * 360 - 180);
+        geofenceData.setRadius(10 + random.nextDouble() * 50000);
+        return geofenceData;
+    }
+
+    private static GeoPoint randomFixNear(Random random, GeofenceData geofenceData) {
+        return SphericalUtil.computeOffset(
+                new GeoPoint(geofenceData.getLatitude(), geofenceData.getLongitude()),
+                geofenceData.getRadius() * random.nextDouble() * 3, random.nextDouble() * 360);
+    }
+}
@@ -0,0 +1,112 @@
+package com.ashaevy.geofence.transition;
+
+import com.ashaevy.geofence.data.GeofenceData;
+import com.ashaevy.geofence.utils.GeoPoint;
+import com.ashaevy.geofence.utils.SphericalUtil;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test paging of geofences around a location.
+ */
+
+public class RegionPagerTest {
+
+    private static final GeoPoint CENTER = new GeoPoint(50, 30);
+
+    @Test
+    public void page_keepsNearestBorders() {
+        List<GeofenceData> candidates = new ArrayList<>();
+        // Borders at 1800, 1600, ..., 0 meters, added farthest first.
+        for (int i = 9; i >= 0; i--) {
+            candidates.add(geofence("fence" + i, 1000 + 100 * i, 100 * (10 - i)));
+        }
+        candidates.add(geofence(null, 100, 1000));
+
+        RegionPager.Page page = new RegionPager(4, 5000, 100).page(CENTER.latitude,
+                CENTER.longitude, candidates);
+
+        assertEquals(4, page.geofences.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("fence" + i, page.geofences.get(i).getId());
+        }
+        // The nearest fence left out has its border at 800 meters.
+        assertEquals(400, page.refreshRadius, 1e-6);
+        assertTrue(page.complete);
+    }
+
+    @Test
+    public void page_boundedBySearchRadius() {
+        List<GeofenceData> candidates = new ArrayList<>();
+        candidates.add(geofence("near", 1000, 500));
+        candidates.add(geofence("far", 10000, 500));
+
+        RegionPager.Page page = new RegionPager(10, 5000, 100).page(CENTER.latitude,
+                CENTER.longitude, candidates);
+
+        assertEquals(1, page.geofences.size());
+        assertEquals("near", page.geofences.get(0).getId());
+        assertEquals(2500, page.refreshRadius, 1e-9);
+    }
+
+    @Test
+    public void page_insideMoreThanCapacityUsesMinRefreshRadius() {
+        List<GeofenceData> candidates = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            candidates.add(geofence("fence" + i, 10 * i, 1000));
+        }
+
+        RegionPager.Page page = new RegionPager(2, 5000, 150).page(CENTER.latitude,
+                CENTER.longitude, candidates);
+
+        assertEquals(2, page.geofences.size());
+        assertEquals(150, page.refreshRadius, 1e-9);
+        assertFalse(page.complete);
+    }
+
+    @Test
+    public void page_denseClusterKeepsNearestWithMinRefreshRadius() {
+        List<GeofenceData> candidates = new ArrayList<>();
+        // Borders at 100, 110, ..., 190 meters.
+        for (int i = 0; i < 10; i++) {
+            candidates.add(geofence("fence" + i, 200 + 10 * i, 100));
+        }
+
+        RegionPager.Page page = new RegionPager(4, 5000, 150).page(CENTER.latitude,
+                CENTER.longitude, candidates);
+
+        assertEquals(4, page.geofences.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("fence" + i, page.geofences.get(i).getId());
+        }
+        // Half of the 140 meters bound is below the minimum.
+        assertEquals(150, page.refreshRadius, 1e-9);
+        assertFalse(page.complete);
+
+        // Without the cluster the bound holds.
+        page = new RegionPager(4, 5000, 150).page(CENTER.latitude, CENTER.longitude,
+                candidates.subList(0, 4));
+        assertEquals(2500, page.refreshRadius, 1e-9);
+        assertTrue(page.complete);
+    }
+
+    /**
+     * Returns geofence with the center the distance north of {@link #CENTER}.
+     */
+    private static GeofenceData geofence(String id, double distance, double radius) {
+        GeoPoint center = SphericalUtil.computeOffset(CENTER, distance, 0);
+        GeofenceData geofence = new GeofenceData();
+        geofence.setId(id);
+        geofence.setLatitude(center.latitude);
+        geofence.setLongitude(center.longitude);
+        geofence.setRadius(radius);
+        return geofence;
+    }
+}
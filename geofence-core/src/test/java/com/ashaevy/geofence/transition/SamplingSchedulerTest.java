@@ -0,0 +1,63 @@
+package com.ashaevy.geofence.transition;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test location sampling schedule.
+ */
+
+public class SamplingSchedulerTest {
+
+    private final SamplingScheduler mScheduler = new SamplingScheduler(10000, 640000, 40);
+
+    @Test
+    public void update_nearBorderKeepsFastSampling() {
+        assertFalse(mScheduler.update(150, 10));
+
+        assertEquals(10000, mScheduler.getInterval());
+        assertEquals(SamplingScheduler.PRIORITY_HIGH_ACCURACY, mScheduler.getPriority());
+    }
+
+    @Test
+    public void update_farFromBorderLoosensStepByStep() {
+        assertTrue(mScheduler.update(100000, 10));
+        assertEquals(20000, mScheduler.getInterval());
+        assertEquals(SamplingScheduler.PRIORITY_LOW_POWER, mScheduler.getPriority());
+
+        for (int i = 0; i < 10; i++) {
+            mScheduler.update(100000, 10);
+        }
+        assertEquals(640000, mScheduler.getInterval());
+        assertFalse(mScheduler.update(100000, 10));
+    }
+
+    @Test
+    public void update_approachTightensAtOnce() {
+        for (int i = 0; i < 10; i++) {
+            mScheduler.update(100000, 10);
+        }
+
+        // 2 km at 40 m/s is 50 s, with the 100 m error and a late fix 23.6 s.
+        assertTrue(mScheduler.update(2000, 10));
+        assertEquals(20000, mScheduler.getInterval());
+        assertEquals(SamplingScheduler.PRIORITY_BALANCED_POWER_ACCURACY,
+                mScheduler.getPriority());
+
+        assertTrue(mScheduler.update(300, 10));
+        assertEquals(10000, mScheduler.getInterval());
+        assertEquals(SamplingScheduler.PRIORITY_HIGH_ACCURACY, mScheduler.getPriority());
+    }
+
+    @Test
+    public void reset_returnsToFastSampling() {
+        mScheduler.update(100000, 10);
+        mScheduler.reset();
+
+        assertEquals(10000, mScheduler.getInterval());
+        assertEquals(SamplingScheduler.PRIORITY_HIGH_ACCURACY, mScheduler.getPriority());
+    }
+}
@@ -0,0 +1,60 @@
+package com.ashaevy.geofence.transition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Test in-process transition event bus.
+ */
+
+public class TransitionEventBusTest {
+
+    private final TransitionEventBus mBus = new TransitionEventBus();
+    private final List<String> mEvents = new ArrayList<>();
+
+    @Test
+    public void publish_reachesRegisteredListenersOnce() {
+        TransitionEventBus.Listener listener = recordingListener("a");
+        mBus.register(listener);
+        mBus.register(listener);
+        mBus.register(recordingListener("b"));
+
+        mBus.publish("home", GeofenceTransitions.STATE_INSIDE, 1000);
+
+        assertEquals(2, mEvents.size());
+        assertEquals("a home 1 1000", mEvents.get(0));
+        assertEquals("b home 1 1000", mEvents.get(1));
+        assertEquals(1, mBus.getPublishedCount());
+    }
+
+    @Test
+    public void unregister_duringPublishAppliesToNextEvent() {
+        final TransitionEventBus.Listener second = recordingListener("b");
+        mBus.register(new TransitionEventBus.Listener() {
+            @Override
+            public void onTransitionEvent(String fenceId, int state, long timestamp) {
+                mBus.unregister(second);
+            }
+        });
+        mBus.register(second);
+
+        mBus.publish("home", GeofenceTransitions.STATE_OUTSIDE, 1);
+        mBus.publish("home", GeofenceTransitions.STATE_INSIDE, 2);
+
+        assertEquals(1, mEvents.size());
+        assertEquals("b home 2 1", mEvents.get(0));
+    }
+
+    private TransitionEventBus.Listener recordingListener(final String name) {
+        return new TransitionEventBus.Listener() {
+            @Override
+            public void onTransitionEvent(String fenceId, int state, long timestamp) {
+                mEvents.add(name + " " + fenceId + " " + state + " " + timestamp);
+            }
+        };
+    }
+}
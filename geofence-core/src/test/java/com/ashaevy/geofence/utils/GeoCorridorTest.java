@@ -0,0 +1,108 @@
+package com.ashaevy.geofence.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test corridor validation and containment.
+ */
+
+public class GeoCorridorTest {
+
+    @Test
+    public void contains_sameAsSegmentScan() {
+        Random random = new Random(5);
+        for (int pointCount : new int[]{2, 10, 300}) {
+            for (double distance : new double[]{5, 50, 400}) {
+                double[] route = randomRoute(random, 50.45, 30.52, pointCount, 300);
+                GeoCorridor corridor = new GeoCorridor(route, distance);
+                for (int i = 0; i < 5000; i++) {
+                    // Points near the route, so both sides of the border are sampled.
+                    int point = random.nextInt(pointCount);
+                    double latitude = route[2 * point] + random.nextGaussian() * 0.005;
+                    double longitude = route[2 * point + 1] + random.nextGaussian() * 0.008;
+                    double routeDistance = scanDistance(route, latitude, longitude);
+                    if (Math.abs(routeDistance - distance) > 0.01) {
+                        assertEquals(routeDistance <= distance,
+                                corridor.contains(latitude, longitude));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void contains_acrossAntimeridian() {
+        GeoCorridor corridor = new GeoCorridor(new double[]{0, 179.99, 0, -179.99}, 100);
+
+        assertTrue(corridor.contains(0, 180));
+        assertTrue(corridor.contains(0.0005, -180));
+        assertTrue(corridor.contains(0, 179.995));
+        assertFalse(corridor.contains(0.002, 180));
+        assertFalse(corridor.contains(0, 179.98));
+        assertFalse(corridor.contains(0, 0));
+
+        double[] circle = corridor.getBoundingCircle();
+        assertEquals(180, Math.abs(circle[1]), 1e-9);
+    }
+
+    @Test
+    public void boundingCircle_containsCorridor() {
+        Random random = new Random(7);
+        double[] route = randomRoute(random, -33.9, 151.2, 50, 1000);
+        GeoCorridor corridor = new GeoCorridor(route, 200);
+        double[] circle = corridor.getBoundingCircle();
+        GeoPoint center = new GeoPoint(circle[0], circle[1]);
+        for (int i = 0; i < route.length; i += 2) {
+            GeoPoint point = new GeoPoint(route[i], route[i + 1]);
+            assertTrue(SphericalUtil.computeDistanceBetween(center, point) + 200 <= circle[2]);
+        }
+        assertEquals(SphericalUtil.computeLength(route, 0, 50), corridor.getLength(), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsSinglePoint() {
+        new GeoCorridor(new double[]{50.45, 30.52}, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPositiveDistance() {
+        new GeoCorridor(new double[]{50.45, 30.52, 50.46, 30.53}, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsRouteNearPole() {
+        new GeoCorridor(new double[]{86, 0, 86, 10}, 100);
+    }
+
+    private static double[] randomRoute(Random random, double latitude, double longitude,
+                                        int pointCount, double stepMeters) {
+        double[] route = new double[2 * pointCount];
+        GeoPoint point = new GeoPoint(latitude, longitude);
+        double heading = random.nextDouble() * 360;
+        for (int i = 0; i < pointCount; i++) {
+            route[2 * i] = point.latitude;
+            route[2 * i + 1] = point.longitude;
+            heading += random.nextGaussian() * 40;
+            point = SphericalUtil.computeOffset(point, stepMeters * (0.2 + random.nextDouble()),
+                    heading);
+        }
+        return route;
+    }
+
+    private static double scanDistance(double[] route, double latitude, double longitude) {
+        GeoPoint point = new GeoPoint(latitude, longitude);
+        double result = Double.POSITIVE_INFINITY;
+        for (int i = 0; i + 3 < route.length; i += 2) {
+            result = Math.min(result, SphericalUtil.computeDistanceToSegment(point,
+                    new GeoPoint(route[i], route[i + 1]),
+                    new GeoPoint(route[i + 2], route[i + 3])));
+        }
+        return result;
+    }
+}
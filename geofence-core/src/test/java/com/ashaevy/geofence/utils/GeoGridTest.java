@@ -0,0 +1,47 @@
+package com.ashaevy.geofence.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test grid cells used to index geofences.
+ */
+
+public class GeoGridTest {
+
+    @Test
+    public void cellsCovering_containsCellOfEveryInnerPoint() {
+        GeoBounds bounds = GeoBounds.ofCircle(50.4501, 30.5234, 7000);
+        int[] cells = GeoGrid.cellsCovering(bounds);
+        Arrays.sort(cells);
+
+        for (int heading = 0; heading < 360; heading += 15) {
+            GeoPoint point = SphericalUtil.computeOffset(new GeoPoint(50.4501, 30.5234),
+                    6999, heading);
+            assertTrue(bounds.contains(point.latitude, point.longitude));
+            assertTrue(Arrays.binarySearch(cells,
+                    GeoGrid.cellOf(point.latitude, point.longitude)) >= 0);
+        }
+    }
+
+    @Test
+    public void cellsCovering_largeBoundsAreOversized() {
+        int[] cells = GeoGrid.cellsCovering(GeoBounds.ofCircle(0, 0, 2000000));
+
+        assertEquals(1, cells.length);
+        assertEquals(GeoGrid.OVERSIZED_CELL, cells[0]);
+    }
+
+    @Test
+    public void ofCircle_nearPoleCoversAllLongitudes() {
+        GeoBounds bounds = GeoBounds.ofCircle(89.9, 0, 50000);
+
+        assertEquals(-180d, bounds.minLongitude);
+        assertEquals(180d, bounds.maxLongitude);
+        assertEquals(90d, bounds.maxLatitude);
+    }
+}
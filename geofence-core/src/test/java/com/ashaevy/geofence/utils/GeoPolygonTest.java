@@ -0,0 +1,106 @@
+package com.ashaevy.geofence.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test polygon validation and containment.
+ */
+
+public class GeoPolygonTest {
+
+    @Test
+    public void contains_sameAsRayCasting() {
+        Random random = new Random(3);
+        for (int vertexCount : new int[]{3, 17, 1500}) {
+            double[] vertices = starPolygon(random, 50.45, 30.52, 2000, vertexCount);
+            GeoPolygon polygon = new GeoPolygon(vertices);
+            for (int i = 0; i < 20000; i++) {
+                double latitude = 50.45 + (random.nextDouble() - 0.5) * 0.05;
+                double longitude = 30.52 + (random.nextDouble() - 0.5) * 0.07;
+                assertEquals(rayCasting(vertices, latitude, longitude),
+                        polygon.contains(latitude, longitude));
+            }
+        }
+    }
+
+    @Test
+    public void constructor_normalizesOrientation() {
+        double[] clockwise = {0, 0, 1, 0, 1, 1, 0, 1, 0, 0};
+        GeoPolygon polygon = new GeoPolygon(clockwise);
+
+        assertEquals(4, polygon.getVertexCount());
+        assertTrue(SphericalUtil.computeSignedArea(polygon.getVertices(), 0, 4) > 0);
+        assertEquals(SphericalUtil.computeArea(clockwise, 0, 4), polygon.getArea(), 1);
+        assertTrue(polygon.contains(0.5, 0.5));
+        assertFalse(polygon.contains(1.5, 0.5));
+    }
+
+    @Test
+    public void contains_acrossAntimeridian() {
+        GeoPolygon polygon = new GeoPolygon(new double[]{-1, 179, -1, -179, 1, -179, 1, 179});
+
+        assertTrue(polygon.contains(0, 179.5));
+        assertTrue(polygon.contains(0, -179.5));
+        assertTrue(polygon.contains(0, 180));
+        assertFalse(polygon.contains(0, 178.5));
+        assertFalse(polygon.contains(0, -178.5));
+
+        double[] circle = polygon.getBoundingCircle();
+        assertEquals(0, circle[0], 1e-9);
+        assertEquals(180, Math.abs(circle[1]), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsSelfIntersection() {
+        new GeoPolygon(new double[]{0, 0, 1, 1, 1, 0, 0, 1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsDegeneratePolygon() {
+        new GeoPolygon(new double[]{0, 0, 0, 1, 0, 2});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsPolygonAroundPole() {
+        new GeoPolygon(new double[]{80, 0, 80, 90, 80, 180, 80, -90});
+    }
+
+    /**
+     * Returns vertices of a random star shaped polygon around the center.
+     */
+    static double[] starPolygon(Random random, double latitude, double longitude,
+                                double radius, int vertexCount) {
+        double[] vertices = new double[2 * vertexCount];
+        GeoPoint center = new GeoPoint(latitude, longitude);
+        for (int i = 0; i < vertexCount; i++) {
+            double heading = 360.0 * i / vertexCount;
+            GeoPoint vertex = SphericalUtil.computeOffset(center,
+                    radius * (0.3 + 0.7 * random.nextDouble()), heading);
+            vertices[2 * i] = vertex.latitude;
+            vertices[2 * i + 1] = vertex.longitude;
+        }
+        return vertices;
+    }
+
+    private static boolean rayCasting(double[] vertices, double latitude, double longitude) {
+        boolean inside = false;
+        int size = vertices.length / 2;
+        for (int i = 0, j = size - 1; i < size; j = i++) {
+            double yi = vertices[2 * i];
+            double xi = vertices[2 * i + 1];
+            double yj = vertices[2 * j];
+            double xj = vertices[2 * j + 1];
+            if ((yi > latitude) != (yj > latitude) &&
+                    longitude < (xj - xi) * (latitude - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
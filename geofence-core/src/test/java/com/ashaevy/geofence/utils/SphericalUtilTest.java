@@ -0,0 +1,119 @@
+package com.ashaevy.geofence.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.toRadians;
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Test spherical geometry helpers.
+ */
+
+public class SphericalUtilTest {
+
+    @Test
+    public void isWithinDistance_sameAsComputeDistanceBetween() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            GeoPoint from = new GeoPoint(random.nextDouble() * 170 - 85,
+                    random.nextDouble() * 360 - 180);
+            GeoPoint to = SphericalUtil.computeOffset(from, random.nextDouble() * 20000,
+                    random.nextDouble() * 360);
+            double radius = random.nextDouble() * 20000;
+
+            double fromLat = toRadians(from.latitude);
+            double toLat = toRadians(to.latitude);
+            boolean within = SphericalUtil.isWithinDistance(fromLat, cos(fromLat),
+                    toRadians(from.longitude), toLat, cos(toLat), toRadians(to.longitude),
+                    SphericalUtil.havThreshold(radius));
+
+            double distance = SphericalUtil.computeDistanceBetween(from, to);
+            if (Math.abs(distance - radius) > 1e-6) {
+                assertEquals(distance <= radius, within);
+            }
+        }
+    }
+
+    @Test
+    public void havThreshold_limits() {
+        assertEquals(1d, SphericalUtil.havThreshold(SphericalUtil.EARTH_RADIUS * Math.PI));
+        assertEquals(0d, SphericalUtil.havThreshold(0));
+        assertEquals(-1d, SphericalUtil.havThreshold(-1));
+    }
+
+    @Test
+    public void arrayOverloads_sameAsListVersions() {
+        Random random = new Random(11);
+        int offset = 3;
+        int count = 50;
+        List<GeoPoint> path = new ArrayList<>();
+        double[] latLngs = new double[2 * (offset + count)];
+        double[] latLngsRadians = new double[latLngs.length];
+        double[] latitudes = new double[offset + count];
+        double[] longitudes = new double[offset + count];
+        double[] latitudesRadians = new double[offset + count];
+        double[] longitudesRadians = new double[offset + count];
+        for (int i = 0; i < offset + count; i++) {
+            double latitude = 50 + random.nextDouble();
+            double longitude = 30 + random.nextDouble();
+            if (i >= offset) {
+                path.add(new GeoPoint(latitude, longitude));
+            }
+            latLngs[2 * i] = latitude;
+            latLngs[2 * i + 1] = longitude;
+            latLngsRadians[2 * i] = toRadians(latitude);
+            latLngsRadians[2 * i + 1] = toRadians(longitude);
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+            latitudesRadians[i] = toRadians(latitude);
+            longitudesRadians[i] = toRadians(longitude);
+        }
+
+        double length = SphericalUtil.computeLength(path);
+        assertEquals(length, SphericalUtil.computeLength(latLngs, offset, count), 1e-6);
+        assertEquals(length, SphericalUtil.computeLength(latitudes, longitudes, offset, count),
+                1e-6);
+        assertEquals(length, SphericalUtil.computeLengthRadians(latLngsRadians, offset, count),
+                1e-6);
+        assertEquals(length, SphericalUtil.computeLengthRadians(latitudesRadians,
+                longitudesRadians, offset, count), 1e-6);
+
+        double area = SphericalUtil.computeSignedArea(path);
+        double delta = Math.abs(area) * 1e-9;
+        assertEquals(area, SphericalUtil.computeSignedArea(latLngs, offset, count), delta);
+        assertEquals(area, SphericalUtil.computeSignedArea(latitudes, longitudes, offset, count),
+                delta);
+        assertEquals(area, SphericalUtil.computeSignedAreaRadians(latLngsRadians, offset,
+                count), delta);
+        assertEquals(area, SphericalUtil.computeSignedAreaRadians(latitudesRadians,
+                longitudesRadians, offset, count), delta);
+        assertEquals(Math.abs(area), SphericalUtil.computeArea(latLngs, offset, count), delta);
+    }
+
+    @Test
+    public void computeDistanceToSegment_crossTrackAndEnds() {
+        GeoPoint start = new GeoPoint(0, 0);
+        GeoPoint end = new GeoPoint(0, 1);
+        double degree = SphericalUtil.EARTH_RADIUS * Math.PI / 180;
+
+        assertEquals(0.1 * degree, SphericalUtil.computeDistanceToSegment(
+                new GeoPoint(0.1, 0.5), start, end), 1e-3);
+        assertEquals(SphericalUtil.computeDistanceBetween(new GeoPoint(0.1, -0.5), start),
+                SphericalUtil.computeDistanceToSegment(new GeoPoint(0.1, -0.5), start, end),
+                1e-6);
+        assertEquals(SphericalUtil.computeDistanceBetween(new GeoPoint(-0.1, 1.5), end),
+                SphericalUtil.computeDistanceToSegment(new GeoPoint(-0.1, 1.5), start, end),
+                1e-6);
+        assertEquals(0, SphericalUtil.computeDistanceToSegment(start, start, start), 1e-9);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void arrayOverloads_checkRange() {
+        SphericalUtil.computeLength(new double[10], 2, 4);
+    }
+}